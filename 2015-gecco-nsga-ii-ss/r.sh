@@ -50,7 +50,7 @@ elif [[ "$1" == "paper-steadiness-wilcox" ]]; then
 else
     "$0" "expand"
     mkdir -p classes
-    javac -Xlint:unchecked -cp src -d classes src/ru/ifmo/steady/{*.java,util/*.java,inds/*.java,enlu/*.java,problem/*.java}
+    javac -Xlint:unchecked -cp src -d classes src/ru/ifmo/steady/{*.java,util/*.java,inds/*.java,enlu/*.java,debNDS/*.java,soa/*.java,mo/*.java,problem/*.java,bench/*.java}
     java -cp classes ru.ifmo.steady.SolutionStorageTests >/dev/null
     if [[ "$?" == "0" ]]; then
         if [[ "$1" == "paper-nsga" ]]; then
@@ -105,6 +105,18 @@ else
             else
                 echo "Error: no scala compiler found, will not build LaTeX table of results"
             fi
+        elif [[ "$1" == "alloc-profile" ]]; then
+            java -cp classes ru.ifmo.steady.bench.AllocationProfile
+        elif [[ "$1" == "throughput" ]]; then
+            java -cp classes ru.ifmo.steady.bench.StorageThroughput
+        elif [[ "$1" == "eval-throughput" ]]; then
+            java -cp classes ru.ifmo.steady.bench.ProblemThroughput
+        elif [[ "$1" == "variation-profile" ]]; then
+            java -cp classes ru.ifmo.steady.bench.VariationProfile
+        elif [[ "$1" == "bench" ]]; then
+            java -cp classes ru.ifmo.steady.bench.StorageBenchmark "${@:2}"
+        elif [[ "$1" == "islands" ]]; then
+            java -cp classes ru.ifmo.steady.IslandModel "${@:2}"
         else
             java -cp classes ru.ifmo.steady.Experiments "$@"
             if [[ "$?" != "0" ]]; then
@@ -129,6 +141,18 @@ else
                 echo "      Runs experiments from the paper:"
                 echo "          Efficient Removal of Points with Smallest Crowding Distance"
                 echo "          in Two-dimensional Incremental Non-dominated Sorting"
+                echo "    - $0 alloc-profile"
+                echo "      Measures memory allocated by INDS and SoA storages per steady-state step."
+                echo "    - $0 throughput"
+                echo "      Measures time per steady-state step of INDS-Hull and SoA storages."
+                echo "    - $0 eval-throughput"
+                echo "      Measures evaluations per second and bytes allocated per evaluation of the problems."
+                echo "    - $0 variation-profile"
+                echo "      Measures random draws, allocations and time per offspring of the variation operators."
+                echo "    - $0 bench [options]"
+                echo "      Benchmarks storage operations and NSGA-II iterations, reporting time and allocation per operation."
+                echo "    - $0 islands [options]"
+                echo "      Compares NSGA-II on one island and on several islands with migration by hypervolume versus time."
                 echo "    - $0 <experiment arguments>"
                 echo "      Runs the experiment subset you want. Adhere to error messages above."
             fi
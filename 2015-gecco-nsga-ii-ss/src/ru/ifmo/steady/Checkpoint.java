@@ -0,0 +1,122 @@
+package ru.ifmo.steady;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Saves snapshots of an {@link NSGA2} run to a memory-mapped file,
+ * so that a long run interrupted by a crash can be resumed with exactly the same results.
+ *
+ * The file holds two slots of the same size, which are written in turn.
+ * Every slot starts with a header of the sequence number, the snapshot length, its checksum
+ * and the CPU time spent on the run so far, so that a resumed run can report the time of the whole run.
+ * The sequence number is written last, so a crash in the middle of writing a snapshot
+ * leaves the previous one intact, and {@link #restore()} picks the latest complete snapshot.
+ * The written pages belong to the operating system as soon as they are written,
+ * so they survive a crash of the JVM.
+ */
+public final class Checkpoint implements Closeable {
+    private static final int HEADER_SIZE = 8 + 4 + 8 + 8;
+
+    private final NSGA2 algo;
+    private final int snapshotSize;
+    private final int slotSize;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private long sequence = 1;
+    private long restoredTime = 0;
+
+    public Checkpoint(String fileName, NSGA2 algo) throws IOException {
+        this.algo = algo;
+        this.snapshotSize = algo.snapshotSize();
+        this.slotSize = HEADER_SIZE + snapshotSize;
+        this.channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2L * slotSize);
+    }
+
+    private ByteBuffer slot(int index) {
+        ByteBuffer rv = buffer.duplicate();
+        rv.position(index * slotSize);
+        rv.limit((index + 1) * slotSize);
+        return rv.slice();
+    }
+
+    private static long checksum(ByteBuffer snapshot) {
+        CRC32 crc = new CRC32();
+        crc.update(snapshot.duplicate());
+        return crc.getValue();
+    }
+
+    // Returns the sequence number of a complete snapshot in the slot, or zero if there is none.
+    private long validSequence(ByteBuffer slot) {
+        long seq = slot.getLong(0);
+        int length = slot.getInt(8);
+        if (seq <= 0 || length != snapshotSize) {
+            return 0;
+        }
+        return slot.getLong(12) == checksum(snapshotOf(slot)) ? seq : 0;
+    }
+
+    private ByteBuffer snapshotOf(ByteBuffer slot) {
+        ByteBuffer rv = slot.duplicate();
+        rv.position(HEADER_SIZE);
+        return rv.slice();
+    }
+
+    /**
+     * Restores the latest complete snapshot from the file, if there is one.
+     * @return whether a snapshot was restored. If not, the run should be initialized as usual.
+     */
+    public boolean restore() {
+        ByteBuffer s0 = slot(0), s1 = slot(1);
+        long q0 = validSequence(s0), q1 = validSequence(s1);
+        if (q0 == 0 && q1 == 0) {
+            return false;
+        }
+        ByteBuffer latest = q0 > q1 ? s0 : s1;
+        algo.readSnapshot(snapshotOf(latest));
+        restoredTime = latest.getLong(20);
+        sequence = Math.max(q0, q1) + 1;
+        return true;
+    }
+
+    /**
+     * Returns the CPU time which was passed to {@link #save(long)} along with the restored snapshot,
+     * or zero if nothing was restored.
+     */
+    public long restoredTime() {
+        return restoredTime;
+    }
+
+    /**
+     * Writes the current state of the run to the slot not containing the latest snapshot.
+     * @param time the CPU time spent on the run so far, in nanoseconds.
+     */
+    public void save(long time) {
+        ByteBuffer slot = slot((int) (sequence & 1));
+        slot.putLong(0, 0);
+        ByteBuffer snapshot = snapshotOf(slot);
+        algo.writeSnapshot(snapshot);
+        if (snapshot.position() != snapshotSize) {
+            throw new AssertionError("Snapshot size mismatch: expected " + snapshotSize + " found " + snapshot.position());
+        }
+        snapshot.flip();
+        slot.putInt(8, snapshotSize);
+        slot.putLong(12, checksum(snapshot));
+        slot.putLong(20, time);
+        slot.putLong(0, sequence);
+        ++sequence;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
@@ -11,6 +11,10 @@ public class ComparisonCounter {
         return value;
     }
 
+    public void set(long value) {
+        this.value = value;
+    }
+
     public void reset() {
         value = 0;
     }
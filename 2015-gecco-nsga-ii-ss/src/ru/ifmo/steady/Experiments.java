@@ -2,14 +2,22 @@ package ru.ifmo.steady;
 
 import java.io.*;
 import java.lang.management.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.stream.IntStream;
 
 import ru.ifmo.steady.problem.*;
-import ru.ifmo.steady.util.FastRandom;
+import ru.ifmo.steady.util.RandomContext;
 import ru.ifmo.steady.NSGA2.Variant;
 
 public class Experiments {
@@ -32,14 +40,42 @@ public class Experiments {
         return orderStat(a, 0.75) - orderStat(a, 0.25);
     }
 
+    // Writes to a temporary file first, so that an interrupted write never leaves a partial file behind
     private static void writeToFile(double[] data, String filename) {
-        try (PrintWriter out = new PrintWriter(filename)) {
+        File temporary = new File(filename + ".tmp");
+        try (PrintWriter out = new PrintWriter(temporary)) {
             for (double v : data) {
                 out.println(v);
             }
+            if (out.checkError()) {
+                throw new IOException("Error writing " + temporary);
+            }
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
+        try {
+            Files.move(temporary.toPath(), Paths.get(filename),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static double[] readFromFile(String filename) {
+        List<Double> values = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(filename))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                values.add(Double.parseDouble(line));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        double[] rv = new double[values.size()];
+        for (int i = 0; i < rv.length; ++i) {
+            rv[i] = values.get(i);
+        }
+        return rv;
     }
 
     private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
@@ -56,80 +92,13 @@ public class Experiments {
         public final double runningTimeMed;
         public final double runningTimeIQR;
 
-        public RunResult(Problem problem, Supplier<SolutionStorage> storageSupplier,
-                         boolean debSelection, boolean jmetalComparison, Variant variant,
-                         String runDir, int budget, int generationSize, int runs, boolean payAttentionToTime, boolean keepSilent) {
-            hyperVolumes = new double[runs];
-            comparisons = new double[runs];
-            runningTimes = new double[runs];
-            double[] compensationTimes = new double[runs];
-
-            IntStream.range(0, runs).parallel().forEach(t -> {
-                FastRandom.geneticThreadLocal().setSeed(t + 41117);
-                SolutionStorage storage = storageSupplier.get();
-                NSGA2 algo = new NSGA2(problem, storage, generationSize,
-                                       debSelection, jmetalComparison, variant);
-                long startTime = threadBean.getCurrentThreadUserTime();
-                algo.initialize();
-                for (int i = generationSize; i < budget; i += generationSize) {
-                    algo.performIteration();
-                }
-                long finishTime = threadBean.getCurrentThreadUserTime();
-
-                hyperVolumes[t] = algo.currentHyperVolume();
-                comparisons[t]  = storage.getComparisonCounter().get();
-
-                runningTimes[t] = (finishTime - startTime) / 1e9;
-                int multiple = 1;
-                if (runningTimes[t] < 10.0 && payAttentionToTime) {
-                    multiple = (int) (1 + 10.0 / runningTimes[t]);
-                    startTime = threadBean.getCurrentThreadUserTime();
-                    for (int tt = 0; tt < multiple; ++tt) {
-                        FastRandom.geneticThreadLocal().setSeed(t + 41117);
-                        storage = storageSupplier.get();
-                        algo.initialize();
-                        for (int i = generationSize; i < budget; i += generationSize) {
-                            algo.performIteration();
-                        }
-                    }
-                    finishTime = threadBean.getCurrentThreadUserTime();
-                    runningTimes[t] = (finishTime - startTime) / 1e9 / multiple;
-                }
-
-                long startSimTime = threadBean.getCurrentThreadUserTime();
-                for (int tt = 0; tt < multiple; ++tt) {
-                    for (int i = generationSize; i < budget; i += generationSize) {
-                        algo.simulateIteration();
-                    }
-                }
-                long finishSimTime = threadBean.getCurrentThreadUserTime();
-                compensationTimes[t] = (finishSimTime - startSimTime) / 1e9 / multiple;
-            });
-
+        public RunResult(double[] hyperVolumes, double[] comparisons, double[] runningTimes) {
+            this.hyperVolumes = hyperVolumes;
+            this.comparisons = comparisons;
+            this.runningTimes = runningTimes;
             Arrays.sort(hyperVolumes);
             Arrays.sort(comparisons);
             Arrays.sort(runningTimes);
-            Arrays.sort(compensationTimes);
-
-            for (int i = 0; i < runs; ++i) {
-                runningTimes[i] -= compensationTimes[i];
-            }
-            Arrays.sort(runningTimes);
-
-            if (!keepSilent) {
-                String namePrefix = String.format("%s/%d-%d/%s-%s-%d-%d-%s",
-                    runDir,
-                    budget, generationSize,
-                    problem.getName(),
-                    storageSupplier.get().getName(),
-                    debSelection ? 1 : 0,
-                    jmetalComparison ? 1 : 0,
-                    variant.shortName()
-                );
-                writeToFile(hyperVolumes, namePrefix + "-hv.txt");
-                writeToFile(comparisons, namePrefix + "-cmp.txt");
-                writeToFile(runningTimes, namePrefix + "-time.txt");
-            }
 
             hyperVolumeMed = med(hyperVolumes);
             hyperVolumeIQR = iqr(hyperVolumes);
@@ -150,6 +119,9 @@ public class Experiments {
         private final String runDir;
         private final int runs;
         private final boolean payAttentionToTime;
+        private final ExecutorService evaluationExecutor;
+        private final int evaluationTasks;
+        private final int checkpointInterval;
 
         public Config(List<Supplier<SolutionStorage>> suppliers,
                       List<Variant> variants,
@@ -159,7 +131,10 @@ public class Experiments {
                       List<Integer> generationSizes,
                       String runDir,
                       int runs,
-                      boolean payAttentionToTime) {
+                      boolean payAttentionToTime,
+                      ExecutorService evaluationExecutor,
+                      int evaluationTasks,
+                      int checkpointInterval) {
             this.suppliers = suppliers;
             this.variants = variants;
             this.debSelectionOptions = debSelectionOptions;
@@ -169,79 +144,348 @@ public class Experiments {
             this.runDir = runDir;
             this.runs = runs;
             this.payAttentionToTime = payAttentionToTime;
+            this.evaluationExecutor = evaluationExecutor;
+            this.evaluationTasks = evaluationTasks;
+            this.checkpointInterval = checkpointInterval;
         }
 
-        public void run(Problem problem) {
-            // warm up on the smallest budget
-            {
-                int budget = budgets.get(0);
-                int generationSize = generationSizes.get(0);
-
-                for (boolean debSelection : debSelectionOptions) {
-                    for (boolean jmetalComparison : jmetalComparisonOptions) {
-                        for (Variant variant : variants) {
-                            for (int i = 0; i < suppliers.size(); ++i) {
-                                new RunResult(problem, suppliers.get(i), debSelection,
-                                              jmetalComparison, variant, runDir, budget,
-                                              generationSize, 1, payAttentionToTime, true);
+        /**
+         * A single cell of the configuration grid, whose runs (one per seed) are scheduled independently.
+         * When the last run of a cell finishes, the results are written and the cell's result completes.
+         */
+        private class Cell {
+            final Problem problem;
+            final Supplier<SolutionStorage> storageSupplier;
+            final boolean debSelection, jmetalComparison;
+            final Variant variant;
+            final int budget, generationSize, runs;
+            final boolean keepSilent;
+            final String namePrefix;
+            final CompletableFuture<RunResult> result = new CompletableFuture<>();
+
+            private final double[] hyperVolumes, comparisons, runningTimes, compensationTimes, stalenesses;
+            private final StorageMetrics metrics = StorageMetrics.newInstance();
+            private final AtomicInteger remaining;
+
+            Cell(Problem problem, Supplier<SolutionStorage> storageSupplier,
+                 boolean debSelection, boolean jmetalComparison, Variant variant,
+                 int budget, int generationSize, int runs, boolean keepSilent) {
+                this.problem = problem;
+                this.storageSupplier = storageSupplier;
+                this.debSelection = debSelection;
+                this.jmetalComparison = jmetalComparison;
+                this.variant = variant;
+                this.budget = budget;
+                this.generationSize = generationSize;
+                this.runs = runs;
+                this.keepSilent = keepSilent;
+                this.namePrefix = String.format("%s/%d-%d/%s-%s-%d-%d-%s",
+                    runDir,
+                    budget, generationSize,
+                    problem.getName(),
+                    storageSupplier.get().getName(),
+                    debSelection ? 1 : 0,
+                    jmetalComparison ? 1 : 0,
+                    variant.shortName()
+                );
+                hyperVolumes = new double[runs];
+                comparisons = new double[runs];
+                runningTimes = new double[runs];
+                compensationTimes = new double[runs];
+                stalenesses = new double[runs];
+                remaining = new AtomicInteger(runs);
+            }
+
+            // Returns the values in the output file with the given suffix, or null if it does not hold exactly one per run
+            private double[] readOutput(String suffix) {
+                String fileName = namePrefix + suffix;
+                if (!new File(fileName).exists()) {
+                    return null;
+                }
+                try {
+                    double[] rv = readFromFile(fileName);
+                    return rv.length == runs ? rv : null;
+                } catch (NumberFormatException ex) {
+                    return null;
+                }
+            }
+
+            /**
+             * Completes the result from the outputs of a previous sweep, if they are complete
+             * and have as many runs as this cell.
+             * @return whether the outputs were loaded. If not, the cell should be computed.
+             */
+            boolean loadOutputs() {
+                if (keepSilent) {
+                    return false;
+                }
+                double[] hv = readOutput("-hv.txt");
+                double[] cmp = readOutput("-cmp.txt");
+                double[] time = readOutput("-time.txt");
+                if (hv == null || cmp == null || time == null) {
+                    return false;
+                }
+                result.complete(new RunResult(hv, cmp, time));
+                return true;
+            }
+
+            void submit(ExecutorService scheduler) {
+                for (int t = 0; t < runs; ++t) {
+                    final int seed = t;
+                    scheduler.execute(() -> {
+                        try {
+                            run(seed);
+                            if (remaining.decrementAndGet() == 0) {
+                                finish();
+                            }
+                        } catch (Throwable th) {
+                            result.completeExceptionally(th);
+                        }
+                    });
+                }
+            }
+
+            private void run(int t) {
+                boolean checkpointing = checkpointInterval > 0 && !keepSilent && variant != Variant.AsynchronousSteadyState;
+                RandomContext random = new RandomContext(t + 41117);
+                SolutionStorage storage = storageSupplier.get();
+                NSGA2 algo = new NSGA2(problem, storage, generationSize,
+                                       debSelection, jmetalComparison, variant, random);
+                algo.setParallelEvaluation(evaluationExecutor, evaluationTasks);
+                long startTime = threadBean.getCurrentThreadUserTime();
+                if (checkpointing) {
+                    // Resumed runs add the time spent before the snapshot, so they report the time of the whole run
+                    try (Checkpoint checkpoint = new Checkpoint(namePrefix + "-" + t + ".ckpt", algo)) {
+                        if (checkpoint.restore()) {
+                            startTime -= checkpoint.restoredTime();
+                        } else {
+                            algo.initialize();
+                            checkpoint.save(threadBean.getCurrentThreadUserTime() - startTime);
+                        }
+                        int iterations = 0;
+                        for (int i = algo.getEvaluations(); i < budget; i += generationSize) {
+                            algo.performIteration();
+                            if (++iterations % checkpointInterval == 0) {
+                                checkpoint.save(threadBean.getCurrentThreadUserTime() - startTime);
                             }
                         }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                } else {
+                    algo.initialize();
+                    for (int i = generationSize; i < budget; i += generationSize) {
+                        algo.performIteration();
+                    }
+                }
+                long finishTime = threadBean.getCurrentThreadUserTime();
+
+                hyperVolumes[t] = algo.currentHyperVolume();
+                comparisons[t]  = storage.getComparisonCounter().get();
+                stalenesses[t]  = algo.getAverageStaleness();
+                if (StorageMetrics.ENABLED) {
+                    synchronized (metrics) {
+                        metrics.addAll(storage.getMetrics());
+                    }
+                }
+
+                runningTimes[t] = (finishTime - startTime) / 1e9;
+                int multiple = 1;
+                if (runningTimes[t] < 10.0 && payAttentionToTime) {
+                    multiple = (int) (1 + 10.0 / runningTimes[t]);
+                    startTime = threadBean.getCurrentThreadUserTime();
+                    for (int tt = 0; tt < multiple; ++tt) {
+                        random.setSeed(t + 41117);
+                        storage = storageSupplier.get();
+                        algo.initialize();
+                        for (int i = generationSize; i < budget; i += generationSize) {
+                            algo.performIteration();
+                        }
                     }
+                    finishTime = threadBean.getCurrentThreadUserTime();
+                    runningTimes[t] = (finishTime - startTime) / 1e9 / multiple;
                 }
+
+                long startSimTime = threadBean.getCurrentThreadUserTime();
+                for (int tt = 0; tt < multiple; ++tt) {
+                    for (int i = generationSize; i < budget; i += generationSize) {
+                        algo.simulateIteration();
+                    }
+                }
+                long finishSimTime = threadBean.getCurrentThreadUserTime();
+                compensationTimes[t] = (finishSimTime - startSimTime) / 1e9 / multiple;
             }
 
-            // Actual runs
-            for (int bgs = 0; bgs < budgets.size(); ++bgs) {
-                int budget = budgets.get(bgs);
-                int generationSize = generationSizes.get(bgs);
-                System.out.println("====================================================");
-                System.out.printf("| %-4s | Budget %-9d | Generation size %-6d |\n", problem.getName(), budget, generationSize);
-                System.out.println("====================================================");
-
-                System.out.print(" DebSel | jMetal | Vari |      ");
-                for (int i = 0; i < suppliers.size(); ++i) {
-                    System.out.printf("| %-20s ", suppliers.get(i).get().getName());
+            private void finish() {
+                Arrays.sort(runningTimes);
+                Arrays.sort(compensationTimes);
+                for (int i = 0; i < runs; ++i) {
+                    runningTimes[i] -= compensationTimes[i];
                 }
-                System.out.println();
-                for (boolean debSelection : debSelectionOptions) {
-                    for (boolean jmetalComparison : jmetalComparisonOptions) {
-                        for (Variant variant : variants) {
-                            RunResult[] results = new RunResult[suppliers.size()];
-                            System.out.print("--------+--------+------+------");
-                            for (int i = 0; i < suppliers.size(); ++i) {
-                                results[i] = new RunResult(problem, suppliers.get(i), debSelection,
-                                                           jmetalComparison, variant, runDir, budget,
-                                                           generationSize, runs, payAttentionToTime, false);
-                                System.out.print("+----------------------");
-                            }
-                            System.out.println();
-                            System.out.print("        |        |      | HV   ");
-                            for (RunResult rr : results) {
-                                System.out.printf("| %.3e (%.2e) ", rr.hyperVolumeMed, rr.hyperVolumeIQR);
-                            }
-                            System.out.println();
-                            System.out.printf("    %s   |    %s   | %-4s | time ",
-                                    debSelection ? "+" : "-",
-                                    jmetalComparison ? "+" : "-",
-                                    variant.shortName()
-                            );
-                            for (RunResult rr : results) {
-                                System.out.printf("| %.3e (%.2e) ", rr.runningTimeMed, rr.runningTimeIQR);
+                RunResult rr = new RunResult(hyperVolumes, comparisons, runningTimes);
+
+                if (!keepSilent) {
+                    writeToFile(rr.hyperVolumes, namePrefix + "-hv.txt");
+                    writeToFile(rr.comparisons, namePrefix + "-cmp.txt");
+                    writeToFile(rr.runningTimes, namePrefix + "-time.txt");
+                    if (variant == Variant.AsynchronousSteadyState) {
+                        Arrays.sort(stalenesses);
+                        writeToFile(stalenesses, namePrefix + "-stale.txt");
+                    }
+                    if (StorageMetrics.ENABLED) {
+                        writeMetrics();
+                    }
+                    for (int t = 0; t < runs; ++t) {
+                        new File(namePrefix + "-" + t + ".ckpt").delete();
+                    }
+                }
+                result.complete(rr);
+            }
+
+            private void writeMetrics() {
+                // All runs are done when this is called, so the lock only publishes their updates
+                synchronized (metrics) {
+                    try (PrintWriter csv = new PrintWriter(namePrefix + "-metrics.csv");
+                         PrintWriter json = new PrintWriter(namePrefix + "-metrics.json")) {
+                        metrics.writeCsv(csv);
+                        metrics.writeJson(json);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+            }
+        }
+
+        private static RunResult await(Cell cell) {
+            try {
+                return cell.result.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+
+        /**
+         * Runs the whole configuration grid for the given problems.
+         *
+         * All runs of all cells are scheduled at once on a work-stealing pool, cells with larger budgets first,
+         * so that slow cells do not leave cores idle at the end. The cells whose outputs already exist
+         * and hold a value for each run are read from the files instead, so an interrupted sweep
+         * can be restarted with the same options.
+         * The tables are printed in the grid order as soon as their cells are done.
+         */
+        public void run(List<Problem> problems) {
+            List<Cell> cells = new ArrayList<>();
+            for (Problem problem : problems) {
+                for (int bgs = 0; bgs < budgets.size(); ++bgs) {
+                    for (boolean debSelection : debSelectionOptions) {
+                        for (boolean jmetalComparison : jmetalComparisonOptions) {
+                            for (Variant variant : variants) {
+                                for (Supplier<SolutionStorage> supplier : suppliers) {
+                                    cells.add(new Cell(problem, supplier, debSelection, jmetalComparison, variant,
+                                                       budgets.get(bgs), generationSizes.get(bgs), runs, false));
+                                }
                             }
-                            System.out.println();
-                            System.out.print( "        |        |      | cmps ");
-                            for (RunResult rr : results) {
-                                System.out.printf("| %.3e (%.2e) ", rr.comparisonMed, rr.comparisonIQR);
+                        }
+                    }
+                }
+            }
+            List<Cell> toCompute = new ArrayList<>();
+            for (Cell cell : cells) {
+                if (!cell.loadOutputs()) {
+                    toCompute.add(cell);
+                }
+            }
+
+            ForkJoinPool scheduler = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            try {
+                if (!toCompute.isEmpty()) {
+                    // warm up on the smallest budget
+                    List<Cell> warmUp = new ArrayList<>();
+                    for (Problem problem : problems) {
+                        for (boolean debSelection : debSelectionOptions) {
+                            for (boolean jmetalComparison : jmetalComparisonOptions) {
+                                for (Variant variant : variants) {
+                                    for (Supplier<SolutionStorage> supplier : suppliers) {
+                                        warmUp.add(new Cell(problem, supplier, debSelection, jmetalComparison, variant,
+                                                            budgets.get(0), generationSizes.get(0), 1, true));
+                                    }
+                                }
                             }
-                            System.out.println();
                         }
                     }
+                    for (Cell cell : warmUp) {
+                        cell.submit(scheduler);
+                    }
+                    for (Cell cell : warmUp) {
+                        await(cell);
+                    }
+                    toCompute.sort((l, r) -> Integer.compare(r.budget, l.budget));
+                    for (Cell cell : toCompute) {
+                        cell.submit(scheduler);
+                    }
                 }
-                System.out.print("--------+--------+------+------");
-                for (int i = 0; i < suppliers.size(); ++i) {
-                     System.out.print("+----------------------");
+                printTables(problems, cells);
+            } finally {
+                scheduler.shutdownNow();
+            }
+        }
+
+        private void printTables(List<Problem> problems, List<Cell> cells) {
+            Iterator<Cell> cellIterator = cells.iterator();
+            for (Problem problem : problems) {
+                for (int bgs = 0; bgs < budgets.size(); ++bgs) {
+                    int budget = budgets.get(bgs);
+                    int generationSize = generationSizes.get(bgs);
+                    System.out.println("====================================================");
+                    System.out.printf("| %-4s | Budget %-9d | Generation size %-6d |\n", problem.getName(), budget, generationSize);
+                    System.out.println("====================================================");
+
+                    System.out.print(" DebSel | jMetal | Vari |      ");
+                    for (int i = 0; i < suppliers.size(); ++i) {
+                        System.out.printf("| %-20s ", suppliers.get(i).get().getName());
+                    }
+                    System.out.println();
+                    for (boolean debSelection : debSelectionOptions) {
+                        for (boolean jmetalComparison : jmetalComparisonOptions) {
+                            for (Variant variant : variants) {
+                                RunResult[] results = new RunResult[suppliers.size()];
+                                System.out.print("--------+--------+------+------");
+                                for (int i = 0; i < suppliers.size(); ++i) {
+                                    results[i] = await(cellIterator.next());
+                                    System.out.print("+----------------------");
+                                }
+                                System.out.println();
+                                System.out.print("        |        |      | HV   ");
+                                for (RunResult rr : results) {
+                                    System.out.printf("| %.3e (%.2e) ", rr.hyperVolumeMed, rr.hyperVolumeIQR);
+                                }
+                                System.out.println();
+                                System.out.printf("    %s   |    %s   | %-4s | time ",
+                                        debSelection ? "+" : "-",
+                                        jmetalComparison ? "+" : "-",
+                                        variant.shortName()
+                                );
+                                for (RunResult rr : results) {
+                                    System.out.printf("| %.3e (%.2e) ", rr.runningTimeMed, rr.runningTimeIQR);
+                                }
+                                System.out.println();
+                                System.out.print( "        |        |      | cmps ");
+                                for (RunResult rr : results) {
+                                    System.out.printf("| %.3e (%.2e) ", rr.comparisonMed, rr.comparisonIQR);
+                                }
+                                System.out.println();
+                            }
+                        }
+                    }
+                    System.out.print("--------+--------+------+------");
+                    for (int i = 0; i < suppliers.size(); ++i) {
+                         System.out.print("+----------------------");
+                    }
+                    System.out.println();
                 }
-                System.out.println();
             }
         }
     }
@@ -258,6 +502,9 @@ public class Experiments {
         List<Integer> budgets = new ArrayList<>();
         List<Integer> generationSizes = new ArrayList<>();
         List<Boolean> payAttentionToTime = new ArrayList<>();
+        List<Integer> evaluationThreads = new ArrayList<>();
+        List<Integer> objectiveCounts = new ArrayList<>();
+        List<Integer> checkpointIntervals = new ArrayList<>();
 
         Set<String> usedOptions = new HashSet<>();
         Map<String, Runnable> actions = new HashMap<>();
@@ -265,13 +512,18 @@ public class Experiments {
 
         actions.put("-S:inds-hull", () -> suppliers.add(() -> new ru.ifmo.steady.inds.StorageHull()));
         actions.put("-S:inds", () -> suppliers.add(() -> new ru.ifmo.steady.inds.Storage()));
+        actions.put("-S:inds-hv", () -> suppliers.add(() -> new ru.ifmo.steady.inds.StorageHV()));
         actions.put("-S:enlu", () -> suppliers.add(() -> new ru.ifmo.steady.enlu.Storage()));
         actions.put("-S:deb",  () -> suppliers.add(() -> new ru.ifmo.steady.debNDS.Storage()));
+        actions.put("-S:deb-incr", () -> suppliers.add(() -> new ru.ifmo.steady.debNDS.StorageIncremental()));
+        actions.put("-S:soa",  () -> suppliers.add(() -> new ru.ifmo.steady.soa.Storage()));
+        actions.put("-S:mo",   () -> suppliers.add(() -> new ru.ifmo.steady.mo.Storage()));
 
         actions.put("-V:pss",  () -> variants.add(Variant.PureSteadyState));
         actions.put("-V:sisr", () -> variants.add(Variant.SteadyInsertionSteadyRemoval));
         actions.put("-V:bisr", () -> variants.add(Variant.BulkInsertionSteadyRemoval));
         actions.put("-V:bibr", () -> variants.add(Variant.BulkInsertionBulkRemoval));
+        actions.put("-V:apss", () -> variants.add(Variant.AsynchronousSteadyState));
 
         actions.put("-O:debselTrue",   () -> debSelection.add(true));
         actions.put("-O:debselFalse",  () -> debSelection.add(false));
@@ -286,6 +538,36 @@ public class Experiments {
             System.out.println("Error: " + r + " is not a number!");
             runs.clear();
         }});
+        setters.put("-T", (r) -> { try {
+            int threads = Integer.parseInt(r);
+            if (threads <= 0) {
+                throw new NumberFormatException();
+            }
+            evaluationThreads.add(threads);
+        } catch (NumberFormatException ex) {
+            System.out.println("Error: option -T expects a positive number of evaluation threads, '" + r + "' found");
+            runs.clear();
+        }});
+        setters.put("-M", (r) -> { try {
+            int objectives = Integer.parseInt(r);
+            if (objectives < 2) {
+                throw new NumberFormatException();
+            }
+            objectiveCounts.add(objectives);
+        } catch (NumberFormatException ex) {
+            System.out.println("Error: option -M expects a number of objectives which is at least 2, '" + r + "' found");
+            runs.clear();
+        }});
+        setters.put("-C", (r) -> { try {
+            int interval = Integer.parseInt(r);
+            if (interval <= 0) {
+                throw new NumberFormatException();
+            }
+            checkpointIntervals.add(interval);
+        } catch (NumberFormatException ex) {
+            System.out.println("Error: option -C expects a positive number of iterations between checkpoints, '" + r + "' found");
+            runs.clear();
+        }});
         setters.put("-N", (s) -> { try {
             int colon = s.indexOf(':');
             if (colon == -1) {
@@ -304,6 +586,9 @@ public class Experiments {
         knownOptions.add("-D=<run-dir>");
         knownOptions.add("-R=<run-count>");
         knownOptions.add("-N=<budget>:<generationSize>");
+        knownOptions.add("-T=<evaluation-threads>");
+        knownOptions.add("-M=<objectives>");
+        knownOptions.add("-C=<iterations-between-checkpoints>");
 
         for (String s : args) {
             int eq = s.indexOf('=');
@@ -355,8 +640,31 @@ public class Experiments {
             throw new RuntimeException();
         }
 
+        int objectives = objectiveCounts.isEmpty() ? 2 : objectiveCounts.get(0);
+        for (Supplier<SolutionStorage> supplier : suppliers) {
+            SolutionStorage storage = supplier.get();
+            if (!storage.supportsObjectiveCount(objectives)) {
+                System.out.println("Error: storage " + storage.getName() + " does not support " + objectives + " objectives!");
+                System.exit(1);
+                throw new RuntimeException();
+            }
+        }
+
+        ExecutorService evaluationExecutor = null;
+        int evaluationTasks = 0;
+        if (!evaluationThreads.isEmpty()) {
+            evaluationTasks = evaluationThreads.get(0);
+            evaluationExecutor = Executors.newFixedThreadPool(evaluationTasks, r -> {
+                Thread thread = new Thread(r);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
         Config config = new Config(suppliers, variants, debSelection, jmetalComparison, budgets,
-                                   generationSizes, runDir.get(0), runs.get(0), payAttentionToTime.size() > 0);
+                                   generationSizes, runDir.get(0), runs.get(0), payAttentionToTime.size() > 0,
+                                   evaluationExecutor, evaluationTasks,
+                                   checkpointIntervals.isEmpty() ? 0 : checkpointIntervals.get(0));
         new File(runDir.get(0)).mkdirs();
         for (int bgs = 0; bgs < budgets.size(); ++bgs) {
             new File(runDir.get(0), budgets.get(bgs) + "-" + generationSizes.get(bgs)).mkdir();
@@ -368,28 +676,40 @@ public class Experiments {
             System.exit(1);
         }
 
-        config.run(ZDT1.instance());
-        config.run(ZDT2.instance());
-        config.run(ZDT3.instance());
-        config.run(ZDT4.instance());
-        config.run(ZDT6.instance());
-
-        config.run(DTLZ1.instance());
-        config.run(DTLZ2.instance());
-        config.run(DTLZ3.instance());
-        config.run(DTLZ4.instance());
-        config.run(DTLZ5.instance());
-        config.run(DTLZ6.instance());
-        config.run(DTLZ7.instance());
-
-        config.run(WFG1.instance());
-        config.run(WFG2.instance());
-        config.run(WFG3.instance());
-        config.run(WFG4.instance());
-        config.run(WFG5.instance());
-        config.run(WFG6.instance());
-        config.run(WFG7.instance());
-        config.run(WFG8.instance());
-        config.run(WFG9.instance());
+        List<Problem> problems = new ArrayList<>();
+        if (objectives > 2) {
+            problems.add(DTLZ1.instance(objectives));
+            problems.add(DTLZ2.instance(objectives));
+            problems.add(DTLZ3.instance(objectives));
+            problems.add(DTLZ4.instance(objectives));
+            problems.add(DTLZ5.instance(objectives));
+            problems.add(DTLZ6.instance(objectives));
+            problems.add(DTLZ7.instance(objectives));
+        } else {
+            problems.add(ZDT1.instance());
+            problems.add(ZDT2.instance());
+            problems.add(ZDT3.instance());
+            problems.add(ZDT4.instance());
+            problems.add(ZDT6.instance());
+
+            problems.add(DTLZ1.instance());
+            problems.add(DTLZ2.instance());
+            problems.add(DTLZ3.instance());
+            problems.add(DTLZ4.instance());
+            problems.add(DTLZ5.instance());
+            problems.add(DTLZ6.instance());
+            problems.add(DTLZ7.instance());
+
+            problems.add(WFG1.instance());
+            problems.add(WFG2.instance());
+            problems.add(WFG3.instance());
+            problems.add(WFG4.instance());
+            problems.add(WFG5.instance());
+            problems.add(WFG6.instance());
+            problems.add(WFG7.instance());
+            problems.add(WFG8.instance());
+            problems.add(WFG9.instance());
+        }
+        config.run(problems);
     }
 }
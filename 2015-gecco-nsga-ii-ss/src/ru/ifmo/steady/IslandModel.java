@@ -0,0 +1,455 @@
+package ru.ifmo.steady;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import ru.ifmo.steady.problem.*;
+import ru.ifmo.steady.util.RandomContext;
+import ru.ifmo.steady.util.RingQueue;
+import ru.ifmo.steady.NSGA2.Variant;
+
+/**
+ * Runs several {@link NSGA2} instances, the islands, each with its own storage and on its own thread,
+ * which exchange their best solutions from time to time.
+ *
+ * Every {@code migrationInterval} iterations, an island sends up to {@code migrants} random solutions
+ * of its first layer to the inboxes of its neighbours, and then inserts the solutions from its own inbox
+ * by {@link SolutionStorage#add(Solution)} followed by {@link SolutionStorage#removeWorst()}, so any storage works.
+ * The inboxes are bounded lock-free queues, so islands never wait for each other;
+ * the migrants which do not fit into a full inbox are dropped.
+ *
+ * At every migration, an island also records the time since the start and its first layer.
+ * After the run, these records make a trace of the hypervolume of the union of all first layers
+ * versus the wall-clock time, taken when the slowest island reached the corresponding migration.
+ */
+public class IslandModel {
+    public static enum Topology {
+        Ring("ring"), Random("random"), FullyConnected("full");
+
+        private final String shortName;
+        private Topology(String shortName) {
+            this.shortName = shortName;
+        }
+        public String shortName() {
+            return shortName;
+        }
+    }
+
+    private final Problem problem;
+    private final Supplier<SolutionStorage> storageSupplier;
+    private final int islands;
+    private final int storageSize;
+    private final boolean debSelection, jmetalComparison;
+    private final Variant variant;
+    private final Topology topology;
+    private final int migrationInterval;
+    private final int migrants;
+
+    public IslandModel(Problem problem, Supplier<SolutionStorage> storageSupplier, int islands, int storageSize,
+                       boolean debSelection, boolean jmetalComparison, Variant variant,
+                       Topology topology, int migrationInterval, int migrants) {
+        if (islands <= 0 || migrationInterval <= 0 || migrants < 0) {
+            throw new IllegalArgumentException("The number of islands and the migration interval must be positive, "
+                                               + "and the number of migrants must be non-negative");
+        }
+        if (variant == Variant.AsynchronousSteadyState) {
+            throw new IllegalArgumentException("Islands evaluate offspring serially, use PSS instead of APSS");
+        }
+        this.problem = problem;
+        this.storageSupplier = storageSupplier;
+        this.islands = islands;
+        this.storageSize = storageSize;
+        this.debSelection = debSelection;
+        this.jmetalComparison = jmetalComparison;
+        this.variant = variant;
+        this.topology = topology;
+        this.migrationInterval = migrationInterval;
+        this.migrants = migrants;
+    }
+
+    /**
+     * A point of the trace: the wall-clock time and the total number of evaluations
+     * when all islands reached the same migration, and the hypervolume of their first layers at that moment.
+     */
+    public static final class TracePoint {
+        public final double seconds;
+        public final long evaluations;
+        public final double hyperVolume;
+
+        TracePoint(double seconds, long evaluations, double hyperVolume) {
+            this.seconds = seconds;
+            this.evaluations = evaluations;
+            this.hyperVolume = hyperVolume;
+        }
+    }
+
+    public static final class Result {
+        public final List<TracePoint> trace;
+        public final long migrantsSent, migrantsDropped;
+
+        Result(List<TracePoint> trace, long migrantsSent, long migrantsDropped) {
+            this.trace = Collections.unmodifiableList(trace);
+            this.migrantsSent = migrantsSent;
+            this.migrantsDropped = migrantsDropped;
+        }
+
+        public TracePoint last() {
+            return trace.get(trace.size() - 1);
+        }
+
+        /**
+         * Returns the time when the hypervolume first reached the given value, or infinity if it never did.
+         */
+        public double secondsToReach(double hyperVolume) {
+            for (TracePoint p : trace) {
+                if (p.hyperVolume >= hyperVolume) {
+                    return p.seconds;
+                }
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+
+    private static final class Record {
+        final long nanos;
+        final int evaluations;
+        final List<Solution> front;
+
+        Record(long nanos, int evaluations, List<Solution> front) {
+            this.nanos = nanos;
+            this.evaluations = evaluations;
+            this.front = front;
+        }
+    }
+
+    private final class Island implements Runnable {
+        final int id;
+        final RandomContext random;
+        final int budget;
+        final long startNanos;
+        final List<RingQueue<Solution>> inboxes;
+        final SolutionStorage storage = storageSupplier.get();
+        final NSGA2 algo;
+        final List<Record> records = new ArrayList<>();
+        final AtomicLong sent, dropped;
+
+        Island(int id, RandomContext random, int budget, long startNanos, List<RingQueue<Solution>> inboxes,
+               AtomicLong sent, AtomicLong dropped) {
+            this.id = id;
+            this.random = random;
+            this.algo = new NSGA2(problem, storage, storageSize, debSelection, jmetalComparison, variant, random);
+            this.budget = budget;
+            this.startNanos = startNanos;
+            this.inboxes = inboxes;
+            this.sent = sent;
+            this.dropped = dropped;
+        }
+
+        public void run() {
+            algo.initialize();
+            record();
+            int iterations = 0;
+            for (int i = storageSize; i < budget; i += storageSize) {
+                algo.performIteration();
+                if (++iterations % migrationInterval == 0) {
+                    emigrate(random.genetic());
+                    immigrate();
+                    record();
+                }
+            }
+            if (iterations % migrationInterval != 0) {
+                record();
+            }
+        }
+
+        private void record() {
+            List<Solution> front = algo.paretoFront();
+            records.add(new Record(System.nanoTime() - startNanos, algo.getEvaluations(), front));
+        }
+
+        private void emigrate(Random random) {
+            if (islands == 1 || migrants == 0) {
+                return;
+            }
+            List<Solution> front = algo.paretoFront();
+            // a random subset of the first layer, by a partial Fisher-Yates shuffle
+            int count = Math.min(migrants, front.size());
+            for (int i = 0; i < count; ++i) {
+                Collections.swap(front, i, i + random.nextInt(front.size() - i));
+            }
+            switch (topology) {
+                case Ring: {
+                    send(inboxes.get((id + 1) % islands), front, count);
+                } break;
+                case Random: {
+                    int target = random.nextInt(islands - 1);
+                    send(inboxes.get(target < id ? target : target + 1), front, count);
+                } break;
+                case FullyConnected: {
+                    for (int target = 0; target < islands; ++target) {
+                        if (target != id) {
+                            send(inboxes.get(target), front, count);
+                        }
+                    }
+                } break;
+            }
+        }
+
+        private void send(RingQueue<Solution> inbox, List<Solution> front, int count) {
+            for (int i = 0; i < count; ++i) {
+                if (inbox.offer(front.get(i))) {
+                    sent.incrementAndGet();
+                } else {
+                    dropped.incrementAndGet();
+                }
+            }
+        }
+
+        private void immigrate() {
+            RingQueue<Solution> inbox = inboxes.get(id);
+            Solution s;
+            while ((s = inbox.poll()) != null) {
+                storage.add(s);
+                storage.removeWorst();
+            }
+        }
+    }
+
+    /**
+     * Runs the islands, each for an equal part of the given total budget of evaluations.
+     *
+     * @param budget the total number of evaluations of all islands.
+     * @param seed the seed of the run, from which the seeds of the islands are derived.
+     * @return the trace of the hypervolume versus time.
+     */
+    public Result run(int budget, long seed) {
+        List<RingQueue<Solution>> inboxes = new ArrayList<>(islands);
+        // enough for the migrants sent to an island during a few migrations
+        int capacity = Math.max(1, 4 * migrants * (topology == Topology.Ring ? 1 : islands - 1));
+        for (int i = 0; i < islands; ++i) {
+            inboxes.add(new RingQueue<>(capacity));
+        }
+        AtomicLong sent = new AtomicLong(), dropped = new AtomicLong();
+        RandomContext root = new RandomContext(seed);
+        ExecutorService executor = Executors.newFixedThreadPool(islands, r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            long startNanos = System.nanoTime();
+            List<Island> all = new ArrayList<>(islands);
+            List<Future<?>> futures = new ArrayList<>(islands);
+            for (int i = 0; i < islands; ++i) {
+                Island island = new Island(i, root.split(i), budget / islands,
+                                           startNanos, inboxes, sent, dropped);
+                all.add(island);
+                futures.add(executor.submit(island));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(ex);
+                } catch (ExecutionException ex) {
+                    throw new RuntimeException(ex.getCause());
+                }
+            }
+            return new Result(trace(all), sent.get(), dropped.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<TracePoint> trace(List<Island> all) {
+        int objectives = problem.objectiveCount();
+        double[] min = new double[objectives];
+        double[] max = new double[objectives];
+        for (int i = 0; i < objectives; ++i) {
+            min[i] = problem.frontMin(i);
+            max[i] = problem.frontMax(i);
+        }
+        int points = all.get(0).records.size();
+        List<TracePoint> rv = new ArrayList<>(points);
+        for (int p = 0; p < points; ++p) {
+            long nanos = 0, evaluations = 0;
+            List<Solution> union = new ArrayList<>();
+            for (Island island : all) {
+                Record record = island.records.get(p);
+                nanos = Math.max(nanos, record.nanos);
+                evaluations += record.evaluations;
+                union.addAll(record.front);
+            }
+            SolutionStorage storage = storageSupplier.get();
+            storage.setRandomContext(new RandomContext(p));
+            storage.addAll(union.toArray(new Solution[union.size()]));
+            rv.add(new TracePoint(nanos / 1e9, evaluations, storage.hyperVolume(min, max)));
+        }
+        return rv;
+    }
+
+    private static void usage(String message) {
+        System.out.println("Error: " + message);
+        System.out.println("Usage: IslandModel [options]");
+        System.out.println("    -P=<problem>              problem name, default ZDT1");
+        System.out.println("    -S=<storage>              inds, inds-hull, inds-hv, enlu, deb, deb-incr, soa; default inds");
+        System.out.println("    -V=<variant>              pss, sisr, bisr, bibr; default pss");
+        System.out.println("    -N=<budget>:<generation>  total budget and population size of an island, default 250000:100");
+        System.out.println("    -K=<islands>              number of islands, default the number of processors");
+        System.out.println("    -T=<topology>             ring, random, full; default ring");
+        System.out.println("    -I=<iterations>           iterations between migrations, default 10");
+        System.out.println("    -E=<migrants>             solutions sent per migration, default 5");
+        System.out.println("    -R=<seed>                 seed of the runs, default 41117");
+        System.exit(1);
+    }
+
+    private static int intOption(Map<String, String> options, String key, int defaultValue, int min) {
+        String value = options.remove(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int rv = Integer.parseInt(value);
+            if (rv < min) {
+                throw new NumberFormatException();
+            }
+            return rv;
+        } catch (NumberFormatException ex) {
+            usage("option " + key + " expects a number which is at least " + min + ", '" + value + "' found");
+            throw ex;
+        }
+    }
+
+    private static void printTrace(String name, Result result) {
+        System.out.println("  " + name + ":");
+        System.out.println("    time, s     | evaluations | HV");
+        for (TracePoint p : result.trace) {
+            System.out.printf("    %11.3f | %11d | %.6f%n", p.seconds, p.evaluations, p.hyperVolume);
+        }
+    }
+
+    /**
+     * Runs a single island and then the given number of islands with the same total budget,
+     * prints their traces, and compares the time both need to reach the hypervolume
+     * which both of them reach.
+     */
+    public static void main(String[] args) {
+        Locale.setDefault(Locale.US);
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("-") || eq == -1) {
+                usage("unknown argument " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        Map<String, Supplier<SolutionStorage>> storages = new LinkedHashMap<>();
+        storages.put("inds", () -> new ru.ifmo.steady.inds.Storage());
+        storages.put("inds-hull", () -> new ru.ifmo.steady.inds.StorageHull());
+        storages.put("inds-hv", () -> new ru.ifmo.steady.inds.StorageHV());
+        storages.put("enlu", () -> new ru.ifmo.steady.enlu.Storage());
+        storages.put("deb", () -> new ru.ifmo.steady.debNDS.Storage());
+        storages.put("deb-incr", () -> new ru.ifmo.steady.debNDS.StorageIncremental());
+        storages.put("soa", () -> new ru.ifmo.steady.soa.Storage());
+
+        Problem[] problems = {
+            ZDT1.instance(), ZDT2.instance(), ZDT3.instance(), ZDT4.instance(), ZDT6.instance(),
+            DTLZ1.instance(), DTLZ2.instance(), DTLZ3.instance(), DTLZ4.instance(),
+            DTLZ5.instance(), DTLZ6.instance(), DTLZ7.instance(),
+            WFG1.instance(), WFG2.instance(), WFG3.instance(), WFG4.instance(), WFG5.instance(),
+            WFG6.instance(), WFG7.instance(), WFG8.instance(), WFG9.instance()
+        };
+
+        String problemName = options.getOrDefault("-P", "ZDT1");
+        options.remove("-P");
+        Problem problem = null;
+        for (Problem p : problems) {
+            if (p.getName().equals(problemName)) {
+                problem = p;
+            }
+        }
+        if (problem == null) {
+            usage("unknown problem " + problemName);
+        }
+
+        Supplier<SolutionStorage> storage = storages.get(options.getOrDefault("-S", "inds"));
+        if (storage == null) {
+            usage("unknown storage " + options.get("-S"));
+        }
+        options.remove("-S");
+
+        Variant variant = null;
+        String variantName = options.getOrDefault("-V", "pss");
+        options.remove("-V");
+        for (Variant v : Variant.all()) {
+            if (v != Variant.AsynchronousSteadyState && v.shortName().equalsIgnoreCase(variantName)) {
+                variant = v;
+            }
+        }
+        if (variant == null) {
+            usage("unknown variant " + variantName);
+        }
+
+        Topology topology = null;
+        String topologyName = options.getOrDefault("-T", "ring");
+        options.remove("-T");
+        for (Topology t : Topology.values()) {
+            if (t.shortName().equals(topologyName)) {
+                topology = t;
+            }
+        }
+        if (topology == null) {
+            usage("unknown topology " + topologyName);
+        }
+
+        int budget = 250000, generationSize = 100;
+        String sizes = options.remove("-N");
+        if (sizes != null) {
+            int colon = sizes.indexOf(':');
+            try {
+                budget = Integer.parseInt(sizes.substring(0, Math.max(colon, 0)));
+                generationSize = Integer.parseInt(sizes.substring(colon + 1));
+            } catch (NumberFormatException ex) {
+                usage("option -N expects the argument <budget>:<generationSize>, '" + sizes + "' found");
+            }
+        }
+        int islands = intOption(options, "-K", Runtime.getRuntime().availableProcessors(), 1);
+        int interval = intOption(options, "-I", 10, 1);
+        int migrants = intOption(options, "-E", 5, 0);
+        int seed = intOption(options, "-R", 41117, 0);
+        if (!options.isEmpty()) {
+            usage("unknown options " + options.keySet());
+        }
+
+        IslandModel single = new IslandModel(problem, storage, 1, generationSize, true, false, variant,
+                                             topology, interval, migrants);
+        IslandModel many = new IslandModel(problem, storage, islands, generationSize, true, false, variant,
+                                           topology, interval, migrants);
+        // warm up
+        single.run(budget / 10, seed);
+        many.run(budget / 10, seed);
+
+        Result singleResult = single.run(budget, seed);
+        Result manyResult = many.run(budget, seed);
+
+        System.out.printf("%s, %s, %s, budget %d, population %d, migration of %d every %d iterations over %s%n",
+                          problem.getName(), storage.get().getName(), variant.shortName(), budget, generationSize,
+                          migrants, interval, topology.shortName());
+        printTrace("1 island", singleResult);
+        printTrace(islands + " islands", manyResult);
+        System.out.printf("  migrants sent %d, dropped %d%n", manyResult.migrantsSent, manyResult.migrantsDropped);
+
+        double target = Math.min(singleResult.last().hyperVolume, manyResult.last().hyperVolume);
+        double singleTime = singleResult.secondsToReach(target);
+        double manyTime = manyResult.secondsToReach(target);
+        System.out.printf("  HV %.6f reached in %.3f s by 1 island and in %.3f s by %d islands, speedup %.2f%n",
+                          target, singleTime, manyTime, islands, singleTime / manyTime);
+    }
+}
@@ -1,16 +1,20 @@
 package ru.ifmo.steady;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.io.*;
+import java.nio.ByteBuffer;
 
 import ru.ifmo.steady.util.FastRandom;
+import ru.ifmo.steady.util.RandomContext;
 
 public class NSGA2 {
     public static enum Variant {
         PureSteadyState("PSS"),
         SteadyInsertionSteadyRemoval("SISR"),
         BulkInsertionSteadyRemoval("BISR"),
-        BulkInsertionBulkRemoval("BIBR");
+        BulkInsertionBulkRemoval("BIBR"),
+        AsynchronousSteadyState("APSS");
 
         private final String shortName;
         private Variant(String shortName) {
@@ -26,10 +30,6 @@ public class NSGA2 {
         }
     }
 
-    private static final double mutationEta = 20;
-    private static final double crossoverEta = 20;
-    private static final double EPS = 1e-15;
-
     private static final int POOL_SIZE = 10;
 
     private final Problem problem;
@@ -37,22 +37,49 @@ public class NSGA2 {
     private final int storageSize;
     private final boolean jmetalComparison;
     private final Variant variant;
+    private final RandomContext random;
 
     private int evaluations;
-    private final double mutationProbability;
+    private final Variation variation;
+    // Offspring of a generation and their objectives, one row per offspring
+    private final double[] generation;
+    private final double[] generationObjectives;
     private int[] permutation;
     private int index;
+    private boolean hyperVolumeTracked = false;
 
     private double[][] testPool;
 
+    private ExecutorService evaluationExecutor;
+    private int evaluationTasks;
+
+    private CompletionService<Bred> asyncService;
+    private int asyncInFlight;
+    private int insertions;
+    private long stalenessSum;
+    private int stalenessMax;
+    private long[] stalenessHistogram = new long[16];
+
+    /**
+     * Creates an instance which takes all its randomness, and the randomness of the storage,
+     * from the given context, so that runs with the same seed are the same regardless of the thread.
+     */
     public NSGA2(Problem problem, SolutionStorage storage, int storageSize,
-                 boolean debSelection, boolean jmetalComparison, Variant variant) {
+                 boolean debSelection, boolean jmetalComparison, Variant variant, RandomContext random) {
+        if (!storage.supportsObjectiveCount(problem.objectiveCount())) {
+            throw new IllegalArgumentException("Storage " + storage.getName() + " does not support "
+                                               + problem.objectiveCount() + " objectives");
+        }
         this.problem = problem;
         this.storage = storage;
         this.storageSize = storageSize;
-        this.mutationProbability = 1.0 / problem.inputDimension();
+        this.variation = new Variation(problem.inputDimension(), 1.0 / problem.inputDimension());
+        this.generation = new double[storageSize * problem.inputDimension()];
+        this.generationObjectives = new double[storageSize * problem.objectiveCount()];
         this.jmetalComparison = jmetalComparison;
         this.variant = variant;
+        this.random = random;
+        storage.setRandomContext(random);
         if (debSelection) {
             permutation = new int[storageSize];
             for (int i = 0; i < storageSize; ++i) {
@@ -61,8 +88,41 @@ public class NSGA2 {
         }
         testPool = new double[POOL_SIZE][];
         for (int i = 0; i < POOL_SIZE; ++i) {
-            testPool[i] = problem.generate();
+            testPool[i] = problem.generate(random.genetic());
+        }
+    }
+
+    /**
+     * Makes the variants which build a whole generation before inserting it
+     * (SISR, BISR and BIBR) evaluate this generation using the given executor.
+     *
+     * Selection, crossover and mutation still happen in the calling thread,
+     * and the generation is split into the given number of contiguous tasks.
+     * Evaluation draws no random numbers, since all the randomness of a run comes from
+     * the algorithm's {@link RandomContext}, so such a run is exactly the same as the serial one.
+     *
+     * The asynchronous variant (APSS) instead keeps the given number of offspring
+     * under evaluation at any time. Whenever one of them is evaluated, it is inserted
+     * into the storage, the worst solution is removed, and a new offspring is bred
+     * from the current contents of the storage. The order of insertions then depends
+     * on evaluation times, so such runs are not reproducible. Evaluations are counted
+     * when offspring are dispatched, so {@link #getEvaluations()} never falls behind the work
+     * actually done, and the offspring still under evaluation at the end of a run count
+     * against the budget even though they are never inserted. Without an executor,
+     * this variant behaves exactly as PSS.
+     *
+     * @param executor the executor to evaluate offspring on, or {@code null} to evaluate serially.
+     * @param tasks the number of tasks a generation is split into,
+     *              or the number of offspring under evaluation for the asynchronous variant.
+     */
+    public void setParallelEvaluation(ExecutorService executor, int tasks) {
+        if (executor != null && tasks <= 0) {
+            throw new IllegalArgumentException("The number of tasks must be positive, found " + tasks);
         }
+        discardInFlight();
+        this.asyncService = null;
+        this.evaluationExecutor = executor;
+        this.evaluationTasks = tasks;
     }
 
     public void dump(String fileName) {
@@ -73,7 +133,11 @@ public class NSGA2 {
                 out.println(layer + ":");
                 while (f.hasNext()) {
                     Solution s = f.next();
-                    out.println(s.getNormalizedX(0, 1) + " " + s.getNormalizedY(0, 1));
+                    StringBuilder line = new StringBuilder();
+                    for (int i = 0, objectives = s.getObjectiveCount(); i < objectives; ++i) {
+                        line.append(i == 0 ? "" : " ").append(s.getObjective(i));
+                    }
+                    out.println(line);
                 }
                 out.println();
             }
@@ -82,23 +146,213 @@ public class NSGA2 {
         }
     }
 
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    private static final int SNAPSHOT_MAGIC = 0x4E534733;
+
+    /**
+     * Returns the size in bytes of the snapshots written by {@link #writeSnapshot(ByteBuffer)}.
+     * It depends only on the problem and on the population size, so all snapshots of a run are of the same size.
+     */
+    public int snapshotSize() {
+        int perSolution = 4 + 8 * (problem.objectiveCount() + problem.inputDimension());
+        int permutationSize = permutation == null ? 0 : permutation.length;
+        return 4 * 7 + 4 * permutationSize + FastRandom.STATE_BYTES + 8 + 4 + storageSize * perSolution
+             + FastRandom.STATE_BYTES + storage.internalStateSize(storageSize);
+    }
+
+    /**
+     * Writes the state of the run between two iterations to the given buffer in a compact binary form.
+     *
+     * The snapshot consists of the evaluation count, the state of Deb's selection,
+     * the state of the genetic random number generator of the run, the comparison count,
+     * the solutions of the storage layer by layer with their genotypes,
+     * the internal state of the storage, such as the heap keys of its trees,
+     * and the state of the other random number generator of the run, which produces such keys.
+     * Restoring it with {@link #readSnapshot(ByteBuffer)} makes the run continue exactly as it would without interruption,
+     * including the comparison counts.
+     *
+     * The asynchronous variant depends on evaluation times, so its runs cannot be resumed.
+     *
+     * @param buffer the buffer to write {@link #snapshotSize()} bytes to.
+     */
+    public void writeSnapshot(ByteBuffer buffer) {
+        if (variant == Variant.AsynchronousSteadyState) {
+            throw new IllegalStateException("Snapshots of the asynchronous variant are not supported");
+        }
+        if (storage.size() != storageSize) {
+            throw new IllegalStateException("Snapshots can be taken only between iterations");
+        }
+        buffer.putInt(SNAPSHOT_MAGIC);
+        buffer.putInt(storageSize);
+        buffer.putInt(problem.objectiveCount());
+        buffer.putInt(problem.inputDimension());
+        buffer.putInt(evaluations);
+        buffer.putInt(index);
+        if (permutation == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(permutation.length);
+            for (int p : permutation) {
+                buffer.putInt(p);
+            }
+        }
+        random.genetic().saveState(buffer);
+        buffer.putLong(storage.getComparisonCounter().get());
+        int layers = storage.getLayerCount();
+        buffer.putInt(layers);
+        for (int layer = 0; layer < layers; ++layer) {
+            Iterator<Solution> it = storage.getLayer(layer);
+            while (it.hasNext()) {
+                Solution s = it.next();
+                buffer.putInt(layer);
+                for (int i = 0, objectives = s.getObjectiveCount(); i < objectives; ++i) {
+                    buffer.putDouble(s.getObjective(i));
+                }
+                for (double v : s.getInput()) {
+                    buffer.putDouble(v);
+                }
+            }
+        }
+        storage.writeInternalState(buffer);
+        random.etc().saveState(buffer);
+    }
+
+    /**
+     * Restores the state of the run written by {@link #writeSnapshot(ByteBuffer)}.
+     * This replaces {@link #initialize()}, and the next iteration continues the saved run.
+     *
+     * @param buffer the buffer to read the snapshot from.
+     */
+    public void readSnapshot(ByteBuffer buffer) {
+        if (variant == Variant.AsynchronousSteadyState) {
+            throw new IllegalStateException("Snapshots of the asynchronous variant are not supported");
+        }
+        int objectives = problem.objectiveCount();
+        int inputDimension = problem.inputDimension();
+        if (buffer.getInt() != SNAPSHOT_MAGIC) {
+            throw new IllegalArgumentException("Not a snapshot");
+        }
+        if (buffer.getInt() != storageSize || buffer.getInt() != objectives || buffer.getInt() != inputDimension) {
+            throw new IllegalArgumentException("The snapshot is of a different run configuration");
+        }
+        int savedEvaluations = buffer.getInt();
+        int savedIndex = buffer.getInt();
+        int permutationSize = buffer.getInt();
+        if (permutationSize != (permutation == null ? -1 : permutation.length)) {
+            throw new IllegalArgumentException("The snapshot is of a different run configuration");
+        }
+        for (int i = 0; i < permutationSize; ++i) {
+            permutation[i] = buffer.getInt();
+        }
+        random.genetic().loadState(buffer);
+        long comparisons = buffer.getLong();
+        int layerCount = buffer.getInt();
+        List<List<Solution>> layers = new ArrayList<>(layerCount);
+        for (int i = 0; i < storageSize; ++i) {
+            int layer = buffer.getInt();
+            if (layer == layers.size()) {
+                layers.add(new ArrayList<>());
+            } else if (layer != layers.size() - 1) {
+                throw new IllegalArgumentException("Corrupted snapshot: layer " + layer + " is out of order");
+            }
+            double[] values = new double[objectives];
+            for (int j = 0; j < objectives; ++j) {
+                values[j] = buffer.getDouble();
+            }
+            double[] input = new double[inputDimension];
+            for (int j = 0; j < inputDimension; ++j) {
+                input[j] = buffer.getDouble();
+            }
+            layers.get(layer).add(new Solution(values, input));
+        }
+        if (layers.size() != layerCount) {
+            throw new IllegalArgumentException("Corrupted snapshot: expected " + layerCount + " layers, found " + layers.size());
+        }
+
+        discardInFlight();
+        storage.restoreLayers(layers);
+        storage.readInternalState(buffer);
+        random.etc().loadState(buffer);
+        storage.getComparisonCounter().set(comparisons);
+        evaluations = savedEvaluations;
+        index = savedIndex;
+    }
+
     public void initialize() {
+        discardInFlight();
         storage.clear();
         evaluations = 0;
+        insertions = 0;
+        stalenessSum = 0;
+        stalenessMax = 0;
+        Arrays.fill(stalenessHistogram, 0);
+        int dimension = problem.inputDimension();
         for (int i = 0; i < storageSize; ++i) {
-            double[] ind = problem.generate();
-            Solution sol = problem.evaluate(ind);
-            ++evaluations;
+            System.arraycopy(problem.generate(random.genetic()), 0, generation, i * dimension, dimension);
+        }
+        Solution[] sols = new Solution[storageSize];
+        evaluateGeneration(0, storageSize, sols);
+        evaluations += storageSize;
+        for (Solution sol : sols) {
             storage.add(sol);
         }
     }
 
+    /*
+     * Evaluates the given range of rows of the generation matrix by a single call to Problem.evaluateBatch.
+     * Each solution gets its own copy of the genotype, as the matrix is reused for the next generation.
+     */
+    private void evaluateGeneration(int from, int until, Solution[] sols) {
+        int dimension = problem.inputDimension();
+        int objectives = problem.objectiveCount();
+        int count = until - from;
+        double[] inputs = generation, values = generationObjectives;
+        if (count != storageSize) {
+            inputs = Arrays.copyOfRange(generation, from * dimension, until * dimension);
+            values = new double[count * objectives];
+        }
+        problem.evaluateBatch(inputs, count, values);
+        for (int i = 0; i < count; ++i) {
+            double[] genotype = Arrays.copyOfRange(inputs, i * dimension, (i + 1) * dimension);
+            sols[from + i] = new Solution(values, i * objectives, objectives, genotype);
+        }
+    }
+
+    // Breeds a whole generation into the generation matrix, from the given parents or by selection if there are none
+    private void breedGeneration(double[][] parents) {
+        Random r = random.genetic();
+        int dimension = problem.inputDimension();
+        int p = 0;
+        for (int i = 0; i < storageSize; i += 2) {
+            int remain = Math.min(2, storageSize - i);
+            double[] a = parents == null ? select() : parents[p++ % parents.length];
+            double[] b = parents == null ? select() : parents[p++ % parents.length];
+            int offset = i * dimension;
+            variation.crossover(a, b, generation, offset, remain == 2 ? generation : null, offset + dimension, r);
+            for (int t = 0; t < remain; ++t) {
+                variation.mutation(generation, offset + t * dimension, r);
+            }
+        }
+    }
+
+    // Breeds a single offspring of the given parents
+    private double[] breedOne(double[] a, double[] b) {
+        Random r = random.genetic();
+        double[] rv = new double[problem.inputDimension()];
+        variation.crossover(a, b, rv, 0, null, 0, r);
+        variation.mutation(rv, 0, r);
+        return rv;
+    }
+
     private SolutionStorage.QueryResult selectOne() {
         if (permutation == null) {
             return storage.getRandom();
         } else {
             if (index == 0) {
-                Random r = FastRandom.geneticThreadLocal();
+                Random r = random.genetic();
                 for (int i = 1; i < storageSize; ++i) {
                     int j = r.nextInt(i + 1);
                     if (j != i) {
@@ -118,12 +372,10 @@ public class NSGA2 {
         SolutionStorage.QueryResult q1 = selectOne();
         SolutionStorage.QueryResult q2 = selectOne();
         if (jmetalComparison) {
-            ComparisonCounter cc = storage.getComparisonCounter();
-            int cmpx = q1.solution.compareX(q2.solution, cc);
-            int cmpy = q1.solution.compareY(q2.solution, cc);
-            if (cmpx <= 0 && cmpy < 0 || cmpx < 0 && cmpy <= 0) {
+            int dominance = Solution.dominanceComparison(q1.solution, q2.solution, storage.getComparisonCounter());
+            if (dominance < 0) {
                 return q1.solution.getInput();
-            } else if (cmpx >= 0 && cmpy > 0 || cmpx > 0 && cmpy >= 0) {
+            } else if (dominance > 0) {
                 return q2.solution.getInput();
             } else if (q1.crowdingDistance > q2.crowdingDistance) {
                 return q1.solution.getInput();
@@ -143,106 +395,60 @@ public class NSGA2 {
         }
     }
 
-    // SBX crossover from Deb
-    private double[][] crossover(double[] a, double[] b, int howManyNeeded) {
-        Random r = FastRandom.geneticThreadLocal();
-        int n = a.length;
-        if (b.length != n) {
-            throw new IllegalArgumentException("Lengths are not equal");
-        }
-        if (r.nextDouble() < 0.1) {
-            return new double[][] {
-                a.clone(),
-                howManyNeeded == 1 ? null : b.clone()
-            };
-        }
-        double[][] rv = new double[2][];
-        for (int i = 0; i < howManyNeeded; ++i) {
-            rv[i] = new double[n];
-        }
-        for (int i = 0; i < n; ++i) {
-            if (r.nextBoolean()) {
-                if (Math.abs(a[i] - b[i]) > EPS) {
-                    double y1 = Math.min(a[i], b[i]);
-                    double y2 = Math.max(a[i], b[i]);
-
-                    double rand = r.nextDouble();
-                    boolean swap = r.nextBoolean();
-                    for (int t = 0; t < howManyNeeded; ++t) {
-                        boolean q = (t == 0) ^ swap;
-                        double beta = 1 + 2 * (q ? y1 : 1 - y2) / (y2 - y1);
-                        double alpha = 2 - Math.pow(beta, -crossoverEta - 1);
-                        double betaq;
-                        if (rand <= 1 / alpha) {
-                            betaq = Math.pow(rand * alpha, 1 / (crossoverEta + 1));
-                        } else {
-                            betaq = Math.pow(1 / (2 - rand * alpha), 1 / (crossoverEta + 1));
-                        }
-                        double res = 0.5 * ((y1 + y2) + (q ? -1 : 1) * betaq * (y2 - y1));
-                        rv[t][i] = Math.max(0, Math.min(1, res));
-                    }
-                } else {
-                    rv[0][i] = a[i];
-                    if (howManyNeeded > 1) {
-                        rv[1][i] = b[i];
-                    }
-                }
-            } else {
-                rv[0][i] = b[i];
-                if (howManyNeeded > 1) {
-                    rv[1][i] = a[i];
-                }
-            }
-        }
-        return rv;
+    /**
+     * Makes {@link #currentHyperVolume()} return the hypervolume maintained incrementally
+     * by the storage, which is cheap enough to be sampled after every step.
+     *
+     * @return whether the storage supports it.
+     */
+    public boolean trackHyperVolume() {
+        hyperVolumeTracked = problem.objectiveCount() == 2 && storage.trackHyperVolume(
+                problem.frontMinX(), problem.frontMaxX(),
+                problem.frontMinY(), problem.frontMaxY()
+        );
+        return hyperVolumeTracked;
     }
 
-    // polynomial mutation from Deb
-    private void mutation(double[] ind) {
-        Random r = FastRandom.geneticThreadLocal();
-        for (int i = 0; i < ind.length; ++i) {
-            if (r.nextDouble() < mutationProbability) {
-                double v = ind[i];
-                double d1 = v, d2 = 1 - v;
-                double rnd = r.nextDouble();
-                double mutPow = 1 / (mutationEta + 1);
-                double deltaQ;
-                if (rnd < 0.5) {
-                    double val = 2 * rnd + (1 - 2 * rnd) * Math.pow(d2, 1 + mutationEta);
-                    deltaQ = Math.pow(val, mutPow) - 1;
-                } else {
-                    double val = 2 * (1 - rnd) + (2 * rnd - 1) * Math.pow(d1, 1 + mutationEta);
-                    deltaQ = 1 - Math.pow(val, mutPow);
-                }
-                ind[i] = Math.max(0, Math.min(1, v + deltaQ));
+    public double currentHyperVolume() {
+        if (hyperVolumeTracked) {
+            return storage.trackedHyperVolume();
+        }
+        int objectives = problem.objectiveCount();
+        if (objectives > 2) {
+            double[] min = new double[objectives];
+            double[] max = new double[objectives];
+            for (int i = 0; i < objectives; ++i) {
+                min[i] = problem.frontMin(i);
+                max[i] = problem.frontMax(i);
             }
+            return storage.hyperVolume(min, max);
         }
-    }
-
-    public double currentHyperVolume() {
         return storage.hyperVolume(
                 problem.frontMinX(), problem.frontMaxX(),
                 problem.frontMinY(), problem.frontMaxY()
         );
     }
 
+    /**
+     * Does the work of an iteration which does not involve the storage, in the calling thread,
+     * so that its time can be subtracted from the time of {@link #performIteration()}.
+     * Offspring evaluated on the executor set by {@link #setParallelEvaluation(ExecutorService, int)}
+     * take no time of the calling thread, so they are only bred, not evaluated.
+     */
     public void simulateIteration() {
-        if (variant == Variant.PureSteadyState) {
+        if (variant == Variant.PureSteadyState || variant == Variant.AsynchronousSteadyState) {
+            boolean evaluate = variant == Variant.PureSteadyState || evaluationExecutor == null;
             int t = 0;
             for (int i = 0; i < storageSize; ++i) {
-                double[][] cross = crossover(testPool[t++ % POOL_SIZE], testPool[t++ % POOL_SIZE], 1);
-                mutation(cross[0]);
-                problem.evaluate(cross[0]);
+                double[] genotype = breedOne(testPool[t++ % POOL_SIZE], testPool[t++ % POOL_SIZE]);
+                if (evaluate) {
+                    problem.evaluate(genotype);
+                }
             }
         } else {
-            int t = 0;
-            for (int i = 0; i < storageSize; i += 2) {
-                int remain = Math.min(2, storageSize - i);
-                double[][] cross = crossover(testPool[t++ % POOL_SIZE], testPool[t++ % POOL_SIZE], remain);
-                for (int u = 0; u < remain; ++u) {
-                    mutation(cross[u]);
-                    problem.evaluate(cross[u]);
-                }
+            breedGeneration(testPool);
+            if (evaluationExecutor == null) {
+                problem.evaluateBatch(generation, storageSize, generationObjectives);
             }
         }
     }
@@ -250,23 +456,40 @@ public class NSGA2 {
     public void performIteration() {
         if (variant == Variant.PureSteadyState) {
             for (int i = 0; i < storageSize; ++i) {
-                double[][] cross = crossover(select(), select(), 1);
-                mutation(cross[0]);
-                Solution solution = problem.evaluate(cross[0]);
+                Solution solution = problem.evaluate(breedOne(select(), select()));
                 ++evaluations;
                 storage.add(solution);
                 storage.removeWorst(1);
             }
+        } else if (variant == Variant.AsynchronousSteadyState) {
+            if (asyncService == null) {
+                asyncService = new ExecutorCompletionService<>(
+                    evaluationExecutor == null ? Runnable::run : evaluationExecutor
+                );
+            }
+            int parallelism = evaluationExecutor == null ? 1 : evaluationTasks;
+            for (int i = 0; i < storageSize; ++i) {
+                final double[] genotype = breedOne(select(), select());
+                final int bredAt = insertions;
+                asyncService.submit(() -> new Bred(problem.evaluate(genotype), bredAt));
+                ++asyncInFlight;
+                ++evaluations;
+                if (asyncInFlight == parallelism) {
+                    Bred bred = takeBred();
+                    storage.add(bred.solution);
+                    storage.removeWorst(1);
+                    recordStaleness(insertions - bred.bredAt);
+                    ++insertions;
+                }
+            }
         } else {
             Solution[] sols = new Solution[storageSize];
-            for (int i = 0; i < storageSize; i += 2) {
-                int remain = Math.min(2, storageSize - i);
-                double[][] cross = crossover(select(), select(), remain);
-                for (int t = 0; t < remain; ++t) {
-                    mutation(cross[t]);
-                    sols[i + t] = problem.evaluate(cross[t]);
-                    ++evaluations;
-                }
+            breedGeneration(null);
+            if (evaluationExecutor == null) {
+                evaluateGeneration(0, storageSize, sols);
+                evaluations += storageSize;
+            } else {
+                evaluateInParallel(sols);
             }
             switch (variant) {
                 case SteadyInsertionSteadyRemoval: {
@@ -285,6 +508,102 @@ public class NSGA2 {
                 } break;
             }
         }
+        storage.getMetrics().sampleLayers(storage);
+    }
+
+    private void evaluateInParallel(final Solution[] sols) {
+        int size = sols.length;
+        int tasks = Math.min(evaluationTasks, size);
+        List<Future<?>> futures = new ArrayList<>(tasks);
+        for (int t = 0; t < tasks; ++t) {
+            final int from = (int) ((long) (size) * t / tasks);
+            final int until = (int) ((long) (size) * (t + 1) / tasks);
+            futures.add(evaluationExecutor.submit(() -> evaluateGeneration(from, until, sols)));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+        evaluations += size;
+    }
+
+    private static final class Bred {
+        final Solution solution;
+        final int bredAt;
+
+        Bred(Solution solution, int bredAt) {
+            this.solution = solution;
+            this.bredAt = bredAt;
+        }
+    }
+
+    private Bred takeBred() {
+        try {
+            Bred rv = asyncService.take().get();
+            --asyncInFlight;
+            return rv;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            --asyncInFlight;
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    private void discardInFlight() {
+        while (asyncInFlight > 0) {
+            takeBred();
+        }
+    }
+
+    private void recordStaleness(int staleness) {
+        stalenessSum += staleness;
+        stalenessMax = Math.max(stalenessMax, staleness);
+        if (staleness >= stalenessHistogram.length) {
+            stalenessHistogram = Arrays.copyOf(stalenessHistogram,
+                Math.max(staleness + 1, 2 * stalenessHistogram.length));
+        }
+        ++stalenessHistogram[staleness];
+    }
+
+    /**
+     * Returns the average staleness of the offspring inserted by the asynchronous variant
+     * since the last call to {@link #initialize()}.
+     *
+     * The staleness of an offspring is the number of insertions into the storage
+     * which happened between breeding this offspring and inserting it.
+     * Offspring evaluated synchronously always have zero staleness.
+     *
+     * @return the average staleness, or zero if nothing was inserted.
+     */
+    public double getAverageStaleness() {
+        return insertions == 0 ? 0 : (double) (stalenessSum) / insertions;
+    }
+
+    /**
+     * Returns the maximum staleness of the offspring inserted by the asynchronous variant
+     * since the last call to {@link #initialize()}.
+     * @return the maximum staleness.
+     */
+    public int getMaxStaleness() {
+        return stalenessMax;
+    }
+
+    /**
+     * Returns the number of offspring inserted by the asynchronous variant
+     * with the given staleness since the last call to {@link #initialize()}.
+     * @param staleness the staleness.
+     * @return the number of such offspring.
+     */
+    public long getStalenessCount(int staleness) {
+        return staleness < stalenessHistogram.length ? stalenessHistogram[staleness] : 0;
     }
 
     public List<Solution> paretoFront() {
@@ -1,19 +1,57 @@
 package ru.ifmo.steady;
 
-import ru.ifmo.steady.util.FastRandom;
+import java.util.Arrays;
+import java.util.Random;
 
 public interface Problem {
     public double frontMinX();
     public double frontMinY();
     public double frontMaxX();
     public double frontMaxY();
+    public default int objectiveCount() {
+        return 2;
+    }
+    public default double frontMin(int objective) {
+        switch (objective) {
+            case 0: return frontMinX();
+            case 1: return frontMinY();
+            default: throw new IndexOutOfBoundsException("Objective " + objective + " of a bi-objective problem");
+        }
+    }
+    public default double frontMax(int objective) {
+        switch (objective) {
+            case 0: return frontMaxX();
+            case 1: return frontMaxY();
+            default: throw new IndexOutOfBoundsException("Objective " + objective + " of a bi-objective problem");
+        }
+    }
     public int inputDimension();
     public String getName();
     public Solution evaluate(double[] input);
-    public default double[] generate() {
+
+    /**
+     * Evaluates {@code count} genotypes stored one after another in {@code inputs},
+     * and writes their objectives one after another to {@code objectives}.
+     * The results are exactly the ones {@link #evaluate(double[])} gives.
+     *
+     * The default implementation calls {@link #evaluate(double[])} for each genotype.
+     * Problems override it with loops which allocate nothing per genotype.
+     */
+    public default void evaluateBatch(double[] inputs, int count, double[] objectives) {
+        int dimension = inputDimension();
+        int objectiveCount = objectiveCount();
+        for (int i = 0; i < count; ++i) {
+            Solution s = evaluate(Arrays.copyOfRange(inputs, i * dimension, (i + 1) * dimension));
+            for (int j = 0; j < objectiveCount; ++j) {
+                objectives[i * objectiveCount + j] = s.getObjective(j);
+            }
+        }
+    }
+
+    public default double[] generate(Random random) {
         double[] rv = new double[inputDimension()];
         for (int i = 0; i < rv.length; ++i) {
-            rv[i] = FastRandom.geneticThreadLocal().nextDouble();
+            rv[i] = random.nextDouble();
         }
         return rv;
     }
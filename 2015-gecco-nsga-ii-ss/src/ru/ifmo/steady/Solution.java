@@ -5,17 +5,87 @@ public class Solution {
 
     private final double x, y;
     private final double[] input;
+    // All objectives when there are more than two, null otherwise
+    private final double[] objectives;
 
     public Solution(double x, double y, double[] input) {
         this.x = Math.abs(x) < 1e-100 ? 0 : x;
         this.y = Math.abs(y) < 1e-100 ? 0 : y;
         this.input = USE_EXPENSIVE_CHECKING ? input.clone() : input;
+        this.objectives = null;
     }
 
     public Solution(double x, double y) {
         this.x = Math.abs(x) < 1e-100 ? 0 : x;
         this.y = Math.abs(y) < 1e-100 ? 0 : y;
         this.input = null;
+        this.objectives = null;
+    }
+
+    /**
+     * Creates a solution with the given objective values, of which there must be at least two.
+     * A solution with exactly two objectives is the same as the one created by {@link #Solution(double, double, double[])},
+     * and the first two objectives of a solution with more objectives are its x and y.
+     */
+    public Solution(double[] objectives, double[] input) {
+        this(objectives, 0, objectives.length, input);
+    }
+
+    /**
+     * Creates a solution with {@code count} objective values taken from the given array starting at {@code offset},
+     * e.g. from a row of the objectives written by {@link Problem#evaluateBatch(double[], int, double[])}.
+     */
+    public Solution(double[] objectives, int offset, int count, double[] input) {
+        if (count < 2) {
+            throw new IllegalArgumentException("At least two objectives are expected, found " + count);
+        }
+        this.x = Math.abs(objectives[offset]) < 1e-100 ? 0 : objectives[offset];
+        this.y = Math.abs(objectives[offset + 1]) < 1e-100 ? 0 : objectives[offset + 1];
+        this.input = USE_EXPENSIVE_CHECKING && input != null ? input.clone() : input;
+        if (count == 2) {
+            this.objectives = null;
+        } else {
+            this.objectives = new double[count];
+            for (int i = 0; i < count; ++i) {
+                double v = objectives[offset + i];
+                this.objectives[i] = Math.abs(v) < 1e-100 ? 0 : v;
+            }
+        }
+    }
+
+    public Solution(double[] objectives) {
+        this(objectives, null);
+    }
+
+    /**
+     * Compares two solutions by Pareto dominance, counting one comparison per objective.
+     * @return a negative value if {@code a} dominates {@code b}, a positive value if {@code b} dominates {@code a},
+     *         and zero if they are equal or incomparable.
+     */
+    public static int dominanceComparison(Solution a, Solution b, ComparisonCounter cnt) {
+        if (a.objectives == null && b.objectives == null) {
+            int cmpx = a.compareX(b, cnt);
+            int cmpy = a.compareY(b, cnt);
+            if (cmpx <= 0 && cmpy < 0 || cmpx < 0 && cmpy <= 0) {
+                return -1;
+            } else if (cmpx >= 0 && cmpy > 0 || cmpx > 0 && cmpy >= 0) {
+                return 1;
+            } else {
+                return 0;
+            }
+        }
+        int count = a.getObjectiveCount();
+        if (count != b.getObjectiveCount()) {
+            throw new IllegalArgumentException("Solutions have different numbers of objectives");
+        }
+        cnt.add(count);
+        boolean aBetter = false, bBetter = false;
+        for (int i = 0; i < count; ++i) {
+            int cmp = Double.compare(a.objectives[i], b.objectives[i]);
+            aBetter |= cmp < 0;
+            bBetter |= cmp > 0;
+        }
+        return aBetter == bBetter ? 0 : aBetter ? -1 : 1;
     }
 
     public static double crowdingDistanceDX(Solution left, Solution right, ComparisonCounter cnt) {
@@ -57,6 +127,42 @@ public class Solution {
         return USE_EXPENSIVE_CHECKING ? input.clone() : input;
     }
 
+    public int getObjectiveCount() {
+        return objectives == null ? 2 : objectives.length;
+    }
+
+    public double getObjective(int index) {
+        // this doesn't count in comparisons, storages that compare raw objectives count them themselves
+        if (objectives != null) {
+            return objectives[index];
+        }
+        switch (index) {
+            case 0: return x;
+            case 1: return y;
+            default: throw new IndexOutOfBoundsException("Objective " + index + " of a bi-objective solution");
+        }
+    }
+
+    public double getNormalizedObjective(int index, double min, double max) {
+        // this doesn't count in comparisons as it is for hypervolume only
+        return (getObjective(index) - min) / (max - min);
+    }
+
+    public int compareObjective(Solution that, int index, ComparisonCounter cnt) {
+        cnt.add(1);
+        return Double.compare(getObjective(index), that.getObjective(index));
+    }
+
+    public double getX() {
+        // this doesn't count in comparisons, storages that compare raw objectives count them themselves
+        return x;
+    }
+
+    public double getY() {
+        // this doesn't count in comparisons, storages that compare raw objectives count them themselves
+        return y;
+    }
+
     public double getNormalizedX(double minX, double maxX) {
         // this doesn't count in comparisons as it is for hypervolume only
         return (x - minX) / (maxX - minX);
@@ -80,7 +186,14 @@ public class Solution {
     public int hashCode() {
         long xx = x == 0 ? 0 : Double.doubleToLongBits(x);
         long yy = y == 0 ? 0 : Double.doubleToLongBits(y);
-        return (int) (xx ^ (xx >>> 32) ^ yy ^ (yy >>> 32));
+        int rv = (int) (xx ^ (xx >>> 32) ^ yy ^ (yy >>> 32));
+        if (objectives != null) {
+            for (int i = 2; i < objectives.length; ++i) {
+                long oo = objectives[i] == 0 ? 0 : Double.doubleToLongBits(objectives[i]);
+                rv = 31 * rv + (int) (oo ^ (oo >>> 32));
+            }
+        }
+        return rv;
     }
 
     public boolean equals(Object o) {
@@ -92,13 +205,34 @@ public class Solution {
         }
         if (o.getClass() == Solution.class) {
             Solution that = (Solution) (o);
-            return x == that.x && y == that.y;
+            if (x != that.x || y != that.y) {
+                return false;
+            }
+            if (objectives == null || that.objectives == null) {
+                return objectives == that.objectives;
+            }
+            if (objectives.length != that.objectives.length) {
+                return false;
+            }
+            for (int i = 2; i < objectives.length; ++i) {
+                if (objectives[i] != that.objectives[i]) {
+                    return false;
+                }
+            }
+            return true;
         } else {
             return false;
         }
     }
 
     public String toString() {
-        return "(" + x + "; " + y + ")";
+        if (objectives == null) {
+            return "(" + x + "; " + y + ")";
+        }
+        StringBuilder sb = new StringBuilder("(").append(objectives[0]);
+        for (int i = 1; i < objectives.length; ++i) {
+            sb.append("; ").append(objectives[i]);
+        }
+        return sb.append(")").toString();
     }
 }
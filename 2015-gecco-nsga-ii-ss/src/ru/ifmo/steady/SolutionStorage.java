@@ -1,10 +1,18 @@
 package ru.ifmo.steady;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+
+import ru.ifmo.steady.util.HyperVolume;
+import ru.ifmo.steady.util.RandomContext;
 
 public abstract class SolutionStorage {
     protected final ComparisonCounter counter = new ComparisonCounter();
+    protected RandomContext randomContext = new RandomContext();
+    protected final StorageMetrics metrics = StorageMetrics.newInstance();
 
     public abstract void add(Solution solution);
     public abstract QueryResult getRandom();
@@ -17,10 +25,38 @@ public abstract class SolutionStorage {
     public abstract int getLayerCount();
     public abstract Iterator<Solution> getLayer(int index);
 
+    /**
+     * Tells whether this storage can hold solutions with the given number of objectives.
+     * Storages which only look at x and y support only two objectives.
+     */
+    public boolean supportsObjectiveCount(int objectives) {
+        return objectives == 2;
+    }
+
     public ComparisonCounter getComparisonCounter() {
         return counter;
     }
 
+    /**
+     * Returns the operation metrics of this storage, which are collected only if {@link StorageMetrics#ENABLED}.
+     */
+    public StorageMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Makes the storage take its randomness, e.g. for breaking ties between the worst solutions
+     * or for heap keys of internal trees, from the given context instead of its own arbitrarily seeded one.
+     * This should be done while the storage is empty.
+     */
+    public void setRandomContext(RandomContext randomContext) {
+        this.randomContext = randomContext;
+    }
+
+    public RandomContext getRandomContext() {
+        return randomContext;
+    }
+
     public Iterator<Solution> nonDominatedSolutionsIncreasingX() {
         if (getLayerCount() == 0) {
             return Collections.emptyIterator();
@@ -35,6 +71,49 @@ public abstract class SolutionStorage {
         }
     }
 
+    /**
+     * Replaces the contents of the storage with the given layers, such that
+     * {@link #getLayer(int)} returns the solutions in the same order as in the given lists.
+     *
+     * The default implementation adds the solutions layer by layer. A solution added after all previous layers
+     * is dominated by one of them and does not dominate anyone in its own layer, so it lands in that layer
+     * without moving anything. Within a layer, the solutions are added in reverse order,
+     * as an added solution goes before the equal ones.
+     */
+    public void restoreLayers(List<List<Solution>> layers) {
+        clear();
+        for (List<Solution> layer : layers) {
+            for (int i = layer.size() - 1; i >= 0; --i) {
+                add(layer.get(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the size in bytes of the state written by {@link #writeInternalState(ByteBuffer)}
+     * for a storage of the given number of solutions.
+     *
+     * The internal state is the part of the storage which is not determined by its layers,
+     * but affects the comparison counts, such as the heap keys of internal trees.
+     * By default there is no such state.
+     */
+    public int internalStateSize(int size) {
+        return 0;
+    }
+
+    /**
+     * Writes the internal state of the storage, {@link #internalStateSize(int)} bytes for its current size.
+     */
+    public void writeInternalState(ByteBuffer buffer) {}
+
+    /**
+     * Reads the internal state written by {@link #writeInternalState(ByteBuffer)}.
+     * This is called right after {@link #restoreLayers(List)} with the layers the storage had when the state was written,
+     * so that the storage becomes exactly the same as it was, and does the same comparisons afterwards.
+     * It may do comparisons itself, so the comparison counter should be set after it.
+     */
+    public void readInternalState(ByteBuffer buffer) {}
+
     public void removeWorst(int count) {
         for (int i = 0; i < count; ++i) {
             removeWorst();
@@ -61,6 +140,55 @@ public abstract class SolutionStorage {
         return hv;
     }
 
+    /**
+     * Asks the storage to maintain the hypervolume of the first layer incrementally,
+     * as computed by {@link #hyperVolume(double, double, double, double)} with the given bounds,
+     * so that it can be sampled often, e.g. for convergence monitoring.
+     *
+     * @return whether the storage supports it. The default implementation does not.
+     */
+    public boolean trackHyperVolume(double minX, double maxX, double minY, double maxY) {
+        return false;
+    }
+
+    /**
+     * Returns the hypervolume maintained since {@link #trackHyperVolume(double, double, double, double)}.
+     * It may differ from the one computed from scratch by floating-point rounding errors.
+     */
+    public double trackedHyperVolume() {
+        throw new UnsupportedOperationException("Storage " + getName() + " does not track hypervolume");
+    }
+
+    /**
+     * Returns the part of the tracked hypervolume which is dominated only by the given solution,
+     * or zero if it is not in the first layer.
+     */
+    public double hyperVolumeContribution(Solution solution) {
+        throw new UnsupportedOperationException("Storage " + getName() + " does not track hypervolume");
+    }
+
+    public double hyperVolume(double[] min, double[] max) {
+        int objectives = min.length;
+        if (objectives == 2) {
+            return hyperVolume(min[0], max[0], min[1], max[1]);
+        }
+        Iterator<Solution> front = nonDominatedSolutionsIncreasingX();
+        List<double[]> points = new ArrayList<>();
+        while (front.hasNext()) {
+            Solution s = front.next();
+            double[] point = new double[objectives];
+            boolean inside = true;
+            for (int i = 0; i < objectives; ++i) {
+                point[i] = s.getNormalizedObjective(i, min[i], max[i]);
+                inside &= 0 <= point[i] && point[i] <= 1;
+            }
+            if (inside) {
+                points.add(point);
+            }
+        }
+        return HyperVolume.compute(points.toArray(new double[points.size()][]), objectives);
+    }
+
     public static class QueryResult {
         public final Solution solution;
         public final double crowdingDistance;
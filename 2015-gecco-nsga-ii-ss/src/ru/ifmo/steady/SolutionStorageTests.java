@@ -1,5 +1,6 @@
 package ru.ifmo.steady;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 
 public class SolutionStorageTests {
@@ -15,8 +16,34 @@ public class SolutionStorageTests {
         System.out.print("  testDiag        -> "); testDiag();        System.out.println("OK");
         System.out.print("  testRemoveWorst -> "); testRemoveWorst(); System.out.println("OK");
         System.out.print("  testBulk        -> "); testBulk();        System.out.println("OK");
+        System.out.print("  testBulkRandom  -> "); testBulkRandom();  System.out.println("OK");
+        System.out.print("  testBulkRemove  -> "); testBulkRemove();  System.out.println("OK");
         System.out.print("  testQueries     -> "); testQueries();     System.out.println("OK");
         System.out.print("  testHyperVolume -> "); testHyperVolume(); System.out.println("OK");
+        System.out.print("  testRestore     -> "); testRestore();     System.out.println("OK");
+        if (storage.supportsObjectiveCount(3)) {
+            System.out.print("  testRanks3D     -> "); testRanks3D();     System.out.println("OK");
+            System.out.print("  testCrowding3D  -> "); testCrowding3D();  System.out.println("OK");
+            System.out.print("  testHV3D        -> "); testHV3D();        System.out.println("OK");
+        }
+        if (storage.trackHyperVolume(0, 1, 0, 1)) {
+            System.out.print("  testTrackedHV   -> "); testTrackedHV();   System.out.println("OK");
+        }
+    }
+
+    // For storages which use the hypervolume contribution instead of the crowding distance
+    public void runContributionBased() {
+        System.out.println("Running tests for " + storage.getName());
+        System.out.print("  testOne         -> "); testOne();         System.out.println("OK");
+        System.out.print("  testDiag        -> "); testDiag();        System.out.println("OK");
+        System.out.print("  testRemoveHV    -> "); testRemoveHV();    System.out.println("OK");
+        System.out.print("  testBulkRandom  -> "); testBulkRandom();  System.out.println("OK");
+        System.out.print("  testBulkRemove  -> "); testBulkRemove();  System.out.println("OK");
+        System.out.print("  testHyperVolume -> "); testHyperVolume(); System.out.println("OK");
+        System.out.print("  testRestore     -> "); testRestore();     System.out.println("OK");
+        if (storage.trackHyperVolume(0, 1, 0, 1)) {
+            System.out.print("  testTrackedHV   -> "); testTrackedHV();   System.out.println("OK");
+        }
     }
 
     private static Solution s(double x, double y) {
@@ -117,6 +144,155 @@ public class SolutionStorageTests {
         expect(0, storage.size());
     }
 
+    private List<SolutionStorage.QueryResult> contents() {
+        List<SolutionStorage.QueryResult> rv = new ArrayList<>();
+        for (int i = 0; i < storage.size(); ++i) {
+            rv.add(storage.getKth(i));
+        }
+        return rv;
+    }
+
+    private void testBulkRandom() {
+        Random random = new Random(7284621);
+        for (int test = 0; test < 300; ++test) {
+            int range = 2 + random.nextInt(20);
+            Solution[] initial = new Solution[random.nextInt(60)];
+            Solution[] batch = new Solution[1 + random.nextInt(60)];
+            for (int i = 0; i < initial.length; ++i) {
+                initial[i] = s(random.nextInt(range), random.nextInt(range));
+            }
+            for (int i = 0; i < batch.length; ++i) {
+                batch[i] = s(random.nextInt(range), random.nextInt(range));
+            }
+            storage.clear();
+            for (Solution s : initial) {
+                storage.add(s);
+            }
+            for (Solution s : batch) {
+                storage.add(s);
+            }
+            List<SolutionStorage.QueryResult> expected = contents();
+            storage.clear();
+            for (Solution s : initial) {
+                storage.add(s);
+            }
+            storage.addAll(batch);
+            List<SolutionStorage.QueryResult> found = contents();
+            expect(expected, found);
+            for (int i = 0; i < expected.size(); ++i) {
+                if (expected.get(i).solution != found.get(i).solution) {
+                    throw new AssertionError("Equal solutions are ordered differently at index " + i);
+                }
+            }
+        }
+    }
+
+    // Removing many solutions from the last layer at once must be the same as removing them one by one
+    private void testBulkRemove() {
+        Random random = new Random(3318705);
+        for (int test = 0; test < 300; ++test) {
+            int range = 2 + random.nextInt(100);
+            storage.clear();
+            for (int i = random.nextInt(150); i >= 0; --i) {
+                int x = random.nextInt(range);
+                storage.add(s(x, range - x + random.nextInt(3)));
+            }
+            checkBulkRemove(random);
+        }
+        // Evenly spaced fronts, where most crowding distances are equal
+        for (int test = 0; test < 100; ++test) {
+            int range = 3 + random.nextInt(200);
+            storage.clear();
+            for (int x = 0; x < range; ++x) {
+                storage.add(s(x, range - x));
+                if (random.nextInt(10) == 0) {
+                    storage.add(s(x, range - x));
+                }
+            }
+            checkBulkRemove(random);
+        }
+    }
+
+    private void checkBulkRemove(Random random) {
+        List<List<Solution>> layers = new ArrayList<>();
+        for (int i = 0; i < storage.getLayerCount(); ++i) {
+            List<Solution> layer = new ArrayList<>();
+            storage.getLayer(i).forEachRemaining(layer::add);
+            layers.add(layer);
+        }
+        int count = 1 + random.nextInt(layers.get(layers.size() - 1).size());
+        long seed = random.nextLong();
+
+        storage.getRandomContext().setSeed(seed);
+        storage.restoreLayers(layers);
+        for (int i = 0; i < count; ++i) {
+            storage.removeWorst();
+        }
+        List<SolutionStorage.QueryResult> expected = contents();
+
+        storage.getRandomContext().setSeed(seed);
+        storage.restoreLayers(layers);
+        storage.removeWorst(count);
+        List<SolutionStorage.QueryResult> found = contents();
+        expect(expected, found);
+        for (int i = 0; i < expected.size(); ++i) {
+            if (expected.get(i).solution != found.get(i).solution) {
+                throw new AssertionError("Equal solutions are ordered differently at index " + i);
+            }
+        }
+    }
+
+    private void testRestore() {
+        Random random = new Random(5528173);
+        for (int test = 0; test < 100; ++test) {
+            int range = 2 + random.nextInt(20);
+            storage.clear();
+            for (int i = random.nextInt(80); i >= 0; --i) {
+                storage.add(s(random.nextInt(range), random.nextInt(range)));
+            }
+            storage.removeWorst(random.nextInt(storage.size()));
+            List<SolutionStorage.QueryResult> expected = contents();
+            List<List<Solution>> layers = new ArrayList<>();
+            for (int i = 0; i < storage.getLayerCount(); ++i) {
+                List<Solution> layer = new ArrayList<>();
+                storage.getLayer(i).forEachRemaining(layer::add);
+                layers.add(layer);
+            }
+            ByteBuffer state = ByteBuffer.allocate(storage.internalStateSize(storage.size()));
+            storage.writeInternalState(state);
+            state.flip();
+            // The same operations after restoring the internal state must do the same comparisons
+            long seed = random.nextLong();
+            long comparisons = continueRandomly(seed, range);
+            List<SolutionStorage.QueryResult> continued = contents();
+            storage.add(s(0, 0));
+            storage.restoreLayers(layers);
+            List<SolutionStorage.QueryResult> found = contents();
+            expect(expected, found);
+            for (int i = 0; i < expected.size(); ++i) {
+                if (expected.get(i).solution != found.get(i).solution) {
+                    throw new AssertionError("Equal solutions are ordered differently at index " + i);
+                }
+            }
+            storage.readInternalState(state);
+            expect(expected, contents());
+            expect(comparisons, continueRandomly(seed, range));
+            expect(continued, contents());
+        }
+    }
+
+    // Does some random additions and removals, and returns the number of comparisons they took
+    private long continueRandomly(long seed, int range) {
+        Random random = new Random(seed);
+        storage.getRandomContext().setSeed(seed);
+        long start = storage.getComparisonCounter().get();
+        for (int i = 0; i < 10; ++i) {
+            storage.add(s(random.nextInt(range), random.nextInt(range)));
+            storage.removeWorst(random.nextInt(storage.size()));
+        }
+        return storage.getComparisonCounter().get() - start;
+    }
+
     private void testQueries() {
         storage.clear();
         storage.add(s(1, 6));
@@ -185,10 +361,263 @@ public class SolutionStorageTests {
         expectE(16.0, storage.hyperVolume(0, 4, 0, 4) * 16);
     }
 
+    private static Solution s(double... objectives) {
+        return new Solution(objectives);
+    }
+
+    private static int[] bruteForceRanks(List<Solution> solutions) {
+        ComparisonCounter cc = new ComparisonCounter();
+        int n = solutions.size();
+        int[] ranks = new int[n];
+        Arrays.fill(ranks, -1);
+        for (int rank = 0, assigned = 0; assigned < n; ++rank) {
+            List<Integer> front = new ArrayList<>();
+            for (int i = 0; i < n; ++i) {
+                if (ranks[i] == -1) {
+                    boolean dominated = false;
+                    for (int j = 0; j < n; ++j) {
+                        if (ranks[j] == -1 && Solution.dominanceComparison(solutions.get(j), solutions.get(i), cc) < 0) {
+                            dominated = true;
+                        }
+                    }
+                    if (!dominated) {
+                        front.add(i);
+                    }
+                }
+            }
+            for (int i : front) {
+                ranks[i] = rank;
+            }
+            assigned += front.size();
+        }
+        return ranks;
+    }
+
+    private void expectRanks3D() {
+        List<SolutionStorage.QueryResult> found = contents();
+        List<Solution> solutions = new ArrayList<>();
+        for (SolutionStorage.QueryResult q : found) {
+            solutions.add(q.solution);
+        }
+        int[] ranks = bruteForceRanks(solutions);
+        int maxRank = -1;
+        for (int i = 0; i < found.size(); ++i) {
+            expect(ranks[i], found.get(i).layer);
+            maxRank = Math.max(maxRank, ranks[i]);
+        }
+        expect(maxRank + 1, storage.getLayerCount());
+    }
+
+    private void testRanks3D() {
+        Random random = new Random(8234212);
+        for (int test = 0; test < 300; ++test) {
+            int range = 2 + random.nextInt(10);
+            storage.clear();
+            for (int i = 0, n = random.nextInt(80); i < n; ++i) {
+                storage.add(s(random.nextInt(range), random.nextInt(range), random.nextInt(range)));
+                expectRanks3D();
+                if (storage.size() > 1 && random.nextInt(5) == 0) {
+                    storage.removeWorst();
+                    expectRanks3D();
+                }
+                if (storage.size() > 3 && random.nextInt(10) == 0) {
+                    storage.removeWorstDebCompatible(1 + random.nextInt(storage.size() - 1));
+                    expectRanks3D();
+                }
+            }
+        }
+    }
+
+    private void testCrowding3D() {
+        Random random = new Random(2342351);
+        for (int test = 0; test < 100; ++test) {
+            storage.clear();
+            for (int i = 0, n = 1 + random.nextInt(60); i < n; ++i) {
+                storage.add(s(random.nextDouble(), random.nextDouble(), random.nextDouble()));
+            }
+            List<SolutionStorage.QueryResult> found = contents();
+            double lastLayerMin = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < found.size(); ++i) {
+                SolutionStorage.QueryResult q = found.get(i);
+                double expected = 0;
+                for (int k = 0; k < 3; ++k) {
+                    double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+                    double prev = Double.NEGATIVE_INFINITY, next = Double.POSITIVE_INFINITY;
+                    double mine = q.solution.getObjective(k);
+                    for (SolutionStorage.QueryResult o : found) {
+                        if (o.layer == q.layer) {
+                            double v = o.solution.getObjective(k);
+                            min = Math.min(min, v);
+                            max = Math.max(max, v);
+                            if (v < mine) {
+                                prev = Math.max(prev, v);
+                            }
+                            if (v > mine) {
+                                next = Math.min(next, v);
+                            }
+                        }
+                    }
+                    expected += (next - prev) / (max - min);
+                }
+                if (Double.isInfinite(expected)) {
+                    expect(expected, q.crowdingDistance);
+                } else {
+                    expectE(expected, q.crowdingDistance);
+                }
+                if (q.layer == storage.getLayerCount() - 1) {
+                    lastLayerMin = Math.min(lastLayerMin, q.crowdingDistance);
+                }
+            }
+            Solution removed = storage.removeWorst();
+            boolean matches = false;
+            for (SolutionStorage.QueryResult q : found) {
+                matches |= q.solution == removed && q.crowdingDistance == lastLayerMin
+                        && q.layer == found.get(found.size() - 1).layer;
+            }
+            expect(true, matches);
+        }
+    }
+
+    private void testHV3D() {
+        double[] min = { 0, 0, 0 };
+        double[] max = { 1, 1, 1 };
+        storage.clear();
+        storage.add(s(0.5, 0.5, 0.5));
+        expectE(0.125, storage.hyperVolume(min, max));
+        storage.add(s(0.0, 0.5, 0.5));
+        storage.add(s(0.5, 0.0, 0.5));
+        expectE(0.375, storage.hyperVolume(min, max));
+        storage.add(s(0.5, 0.5, 0.0));
+        expectE(0.5, storage.hyperVolume(min, max));
+        storage.add(s(2.0, 0.0, 0.0));
+        expectE(0.5, storage.hyperVolume(min, max));
+        storage.clear();
+        storage.add(s(0.5, 0.5, 0.5, 0.5));
+        storage.add(s(0.75, 0.75, 0.75, 0.0));
+        expectE(0.0625 + 0.25 * 0.25 * 0.25 * 0.5, storage.hyperVolume(new double[] { 0, 0, 0, 0 }, new double[] { 1, 1, 1, 1 }));
+    }
+
+    private void testRemoveHV() {
+        storage.clear();
+        storage.add(s(0, 10));
+        storage.add(s(1, 6));
+        storage.add(s(3, 5));
+        storage.add(s(4, 2));
+        storage.add(s(7, 1));
+        storage.add(s(9, 0));
+        storage.add(s(2, 7));
+        expect(s(2, 7), storage.removeWorst());
+        expect(s(3, 5), storage.removeWorst());
+        expect(s(7, 1), storage.removeWorst());
+        expect(s(1, 6), storage.removeWorst());
+        expect(s(4, 2), storage.removeWorst());
+
+        Random random = new Random(8812743);
+        for (int test = 0; test < 100; ++test) {
+            int range = 2 + random.nextInt(30);
+            storage.clear();
+            for (int i = random.nextInt(100); i >= 0; --i) {
+                storage.add(s(random.nextInt(range), random.nextInt(range)));
+            }
+            while (storage.size() > 0) {
+                int lastLayerIndex = storage.getLayerCount() - 1;
+                List<Solution> lastLayer = new ArrayList<>();
+                storage.getLayer(lastLayerIndex).forEachRemaining(lastLayer::add);
+                double minContribution = Double.POSITIVE_INFINITY;
+                Set<Solution> worst = new HashSet<>();
+                for (int i = 0; i < lastLayer.size(); ++i) {
+                    double contribution = Double.POSITIVE_INFINITY;
+                    if (i > 0 && i + 1 < lastLayer.size()) {
+                        Solution prev = lastLayer.get(i - 1), curr = lastLayer.get(i), next = lastLayer.get(i + 1);
+                        contribution = (next.getX() - curr.getX()) * (prev.getY() - curr.getY());
+                    }
+                    if (minContribution > contribution) {
+                        minContribution = contribution;
+                        worst.clear();
+                    }
+                    if (minContribution == contribution) {
+                        worst.add(lastLayer.get(i));
+                    }
+                }
+                for (int i = 0; i < lastLayer.size(); ++i) {
+                    SolutionStorage.QueryResult q = storage.getKth(storage.size() - lastLayer.size() + i);
+                    expect(lastLayer.get(i), q.solution);
+                    expect(lastLayerIndex, q.layer);
+                }
+                expect(true, worst.contains(storage.removeWorst()));
+            }
+        }
+    }
+
+    private static double staircaseHV(List<Solution> layer, double max) {
+        double hv = 0, lastY = 1;
+        for (Solution s : layer) {
+            double x = s.getNormalizedX(0, max), y = s.getNormalizedY(0, max);
+            if (x <= 1 && y <= 1) {
+                hv += (lastY - y) * (1 - x);
+                lastY = y;
+            }
+        }
+        return hv;
+    }
+
+    private void expectTracked(double max) {
+        double expected = storage.hyperVolume(0, max, 0, max);
+        if (Math.abs(expected - storage.trackedHyperVolume()) > 1e-9) {
+            throw new AssertionError("Expected " + expected + " found " + storage.trackedHyperVolume());
+        }
+        if (storage.size() == 0) {
+            return;
+        }
+        List<Solution> firstLayer = new ArrayList<>();
+        storage.getLayer(0).forEachRemaining(firstLayer::add);
+        for (int i = 0; i < firstLayer.size(); ++i) {
+            List<Solution> others = new ArrayList<>(firstLayer);
+            Solution removed = others.remove(i);
+            double contribution = expected - staircaseHV(others, max);
+            if (Math.abs(contribution - storage.hyperVolumeContribution(removed)) > 1e-9) {
+                throw new AssertionError("Expected contribution " + contribution + " of " + removed
+                                       + " found " + storage.hyperVolumeContribution(removed));
+            }
+        }
+    }
+
+    private void testTrackedHV() {
+        Random random = new Random(6637281);
+        for (int test = 0; test < 100; ++test) {
+            int range = 3 + random.nextInt(20);
+            double max = range - 2;
+            storage.trackHyperVolume(0, max, 0, max);
+            storage.clear();
+            expectTracked(max);
+            for (int op = 0; op < 100; ++op) {
+                int kind = random.nextInt(10);
+                if (kind < 5 || storage.size() < 2) {
+                    storage.add(s(random.nextInt(range), random.nextInt(range)));
+                } else if (kind < 6) {
+                    Solution[] batch = new Solution[1 + random.nextInt(10)];
+                    for (int i = 0; i < batch.length; ++i) {
+                        batch[i] = s(random.nextInt(range), random.nextInt(range));
+                    }
+                    storage.addAll(batch);
+                } else if (kind < 9) {
+                    storage.removeWorst(1 + random.nextInt(storage.size() - 1));
+                } else {
+                    storage.removeWorstDebCompatible(1 + random.nextInt(storage.size() - 1));
+                }
+                expectTracked(max);
+            }
+        }
+    }
+
     public static void main(String[] args) {
         new SolutionStorageTests(new ru.ifmo.steady.inds.StorageHull()).run();
         new SolutionStorageTests(new ru.ifmo.steady.inds.Storage()).run();
+        new SolutionStorageTests(new ru.ifmo.steady.inds.StorageHV()).runContributionBased();
         new SolutionStorageTests(new ru.ifmo.steady.enlu.Storage()).run();
         new SolutionStorageTests(new ru.ifmo.steady.debNDS.Storage()).run();
+        new SolutionStorageTests(new ru.ifmo.steady.debNDS.StorageIncremental()).run();
+        new SolutionStorageTests(new ru.ifmo.steady.soa.Storage()).run();
+        new SolutionStorageTests(new ru.ifmo.steady.mo.Storage()).run();
     }
 }
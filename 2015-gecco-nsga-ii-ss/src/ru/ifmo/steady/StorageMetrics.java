@@ -0,0 +1,213 @@
+package ru.ifmo.steady;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Counts and times the operations of a solution storage, and keeps track of its layers.
+ *
+ * The metrics are switched on by the system property {@code ru.ifmo.steady.metrics=true}.
+ * As {@link #ENABLED} is a static final constant, the JIT compiler removes all the instrumentation
+ * when the metrics are off, and the comparison counts are never affected either way.
+ *
+ * Durations go to histograms with power-of-two buckets of nanoseconds, so quantiles are
+ * upper bounds within a factor of two. A storage records its operations in its own instance;
+ * instances of several runs can be combined by {@link #addAll(StorageMetrics)}.
+ * When the metrics are off, {@link #newInstance()} returns a single shared instance which stays empty,
+ * so storages allocate nothing for them.
+ */
+public final class StorageMetrics {
+    public static final boolean ENABLED = Boolean.getBoolean("ru.ifmo.steady.metrics");
+
+    public static enum Operation {
+        Add("add"),
+        AddAll("addAll"),
+        RemoveWorst("removeWorst"),
+        RemoveWorstDebCompatible("removeWorstDebCompatible"),
+        GetKth("getKth"),
+        LayerSplit("layerSplit"),
+        LayerMerge("layerMerge"),
+        HullRecomputation("hullRecomputation");
+
+        private final String shortName;
+        private Operation(String shortName) {
+            this.shortName = shortName;
+        }
+        public String shortName() {
+            return shortName;
+        }
+    }
+
+    private static final Operation[] operations = Operation.values();
+    private static final int BUCKETS = 64;
+
+    private final long[] counts = new long[operations.length];
+    private final long[] totalNanos = new long[operations.length];
+    private final long[] maxNanos = new long[operations.length];
+    private final long[][] histograms = new long[operations.length][BUCKETS];
+    private int samples, layerCount, maxLayerCount, maxLayerSize;
+
+    private static final StorageMetrics DISABLED = new StorageMetrics();
+
+    private StorageMetrics() {}
+
+    /**
+     * Returns a new empty instance, or the shared empty one if the metrics are off.
+     */
+    public static StorageMetrics newInstance() {
+        return ENABLED ? new StorageMetrics() : DISABLED;
+    }
+
+    /**
+     * Returns the timestamp to pass to {@link #finish(Operation, long)} when the operation ends.
+     */
+    public long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public void finish(Operation operation, long start) {
+        if (ENABLED) {
+            record(operation, System.nanoTime() - start);
+        }
+    }
+
+    private void record(Operation operation, long nanos) {
+        int o = operation.ordinal();
+        ++counts[o];
+        totalNanos[o] += nanos;
+        maxNanos[o] = Math.max(maxNanos[o], nanos);
+        ++histograms[o][BUCKETS - Long.numberOfLeadingZeros(Math.max(nanos, 1))];
+    }
+
+    /**
+     * Samples the number of layers and the largest layer size of the given storage.
+     * This walks the whole storage, so it is meant to be called once in a while, e.g. once per iteration.
+     */
+    public void sampleLayers(SolutionStorage storage) {
+        if (ENABLED) {
+            layerCount = storage.getLayerCount();
+            maxLayerCount = Math.max(maxLayerCount, layerCount);
+            for (int i = 0; i < layerCount; ++i) {
+                int size = 0;
+                for (Iterator<Solution> it = storage.getLayer(i); it.hasNext(); it.next()) {
+                    ++size;
+                }
+                maxLayerSize = Math.max(maxLayerSize, size);
+            }
+            ++samples;
+        }
+    }
+
+    public long getCount(Operation operation) {
+        return counts[operation.ordinal()];
+    }
+
+    public long getTotalNanos(Operation operation) {
+        return totalNanos[operation.ordinal()];
+    }
+
+    /**
+     * Returns an upper bound of the given quantile of the durations of the operation, in nanoseconds.
+     */
+    public long getQuantileNanos(Operation operation, double quantile) {
+        int o = operation.ordinal();
+        long threshold = (long) Math.ceil(quantile * counts[o]);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; ++b) {
+            seen += histograms[o][b];
+            if (seen >= Math.max(threshold, 1)) {
+                return Math.min(maxNanos[o], b == BUCKETS - 1 ? Long.MAX_VALUE : (1L << b) - 1);
+            }
+        }
+        return 0;
+    }
+
+    public int getLayerCount() {
+        return layerCount;
+    }
+
+    public int getMaxLayerCount() {
+        return maxLayerCount;
+    }
+
+    public int getMaxLayerSize() {
+        return maxLayerSize;
+    }
+
+    public void reset() {
+        if (!ENABLED) {
+            return;
+        }
+        for (int o = 0; o < operations.length; ++o) {
+            counts[o] = totalNanos[o] = maxNanos[o] = 0;
+            Arrays.fill(histograms[o], 0);
+        }
+        samples = layerCount = maxLayerCount = maxLayerSize = 0;
+    }
+
+    /**
+     * Adds the counts and durations of the given metrics to these ones.
+     * The gauges become the maxima of both, and the current layer count is the one of the given metrics.
+     */
+    public void addAll(StorageMetrics that) {
+        if (!ENABLED) {
+            return;
+        }
+        for (int o = 0; o < operations.length; ++o) {
+            counts[o] += that.counts[o];
+            totalNanos[o] += that.totalNanos[o];
+            maxNanos[o] = Math.max(maxNanos[o], that.maxNanos[o]);
+            for (int b = 0; b < BUCKETS; ++b) {
+                histograms[o][b] += that.histograms[o][b];
+            }
+        }
+        samples += that.samples;
+        layerCount = that.layerCount;
+        maxLayerCount = Math.max(maxLayerCount, that.maxLayerCount);
+        maxLayerSize = Math.max(maxLayerSize, that.maxLayerSize);
+    }
+
+    public void writeCsv(PrintWriter out) {
+        out.println("operation,count,totalNanos,meanNanos,p50Nanos,p90Nanos,p99Nanos,maxNanos");
+        for (Operation op : operations) {
+            int o = op.ordinal();
+            if (counts[o] > 0) {
+                out.printf(Locale.US, "%s,%d,%d,%.1f,%d,%d,%d,%d%n", op.shortName(), counts[o], totalNanos[o],
+                           (double) (totalNanos[o]) / counts[o],
+                           getQuantileNanos(op, 0.5), getQuantileNanos(op, 0.9), getQuantileNanos(op, 0.99), maxNanos[o]);
+            }
+        }
+        out.println();
+        out.println("gauge,value");
+        out.println("layerSamples," + samples);
+        out.println("layerCount," + layerCount);
+        out.println("maxLayerCount," + maxLayerCount);
+        out.println("maxLayerSize," + maxLayerSize);
+    }
+
+    public void writeJson(PrintWriter out) {
+        out.println("{");
+        out.println("  \"operations\": {");
+        boolean first = true;
+        for (Operation op : operations) {
+            int o = op.ordinal();
+            if (counts[o] > 0) {
+                if (!first) {
+                    out.println(",");
+                }
+                first = false;
+                out.printf(Locale.US, "    \"%s\": {\"count\": %d, \"totalNanos\": %d, \"meanNanos\": %.1f, "
+                           + "\"p50Nanos\": %d, \"p90Nanos\": %d, \"p99Nanos\": %d, \"maxNanos\": %d}",
+                           op.shortName(), counts[o], totalNanos[o], (double) (totalNanos[o]) / counts[o],
+                           getQuantileNanos(op, 0.5), getQuantileNanos(op, 0.9), getQuantileNanos(op, 0.99), maxNanos[o]);
+            }
+        }
+        out.println();
+        out.println("  },");
+        out.printf("  \"gauges\": {\"layerSamples\": %d, \"layerCount\": %d, \"maxLayerCount\": %d, \"maxLayerSize\": %d}%n",
+                   samples, layerCount, maxLayerCount, maxLayerSize);
+        out.println("}");
+    }
+}
@@ -0,0 +1,115 @@
+package ru.ifmo.steady;
+
+import java.util.Random;
+
+/**
+ * The variation operators of NSGA-II: the SBX crossover and the polynomial mutation by Deb.
+ *
+ * The operators write offspring to the given arrays at the given offsets,
+ * so that a whole generation can be bred into the rows of a single preallocated matrix.
+ * The mutation does not draw a random number for every gene. Instead, it samples
+ * the number of genes to skip until the next mutated one from the geometric distribution,
+ * which needs one draw per mutated gene, or about two draws per offspring for the usual probability 1/n.
+ */
+public final class Variation {
+    private static final double mutationEta = 20;
+    private static final double crossoverEta = 20;
+    private static final double EPS = 1e-15;
+
+    private final int dimension;
+    private final double logNoMutation;
+
+    public Variation(int dimension, double mutationProbability) {
+        this.dimension = dimension;
+        this.logNoMutation = Math.log1p(-mutationProbability);
+    }
+
+    /**
+     * Writes the children of {@code a} and {@code b} to {@code rv0} starting at {@code offset0}
+     * and, unless {@code rv1} is {@code null}, to {@code rv1} starting at {@code offset1}.
+     */
+    public void crossover(double[] a, double[] b, double[] rv0, int offset0, double[] rv1, int offset1, Random r) {
+        if (a.length != dimension || b.length != dimension) {
+            throw new IllegalArgumentException("Lengths are not equal");
+        }
+        if (r.nextDouble() < 0.1) {
+            System.arraycopy(a, 0, rv0, offset0, dimension);
+            if (rv1 != null) {
+                System.arraycopy(b, 0, rv1, offset1, dimension);
+            }
+            return;
+        }
+        for (int i = 0; i < dimension; ++i) {
+            if (r.nextBoolean()) {
+                if (Math.abs(a[i] - b[i]) > EPS) {
+                    double y1 = Math.min(a[i], b[i]);
+                    double y2 = Math.max(a[i], b[i]);
+
+                    double rand = r.nextDouble();
+                    boolean swap = r.nextBoolean();
+                    rv0[offset0 + i] = child(y1, y2, rand, !swap);
+                    if (rv1 != null) {
+                        rv1[offset1 + i] = child(y1, y2, rand, swap);
+                    }
+                } else {
+                    rv0[offset0 + i] = a[i];
+                    if (rv1 != null) {
+                        rv1[offset1 + i] = b[i];
+                    }
+                }
+            } else {
+                rv0[offset0 + i] = b[i];
+                if (rv1 != null) {
+                    rv1[offset1 + i] = a[i];
+                }
+            }
+        }
+    }
+
+    private static double child(double y1, double y2, double rand, boolean q) {
+        double beta = 1 + 2 * (q ? y1 : 1 - y2) / (y2 - y1);
+        double alpha = 2 - Math.pow(beta, -crossoverEta - 1);
+        double betaq;
+        if (rand <= 1 / alpha) {
+            betaq = Math.pow(rand * alpha, 1 / (crossoverEta + 1));
+        } else {
+            betaq = Math.pow(1 / (2 - rand * alpha), 1 / (crossoverEta + 1));
+        }
+        double res = 0.5 * ((y1 + y2) + (q ? -1 : 1) * betaq * (y2 - y1));
+        return Math.max(0, Math.min(1, res));
+    }
+
+    // The number of genes before the next mutated one, capped by the dimension
+    private int skip(Random r) {
+        double skip = Math.log(1 - r.nextDouble()) / logNoMutation;
+        return skip < dimension ? (int) (skip) : dimension;
+    }
+
+    /**
+     * Mutates the genotype stored in {@code ind} starting at {@code offset},
+     * every gene independently with the probability given in the constructor.
+     */
+    public void mutation(double[] ind, int offset, Random r) {
+        for (int i = skip(r); i < dimension; i += 1 + skip(r)) {
+            ind[offset + i] = mutateGene(ind[offset + i], r);
+        }
+    }
+
+    /**
+     * Returns the mutated value of a single gene.
+     */
+    public static double mutateGene(double v, Random r) {
+        double d1 = v, d2 = 1 - v;
+        double rnd = r.nextDouble();
+        double mutPow = 1 / (mutationEta + 1);
+        double deltaQ;
+        if (rnd < 0.5) {
+            double val = 2 * rnd + (1 - 2 * rnd) * Math.pow(d2, 1 + mutationEta);
+            deltaQ = Math.pow(val, mutPow) - 1;
+        } else {
+            double val = 2 * (1 - rnd) + (2 * rnd - 1) * Math.pow(d1, 1 + mutationEta);
+            deltaQ = 1 - Math.pow(val, mutPow);
+        }
+        return Math.max(0, Math.min(1, v + deltaQ));
+    }
+}
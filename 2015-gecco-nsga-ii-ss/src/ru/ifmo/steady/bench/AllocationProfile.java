@@ -0,0 +1,72 @@
+package ru.ifmo.steady.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import ru.ifmo.steady.Solution;
+import ru.ifmo.steady.SolutionStorage;
+
+/**
+ * Measures how many bytes the storages allocate per steady-state step
+ * (one {@code add} followed by one {@code removeWorst}) after warm-up.
+ *
+ * Solutions are created in advance and reused, so only the allocations
+ * made by the storages themselves are counted.
+ */
+public class AllocationProfile {
+    private static final com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long allocatedBytes() {
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static Solution[] makeSolutions(int count, long seed) {
+        Random random = new Random(seed);
+        Solution[] rv = new Solution[count];
+        for (int i = 0; i < count; ++i) {
+            double x = random.nextDouble();
+            double y = 1 - Math.sqrt(x) + random.nextDouble() * 0.3;
+            rv[i] = new Solution(x, y);
+        }
+        return rv;
+    }
+
+    private static double bytesPerStep(SolutionStorage storage, Solution[] solutions, int offset, int steps) {
+        long before = allocatedBytes();
+        for (int i = 0; i < steps; ++i) {
+            storage.add(solutions[(offset + i) % solutions.length]);
+            storage.removeWorst();
+        }
+        return (double) (allocatedBytes() - before) / steps;
+    }
+
+    private static void profile(SolutionStorage storage, int size) {
+        Solution[] solutions = makeSolutions(size * 10, size);
+        storage.clear();
+        for (int i = 0; i < size; ++i) {
+            storage.add(solutions[i]);
+        }
+        int steps = Math.max(100000, size * 10);
+        double cold = bytesPerStep(storage, solutions, size, steps);
+        double warm = 0;
+        for (int round = 0; round < 5; ++round) {
+            warm = bytesPerStep(storage, solutions, size + steps * (round + 1), steps);
+        }
+        System.out.printf("%-10s size %7d: %10.2f bytes/step first, %10.2f bytes/step after warm-up%n",
+                          storage.getName(), size, cold, warm);
+    }
+
+    public static void main(String[] args) {
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            System.out.println("Thread allocated memory measurement is not supported by this JVM");
+            return;
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        for (int size : new int[] { 100, 1000, 10000, 100000 }) {
+            profile(new ru.ifmo.steady.inds.StorageHull(), size);
+            profile(new ru.ifmo.steady.inds.Storage(), size);
+            profile(new ru.ifmo.steady.soa.Storage(), size);
+        }
+    }
+}
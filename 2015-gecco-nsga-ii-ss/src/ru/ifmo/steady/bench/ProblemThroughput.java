@@ -0,0 +1,94 @@
+package ru.ifmo.steady.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import ru.ifmo.steady.Problem;
+import ru.ifmo.steady.problem.*;
+
+/**
+ * Measures how many evaluations per second the problems do,
+ * and how many bytes they allocate per evaluation, both one genotype at a time
+ * and in batches of {@code BATCH} genotypes.
+ *
+ * Genotypes are created in advance, so that only the evaluations are measured.
+ */
+public class ProblemThroughput {
+    private static final com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final int BATCH = 100;
+    private static final int GENOTYPES = 100 * BATCH;
+
+    // Results of the evaluations go here, so that the JIT cannot throw them away.
+    private static volatile double sink;
+
+    private static long allocatedBytes() {
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static double[] makeGenotypes(Problem problem, long seed) {
+        Random random = new Random(seed);
+        double[] rv = new double[GENOTYPES * problem.inputDimension()];
+        for (int i = 0; i < rv.length; ++i) {
+            rv[i] = random.nextDouble();
+        }
+        return rv;
+    }
+
+    private static double[][] split(double[] genotypes, int parts) {
+        int length = genotypes.length / parts;
+        double[][] rv = new double[parts][length];
+        for (int i = 0; i < parts; ++i) {
+            System.arraycopy(genotypes, i * length, rv[i], 0, length);
+        }
+        return rv;
+    }
+
+    private static void measure(Problem problem) {
+        double[] genotypes = makeGenotypes(problem, problem.getName().hashCode());
+        double[][] rows = split(genotypes, GENOTYPES);
+        double[][] batches = split(genotypes, GENOTYPES / BATCH);
+        double[] objectives = new double[BATCH * problem.objectiveCount()];
+        double bestSingle = 0, bestBatch = 0;
+        double bytesSingle = 0, bytesBatch = 0;
+        for (int round = 0; round < 10; ++round) {
+            long bytes = allocatedBytes();
+            long before = System.nanoTime();
+            double sum = 0;
+            for (double[] row : rows) {
+                sum += problem.evaluate(row).getY();
+            }
+            long time = System.nanoTime() - before;
+            bytesSingle = (double) (allocatedBytes() - bytes) / GENOTYPES;
+            bestSingle = Math.max(bestSingle, GENOTYPES * 1e9 / time);
+
+            bytes = allocatedBytes();
+            before = System.nanoTime();
+            for (double[] batch : batches) {
+                problem.evaluateBatch(batch, BATCH, objectives);
+                sum += objectives[1];
+            }
+            time = System.nanoTime() - before;
+            bytesBatch = (double) (allocatedBytes() - bytes) / GENOTYPES;
+            bestBatch = Math.max(bestBatch, GENOTYPES * 1e9 / time);
+            sink += sum;
+        }
+        System.out.printf("%-8s single: %12.0f evals/s, %8.1f bytes/eval; batch: %12.0f evals/s, %8.1f bytes/eval%n",
+                          problem.getName(), bestSingle, bytesSingle, bestBatch, bytesBatch);
+    }
+
+    public static void main(String[] args) {
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        Problem[] problems = {
+            ZDT1.instance(), ZDT2.instance(), ZDT3.instance(), ZDT4.instance(), ZDT6.instance(),
+            DTLZ1.instance(), DTLZ2.instance(), DTLZ3.instance(), DTLZ4.instance(),
+            DTLZ5.instance(), DTLZ6.instance(), DTLZ7.instance(),
+            WFG1.instance(), WFG2.instance(), WFG3.instance(), WFG4.instance(), WFG5.instance(),
+            WFG6.instance(), WFG7.instance(), WFG8.instance(), WFG9.instance()
+        };
+        for (Problem problem : problems) {
+            measure(problem);
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package ru.ifmo.steady.bench;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.function.Supplier;
+
+import ru.ifmo.steady.NSGA2;
+import ru.ifmo.steady.NSGA2.Variant;
+import ru.ifmo.steady.Problem;
+import ru.ifmo.steady.Solution;
+import ru.ifmo.steady.SolutionStorage;
+import ru.ifmo.steady.problem.*;
+import ru.ifmo.steady.util.RandomContext;
+
+/**
+ * A benchmark suite for the storage operations and for whole NSGA-II iterations,
+ * organized the way JMH does it, but without external dependencies.
+ *
+ * Every combination of parameters (benchmark, storage, population size, problem and, for iterations, variant)
+ * runs in its own JVM, so that the JIT profile of one storage does not affect another.
+ * Each fork does several warm-up and measurement iterations of fixed duration,
+ * and reports the average time per operation over the measurement iterations, its spread,
+ * and the number of bytes allocated per operation, which is the same as the normalized
+ * allocation rate of the JMH GC profiler.
+ *
+ * The storage operations work on solutions sampled from short NSGA-II runs on the given problem,
+ * so that the fronts have the shape and the layer structure the storages see in real runs.
+ * Only the operation itself is timed: the additions which keep the population size
+ * for the removal benchmark, and the removals which do the same for the addition benchmark, are not.
+ *
+ * The results can be written to a file and compared against a previous one,
+ * in which case slowdowns and allocation increases above the thresholds are reported
+ * and make the process exit with a non-zero code.
+ */
+public class StorageBenchmark {
+    private static final com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final double TIME_THRESHOLD = 0.25;
+    private static final double ALLOCATION_THRESHOLD = 0.10;
+
+    private static final Map<String, Supplier<SolutionStorage>> storages = new LinkedHashMap<>();
+    private static final Map<String, Supplier<Problem>> problems = new LinkedHashMap<>();
+    private static final Map<String, Variant> variants = new LinkedHashMap<>();
+    private static final List<String> benchmarks = Arrays.asList("add", "removeWorst", "getKth", "getRandom", "performIteration");
+
+    static {
+        storages.put("inds", () -> new ru.ifmo.steady.inds.Storage());
+        storages.put("inds-hull", () -> new ru.ifmo.steady.inds.StorageHull());
+        storages.put("inds-hv", () -> new ru.ifmo.steady.inds.StorageHV());
+        storages.put("enlu", () -> new ru.ifmo.steady.enlu.Storage());
+        storages.put("deb", () -> new ru.ifmo.steady.debNDS.Storage());
+        storages.put("deb-incr", () -> new ru.ifmo.steady.debNDS.StorageIncremental());
+        storages.put("soa", () -> new ru.ifmo.steady.soa.Storage());
+
+        problems.put("ZDT1", ZDT1::instance);
+        problems.put("ZDT3", ZDT3::instance);
+        problems.put("DTLZ1", DTLZ1::instance);
+
+        for (Variant v : Variant.all()) {
+            variants.put(v.shortName().toLowerCase(), v);
+        }
+    }
+
+    // Results of the benchmarked operations go here, so that the JIT cannot throw the operations away.
+    private static volatile int sink;
+
+    private static long allocatedBytes() {
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static final class Settings {
+        int warmUpIterations = 5;
+        int iterations = 5;
+        long iterationMillis = 200;
+        boolean fork = true;
+    }
+
+    private static final class Key {
+        final String benchmark, storage, problem, variant;
+        final int size;
+
+        Key(String benchmark, String storage, int size, String problem, String variant) {
+            this.benchmark = benchmark;
+            this.storage = storage;
+            this.size = size;
+            this.problem = problem;
+            this.variant = variant;
+        }
+
+        static Key parse(String s) {
+            String[] parts = s.split(":");
+            return new Key(parts[0], parts[1], Integer.parseInt(parts[2]), parts[3], parts[4]);
+        }
+
+        @Override
+        public String toString() {
+            return benchmark + ":" + storage + ":" + size + ":" + problem + ":" + variant;
+        }
+    }
+
+    private static final class Result {
+        final Key key;
+        final double nanosPerOp, nanosError, bytesPerOp;
+
+        Result(Key key, double nanosPerOp, double nanosError, double bytesPerOp) {
+            this.key = key;
+            this.nanosPerOp = nanosPerOp;
+            this.nanosError = nanosError;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        static Result parse(String line) {
+            String[] parts = line.split("\t");
+            return new Result(Key.parse(parts[0]),
+                              Double.parseDouble(parts[1]),
+                              Double.parseDouble(parts[2]),
+                              Double.parseDouble(parts[3]));
+        }
+
+        String format() {
+            return String.format(Locale.US, "%s\t%.3f\t%.3f\t%.3f", key, nanosPerOp, nanosError, bytesPerOp);
+        }
+    }
+
+    /*
+     * A single benchmark: prepare() runs untimed before every batch and returns the number of operations
+     * in the batch, which run() then performs while timed.
+     */
+    private static abstract class Benchmark {
+        void startIteration() {}
+        abstract int prepare();
+        abstract int run(int ops);
+    }
+
+    private static Solution[] sample(Problem problem, int size, int count) {
+        SolutionStorage storage = new ru.ifmo.steady.inds.Storage();
+        NSGA2 algo = new NSGA2(problem, storage, size, false, false, Variant.PureSteadyState,
+                               new RandomContext(size * 31 + problem.getName().hashCode()));
+        algo.initialize();
+        List<Solution> rv = new ArrayList<>(count);
+        while (rv.size() < count) {
+            algo.performIteration();
+            for (int i = 0; i < size && rv.size() < count; ++i) {
+                rv.add(storage.getKth(i).solution);
+            }
+        }
+        Collections.shuffle(rv, new Random(size));
+        return rv.toArray(new Solution[count]);
+    }
+
+    private static Benchmark create(Key key) {
+        Supplier<SolutionStorage> storageSupplier = storages.get(key.storage);
+        Problem problem = problems.get(key.problem).get();
+        int size = key.size;
+        if (key.benchmark.equals("performIteration")) {
+            Variant variant = variants.get(key.variant);
+            return new Benchmark() {
+                NSGA2 algo;
+                @Override
+                void startIteration() {
+                    algo = new NSGA2(problem, storageSupplier.get(), size, true, false, variant, new RandomContext(41117));
+                    algo.initialize();
+                }
+                int prepare() {
+                    return 1;
+                }
+                int run(int ops) {
+                    for (int i = 0; i < ops; ++i) {
+                        algo.performIteration();
+                    }
+                    return algo.getEvaluations();
+                }
+            };
+        }
+
+        Solution[] solutions = sample(problem, size, size * 10);
+        SolutionStorage storage = storageSupplier.get();
+        storage.setRandomContext(new RandomContext(size));
+        for (int i = 0; i < size; ++i) {
+            storage.add(solutions[i]);
+        }
+        int batch = Math.max(1, size / 16);
+        Random random = new Random(size);
+        switch (key.benchmark) {
+            case "add": return new Benchmark() {
+                int next = size;
+                int prepare() {
+                    storage.removeWorst(storage.size() - size);
+                    return batch;
+                }
+                int run(int ops) {
+                    for (int i = 0; i < ops; ++i) {
+                        storage.add(solutions[next]);
+                        next = next + 1 == solutions.length ? 0 : next + 1;
+                    }
+                    return storage.size();
+                }
+            };
+            case "removeWorst": return new Benchmark() {
+                int next = size;
+                int prepare() {
+                    for (int i = 0; i < batch; ++i) {
+                        storage.add(solutions[next]);
+                        next = next + 1 == solutions.length ? 0 : next + 1;
+                    }
+                    return batch;
+                }
+                int run(int ops) {
+                    int rv = 0;
+                    for (int i = 0; i < ops; ++i) {
+                        rv += storage.removeWorst().hashCode();
+                    }
+                    return rv;
+                }
+            };
+            case "getKth": return new Benchmark() {
+                final int[] indices = random.ints(1024, 0, size).toArray();
+                int prepare() {
+                    return indices.length;
+                }
+                int run(int ops) {
+                    int rv = 0;
+                    for (int i = 0; i < ops; ++i) {
+                        rv += storage.getKth(indices[i]).layer;
+                    }
+                    return rv;
+                }
+            };
+            case "getRandom": return new Benchmark() {
+                int prepare() {
+                    return 1024;
+                }
+                int run(int ops) {
+                    int rv = 0;
+                    for (int i = 0; i < ops; ++i) {
+                        rv += storage.getRandom().layer;
+                    }
+                    return rv;
+                }
+            };
+            default:
+                throw new IllegalArgumentException("Unknown benchmark: " + key.benchmark);
+        }
+    }
+
+    private static Result measure(Key key, Settings settings) {
+        Benchmark benchmark = create(key);
+        double[] nanosPerOp = new double[settings.iterations];
+        long totalOps = 0, totalBytes = 0;
+        for (int iteration = -settings.warmUpIterations; iteration < settings.iterations; ++iteration) {
+            benchmark.startIteration();
+            long deadline = System.nanoTime() + settings.iterationMillis * 1000000;
+            long ops = 0, nanos = 0, bytes = 0;
+            while (ops == 0 || System.nanoTime() < deadline) {
+                int batch = benchmark.prepare();
+                long bytesBefore = allocatedBytes();
+                long before = System.nanoTime();
+                sink += benchmark.run(batch);
+                nanos += System.nanoTime() - before;
+                bytes += allocatedBytes() - bytesBefore;
+                ops += batch;
+            }
+            if (iteration >= 0) {
+                nanosPerOp[iteration] = (double) (nanos) / ops;
+                totalOps += ops;
+                totalBytes += bytes;
+            }
+        }
+        double sum = 0, sumSq = 0;
+        for (double v : nanosPerOp) {
+            sum += v;
+            sumSq += v * v;
+        }
+        int n = nanosPerOp.length;
+        double mean = sum / n;
+        double stdDev = n > 1 ? Math.sqrt(Math.max(0, (sumSq - n * mean * mean) / (n - 1))) : 0;
+        return new Result(key, mean, stdDev, (double) (totalBytes) / totalOps);
+    }
+
+    private static Result fork(Key key, Settings settings) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder pb = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                StorageBenchmark.class.getName(),
+                "-wi=" + settings.warmUpIterations, "-i=" + settings.iterations, "-t=" + settings.iterationMillis,
+                "-run=" + key);
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+        Result rv = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(key.toString() + "\t")) {
+                    rv = Result.parse(line);
+                } else {
+                    System.out.println("[" + key + "] " + line);
+                }
+            }
+        }
+        if (process.waitFor() != 0 || rv == null) {
+            throw new IllegalStateException("Fork for " + key + " failed");
+        }
+        return rv;
+    }
+
+    private static Map<String, Result> readResults(String fileName) throws IOException {
+        Map<String, Result> rv = new HashMap<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    Result r = Result.parse(line);
+                    rv.put(r.key.toString(), r);
+                }
+            }
+        }
+        return rv;
+    }
+
+    private static List<String> listOption(Map<String, String> options, String name, Collection<String> all, String defaults) {
+        List<String> rv = Arrays.asList(options.getOrDefault(name, defaults).split(","));
+        for (String s : rv) {
+            if (!all.contains(s)) {
+                throw new IllegalArgumentException("Unknown value '" + s + "' of option -" + name + ", known values are " + all);
+            }
+        }
+        return rv;
+    }
+
+    private static void usage() {
+        System.out.println("Usage: StorageBenchmark [options], where options are:");
+        System.out.println("    -b=<benchmarks>    comma-separated subset of " + benchmarks);
+        System.out.println("    -s=<storages>      comma-separated subset of " + storages.keySet() + ", default inds,inds-hull,enlu,deb");
+        System.out.println("    -n=<sizes>         comma-separated population sizes, default 100,1000");
+        System.out.println("    -p=<problems>      comma-separated subset of " + problems.keySet());
+        System.out.println("    -v=<variants>      comma-separated subset of " + variants.keySet() + ", default pss,bibr");
+        System.out.println("    -wi=<count>        warm-up iterations, default 5");
+        System.out.println("    -i=<count>         measurement iterations, default 5");
+        System.out.println("    -t=<millis>        duration of an iteration, default 200");
+        System.out.println("    -f=<0|1>           whether to fork a JVM for every benchmark, default 1");
+        System.out.println("    -o=<file>          write the results to the file");
+        System.out.println("    -baseline=<file>   compare the results to the ones written earlier");
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Locale.setDefault(Locale.US);
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("-") || eq == -1) {
+                usage();
+                System.exit(1);
+            }
+            options.put(arg.substring(1, eq), arg.substring(eq + 1));
+        }
+        Settings settings = new Settings();
+        settings.warmUpIterations = Integer.parseInt(options.getOrDefault("wi", "5"));
+        settings.iterations = Integer.parseInt(options.getOrDefault("i", "5"));
+        settings.iterationMillis = Long.parseLong(options.getOrDefault("t", "200"));
+        settings.fork = !options.getOrDefault("f", "1").equals("0");
+
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        if (options.containsKey("run")) {
+            System.out.println(measure(Key.parse(options.get("run")), settings).format());
+            return;
+        }
+
+        List<Key> keys = new ArrayList<>();
+        try {
+            List<String> sizes = Arrays.asList(options.getOrDefault("n", "100,1000").split(","));
+            for (String benchmark : listOption(options, "b", benchmarks, String.join(",", benchmarks))) {
+                for (String storage : listOption(options, "s", storages.keySet(), "inds,inds-hull,enlu,deb")) {
+                    for (String size : sizes) {
+                        for (String problem : listOption(options, "p", problems.keySet(), String.join(",", problems.keySet()))) {
+                            if (benchmark.equals("performIteration")) {
+                                for (String variant : listOption(options, "v", variants.keySet(), "pss,bibr")) {
+                                    keys.add(new Key(benchmark, storage, Integer.parseInt(size), problem, variant));
+                                }
+                            } else {
+                                keys.add(new Key(benchmark, storage, Integer.parseInt(size), problem, "-"));
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            System.out.println("Error: " + ex.getMessage());
+            usage();
+            System.exit(1);
+        }
+
+        Map<String, Result> baseline = options.containsKey("baseline")
+            ? readResults(options.get("baseline"))
+            : Collections.<String, Result>emptyMap();
+        PrintWriter out = options.containsKey("o") ? new PrintWriter(options.get("o")) : null;
+        if (out != null) {
+            out.println("# benchmark:storage:size:problem:variant\tns/op\tns/op stddev\tbytes/op");
+        }
+        int regressions = 0;
+        System.out.printf("%-45s %14s %12s %14s%n", "Benchmark", "ns/op", "stddev", "bytes/op");
+        for (Key key : keys) {
+            Result r = settings.fork ? fork(key, settings) : measure(key, settings);
+            String note = "";
+            Result base = baseline.get(key.toString());
+            if (base != null) {
+                if (r.nanosPerOp > base.nanosPerOp * (1 + TIME_THRESHOLD)) {
+                    note += String.format(" SLOWER than %.1f ns/op", base.nanosPerOp);
+                }
+                if (r.bytesPerOp > base.bytesPerOp * (1 + ALLOCATION_THRESHOLD) + 1) {
+                    note += String.format(" ALLOCATES more than %.1f bytes/op", base.bytesPerOp);
+                }
+                if (!note.isEmpty()) {
+                    ++regressions;
+                }
+            }
+            System.out.printf("%-45s %14.1f %12.1f %14.1f%s%n", key, r.nanosPerOp, r.nanosError, r.bytesPerOp, note);
+            if (out != null) {
+                out.println(r.format());
+                out.flush();
+            }
+        }
+        if (out != null) {
+            out.close();
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " regression(s) against " + options.get("baseline"));
+            System.exit(1);
+        }
+    }
+}
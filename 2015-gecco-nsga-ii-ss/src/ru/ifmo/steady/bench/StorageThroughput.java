@@ -0,0 +1,59 @@
+package ru.ifmo.steady.bench;
+
+import java.util.Random;
+
+import ru.ifmo.steady.Solution;
+import ru.ifmo.steady.SolutionStorage;
+
+/**
+ * Measures the wall-clock time of a steady-state step
+ * (two {@code getRandom} queries, one {@code add} and one {@code removeWorst})
+ * for storages which scale to large populations.
+ *
+ * Solutions are created in advance, so that only the storages are timed.
+ */
+public class StorageThroughput {
+    private static Solution[] makeSolutions(int count, long seed) {
+        Random random = new Random(seed);
+        Solution[] rv = new Solution[count];
+        for (int i = 0; i < count; ++i) {
+            double x = random.nextDouble();
+            double y = 1 - Math.sqrt(x) + random.nextDouble() * 0.3;
+            rv[i] = new Solution(x, y);
+        }
+        return rv;
+    }
+
+    private static double nanosPerStep(SolutionStorage storage, Solution[] solutions, int offset, int steps) {
+        long before = System.nanoTime();
+        for (int i = 0; i < steps; ++i) {
+            storage.getRandom();
+            storage.getRandom();
+            storage.add(solutions[(offset + i) % solutions.length]);
+            storage.removeWorst();
+        }
+        return (double) (System.nanoTime() - before) / steps;
+    }
+
+    private static void measure(SolutionStorage storage, int size) {
+        Solution[] solutions = makeSolutions(size * 10, size);
+        storage.clear();
+        for (int i = 0; i < size; ++i) {
+            storage.add(solutions[i]);
+        }
+        int steps = Math.max(100000, size * 2);
+        double best = Double.POSITIVE_INFINITY;
+        for (int round = 0; round < 5; ++round) {
+            best = Math.min(best, nanosPerStep(storage, solutions, size + steps * round, steps));
+        }
+        System.out.printf("%-10s size %7d: %10.1f ns/step, %3d layers%n",
+                          storage.getName(), size, best, storage.getLayerCount());
+    }
+
+    public static void main(String[] args) {
+        for (int size : new int[] { 100, 1000, 10000, 100000 }) {
+            measure(new ru.ifmo.steady.inds.StorageHull(), size);
+            measure(new ru.ifmo.steady.soa.Storage(), size);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ru.ifmo.steady.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import ru.ifmo.steady.Variation;
+
+/**
+ * Compares breeding a generation into a preallocated matrix, with the mutation
+ * which skips geometrically distributed numbers of genes, against breeding every pair
+ * into freshly allocated arrays with one random draw per gene for the mutation,
+ * which is how NSGA2 did it before. Reports random draws, allocated bytes and time per offspring
+ * for several input dimensions, with the mutation probability 1/n.
+ */
+public class VariationProfile {
+    private static final com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final int GENERATION = 100;
+
+    private static long allocatedBytes() {
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static final class CountingRandom extends Random {
+        private static final long serialVersionUID = 1L;
+        long draws;
+
+        CountingRandom(long seed) {
+            super(seed);
+        }
+
+        @Override
+        protected int next(int bits) {
+            ++draws;
+            return super.next(bits);
+        }
+    }
+
+    // Results go here, so that the JIT cannot throw the breeding away.
+    private static volatile double sink;
+
+    private static double[][] makeParents(int dimension, Random random) {
+        double[][] rv = new double[GENERATION][dimension];
+        for (double[] p : rv) {
+            for (int i = 0; i < dimension; ++i) {
+                p[i] = random.nextDouble();
+            }
+        }
+        return rv;
+    }
+
+    private static double perGene(Variation variation, double[][] parents, double probability, CountingRandom r) {
+        int dimension = parents[0].length;
+        double sum = 0;
+        for (int i = 0; i < GENERATION; i += 2) {
+            double[][] children = { new double[dimension], new double[dimension] };
+            variation.crossover(parents[i], parents[i + 1], children[0], 0, children[1], 0, r);
+            for (double[] child : children) {
+                for (int j = 0; j < dimension; ++j) {
+                    if (r.nextDouble() < probability) {
+                        child[j] = Variation.mutateGene(child[j], r);
+                    }
+                }
+                sum += child[0];
+            }
+        }
+        return sum;
+    }
+
+    private static double bulk(Variation variation, double[][] parents, double[] generation, CountingRandom r) {
+        int dimension = parents[0].length;
+        for (int i = 0; i < GENERATION; i += 2) {
+            int offset = i * dimension;
+            variation.crossover(parents[i], parents[i + 1], generation, offset, generation, offset + dimension, r);
+            variation.mutation(generation, offset, r);
+            variation.mutation(generation, offset + dimension, r);
+        }
+        return generation[0];
+    }
+
+    private static void profile(int dimension) {
+        double probability = 1.0 / dimension;
+        Variation variation = new Variation(dimension, probability);
+        double[][] parents = makeParents(dimension, new Random(dimension));
+        double[] generation = new double[GENERATION * dimension];
+        CountingRandom r = new CountingRandom(dimension);
+        int generations = Math.max(10, 1000000 / (GENERATION * dimension));
+        double[] draws = new double[2], bytes = new double[2], nanos = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+        for (int round = 0; round < 5; ++round) {
+            for (int kind = 0; kind < 2; ++kind) {
+                r.draws = 0;
+                long bytesBefore = allocatedBytes();
+                long before = System.nanoTime();
+                for (int g = 0; g < generations; ++g) {
+                    sink += kind == 0
+                        ? perGene(variation, parents, probability, r)
+                        : bulk(variation, parents, generation, r);
+                }
+                long time = System.nanoTime() - before;
+                long offspring = (long) (generations) * GENERATION;
+                bytes[kind] = (double) (allocatedBytes() - bytesBefore) / offspring;
+                draws[kind] = (double) (r.draws) / offspring;
+                nanos[kind] = Math.min(nanos[kind], (double) (time) / offspring);
+            }
+        }
+        System.out.printf("n = %6d: per-gene %10.1f draws, %9.1f bytes, %10.1f ns; bulk %10.1f draws, %9.1f bytes, %10.1f ns per offspring%n",
+                          dimension, draws[0], bytes[0], nanos[0], draws[1], bytes[1], nanos[1]);
+    }
+
+    public static void main(String[] args) {
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        for (int dimension : new int[] { 30, 100, 1000, 10000 }) {
+            profile(dimension);
+        }
+    }
+}
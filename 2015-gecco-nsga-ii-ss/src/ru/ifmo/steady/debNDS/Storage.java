@@ -3,25 +3,69 @@ package ru.ifmo.steady.debNDS;
 import java.util.*;
 
 import ru.ifmo.steady.*;
-import ru.ifmo.steady.util.FastRandom;
+import ru.ifmo.steady.util.FenwickTree;
 
 /**
  * An implementation of the Deb's fast non-dominated sorting
  * with crowding distance support.
+ *
+ * By default, every insertion sorts the whole population again.
+ * In the incremental mode, the layers above the first one affected by the insertion
+ * are kept as they are, and only the remaining layers are sorted together with the new solutions.
+ * The resulting layers, including the order of equal solutions, are the same in both modes.
  */
 public class Storage extends SolutionStorage {
+    private final boolean incremental;
+
+    public Storage() {
+        this(false);
+    }
+
+    protected Storage(boolean incremental) {
+        this.incremental = incremental;
+    }
+
     public void add(Solution solution) {
-        List<Solution> cr = collectRemove();
+        long start = metrics.start();
+        addImpl(solution);
+        metrics.finish(StorageMetrics.Operation.Add, start);
+    }
+
+    private void addImpl(Solution solution) {
+        List<Solution> cr = collectRemove(incremental ? firstAffectedLayer(solution, layers.size()) : 0);
         cr.add(solution);
         sort(cr);
     }
 
     public void addAll(Solution... solutions) {
-        List<Solution> cr = collectRemove();
+        long start = metrics.start();
+        addAllImpl(solutions);
+        metrics.finish(StorageMetrics.Operation.AddAll, start);
+    }
+
+    private void addAllImpl(Solution... solutions) {
+        int first = 0;
+        if (incremental) {
+            first = layers.size();
+            for (Solution solution : solutions) {
+                first = firstAffectedLayer(solution, first);
+            }
+        }
+        List<Solution> cr = collectRemove(first);
         cr.addAll(Arrays.asList(solutions));
         sort(cr);
     }
 
+    @Override
+    public void restoreLayers(List<List<Solution>> layers) {
+        clear();
+        for (List<Solution> layer : layers) {
+            this.layers.add(new ArrayList<>(layer));
+            layerSizes.append(layer.size());
+            size += layer.size();
+        }
+    }
+
     public int getLayerCount() {
         return layers.size();
     }
@@ -42,19 +86,23 @@ public class Storage extends SolutionStorage {
         if (sz == 0) {
             throw new IllegalStateException("empty data structure");
         }
-        return getKth(FastRandom.geneticThreadLocal().nextInt(sz));
+        return getKth(randomContext.genetic().nextInt(sz));
     }
 
     public QueryResult getKth(int index) {
+        long start = metrics.start();
+        QueryResult rv = getKthImpl(index);
+        metrics.finish(StorageMetrics.Operation.GetKth, start);
+        return rv;
+    }
+
+    private QueryResult getKthImpl(int index) {
         int sz = size();
         if (index < 0 || index >= sz) {
             throw new IllegalArgumentException("index = " + index + " size = " + sz);
         }
-        int layer = 0;
-        while (layers.get(layer).size() <= index) {
-            index -= layers.get(layer).size();
-            ++layer;
-        }
+        int layer = layerSizes.find(index);
+        index -= layerSizes.prefixSum(layer);
         List<Solution> curr = layers.get(layer);
         int cs = curr.size();
         Solution s = curr.get(index);
@@ -72,38 +120,81 @@ public class Storage extends SolutionStorage {
     }
 
     public Solution removeWorst() {
-        return removeWorstImpl(1);
+        long start = metrics.start();
+        Solution rv = removeWorstImpl(1);
+        metrics.finish(StorageMetrics.Operation.RemoveWorst, start);
+        return rv;
     }
 
     public void removeWorst(int count) {
+        long start = metrics.start();
         removeWorstImpl(count);
+        metrics.finish(StorageMetrics.Operation.RemoveWorst, start);
     }
 
     public void clear() {
         layers.clear();
+        layerSizes.clear();
         size = 0;
     }
 
     /* Implementation */
 
     private final List<List<Solution>> layers = new ArrayList<>();
+    private final FenwickTree layerSizes = new FenwickTree();
     private int size = 0;
 
-    private List<Solution> collectRemove() {
-        if (size == 0) {
+    /*
+     * The first layer which changes when the solution is added, that is,
+     * the first one with no solution dominating the given one, but not greater than the limit.
+     * No layer above it is changed, as the solution cannot dominate anything there.
+     */
+    private int firstAffectedLayer(Solution solution, int limit) {
+        for (int i = 0; i < limit; ++i) {
+            // The layer is sorted by x, so the last solution with x not greater
+            // than the given one is the only candidate to dominate it.
+            List<Solution> layer = layers.get(i);
+            int left = -1, right = layer.size();
+            while (right - left > 1) {
+                int mid = (left + right) >>> 1;
+                if (layer.get(mid).compareX(solution, counter) <= 0) {
+                    left = mid;
+                } else {
+                    right = mid;
+                }
+            }
+            if (left < 0) {
+                return i;
+            }
+            Solution candidate = layer.get(left);
+            int cmpx = candidate.compareX(solution, counter);
+            int cmpy = candidate.compareY(solution, counter);
+            if (cmpy > 0 || cmpx == 0 && cmpy == 0) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    // Removes the layers starting from the given one, collects their solutions from the last layer to the first
+    private List<Solution> collectRemove(int firstLayer) {
+        if (firstLayer == layers.size()) {
             return new ArrayList<>();
         } else {
             List<Solution> rv = layers.remove(layers.size() - 1);
-            while (!layers.isEmpty()) {
+            layerSizes.removeLast();
+            while (layers.size() > firstLayer) {
                 rv.addAll(layers.remove(layers.size() - 1));
+                layerSizes.removeLast();
             }
+            size -= rv.size();
             return rv;
         }
     }
 
     private void sort(List<Solution> solutions) {
         int sz = solutions.size();
-        this.size = sz;
+        this.size += sz;
         boolean[][] dom = new boolean[sz][sz];
         int[] incoming = new int[sz];
         for (int i = 0; i < sz; ++i) {
@@ -149,6 +240,7 @@ public class Storage extends SolutionStorage {
                 ll.add(layer[i]);
             }
             layers.add(ll);
+            layerSizes.append(currSize);
             currSize = nextSize;
             int[] tmp = curr;
             curr = next;
@@ -164,11 +256,12 @@ public class Storage extends SolutionStorage {
         List<Solution> curr = layers.get(layers.size() - 1);
         while (curr.size() < count) {
             layers.remove(layers.size() - 1);
+            layerSizes.removeLast();
             count -= curr.size();
             curr = layers.get(layers.size() - 1);
         }
         Solution lastRemoved = null;
-        Random r = FastRandom.geneticThreadLocal();
+        Random r = randomContext.genetic();
         List<Integer> equal = new ArrayList<>();
         while (count > 0) {
             double worst = Double.POSITIVE_INFINITY;
@@ -198,11 +291,20 @@ public class Storage extends SolutionStorage {
         }
         if (curr.isEmpty()) {
             layers.remove(layers.size() - 1);
+            layerSizes.removeLast();
+        } else {
+            layerSizes.set(layers.size() - 1, curr.size());
         }
         return lastRemoved;
     }
 
     public void removeWorstDebCompatible(int count) {
+        long start = metrics.start();
+        removeWorstDebCompatibleImpl(count);
+        metrics.finish(StorageMetrics.Operation.RemoveWorstDebCompatible, start);
+    }
+
+    private void removeWorstDebCompatibleImpl(int count) {
         if (size < count) {
             throw new IllegalStateException("not enough elements to delete");
         }
@@ -210,6 +312,7 @@ public class Storage extends SolutionStorage {
         while (layers.get(layers.size() - 1).size() <= count) {
             count -= layers.get(layers.size() - 1).size();
             layers.remove(layers.size() - 1);
+            layerSizes.removeLast();
         }
         if (count > 0) {
             List<Solution> lastLayer = layers.get(layers.size() - 1);
@@ -234,6 +337,7 @@ public class Storage extends SolutionStorage {
                 newContents.add(lastLayer.get(indices[i]));
             }
             layers.set(layers.size() - 1, newContents);
+            layerSizes.set(layers.size() - 1, remain);
         }
     }
 }
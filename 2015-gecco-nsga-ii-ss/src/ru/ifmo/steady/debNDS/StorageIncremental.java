@@ -0,0 +1,17 @@
+package ru.ifmo.steady.debNDS;
+
+/**
+ * The Deb's fast non-dominated sorting which sorts again only the layers affected by an insertion.
+ * It maintains exactly the same layers as the plain one, so it can be used as a reference
+ * at budgets where sorting the whole population on every insertion is too slow.
+ */
+public class StorageIncremental extends Storage {
+    public StorageIncremental() {
+        super(true);
+    }
+
+    @Override
+    public String getName() {
+        return "debNDS-incr";
+    }
+}
@@ -3,7 +3,7 @@ package ru.ifmo.steady.enlu;
 import java.util.*;
 
 import ru.ifmo.steady.*;
-import ru.ifmo.steady.util.FastRandom;
+import ru.ifmo.steady.util.FenwickTree;
 
 /**
  * An implementation of the Deb's ENLU approach
@@ -11,7 +11,9 @@ import ru.ifmo.steady.util.FastRandom;
  */
 public class Storage extends SolutionStorage {
     public void add(Solution solution) {
+        long start = metrics.start();
         addImpl(solution);
+        metrics.finish(StorageMetrics.Operation.Add, start);
     }
 
     public int getLayerCount() {
@@ -33,18 +35,22 @@ public class Storage extends SolutionStorage {
         if (size == 0) {
             throw new IllegalStateException("empty data structure");
         }
-        return getKth(FastRandom.geneticThreadLocal().nextInt(size));
+        return getKth(randomContext.genetic().nextInt(size));
     }
 
     public QueryResult getKth(int index) {
+        long start = metrics.start();
+        QueryResult rv = getKthImpl(index);
+        metrics.finish(StorageMetrics.Operation.GetKth, start);
+        return rv;
+    }
+
+    private QueryResult getKthImpl(int index) {
         if (index < 0 || index >= size) {
             throw new IllegalArgumentException("index " + index + " size = " + size);
         }
-        int layer = 0;
-        while (index >= layers.get(layer).size()) {
-            index -= layers.get(layer).size();
-            ++layer;
-        }
+        int layer = layerSizes.find(index);
+        index -= layerSizes.prefixSum(layer);
         List<Solution> layerList = layers.get(layer);
         Solution rv = layerList.get(index);
         if (index == 0 || index == layerList.size() - 1) {
@@ -66,21 +72,28 @@ public class Storage extends SolutionStorage {
     }
 
     public Solution removeWorst() {
-        return removeWorstImpl(1);
+        long start = metrics.start();
+        Solution rv = removeWorstImpl(1);
+        metrics.finish(StorageMetrics.Operation.RemoveWorst, start);
+        return rv;
     }
 
     public void removeWorst(int count) {
+        long start = metrics.start();
         removeWorstImpl(count);
+        metrics.finish(StorageMetrics.Operation.RemoveWorst, start);
     }
 
     public void clear() {
         size = 0;
         layers.clear();
+        layerSizes.clear();
     }
 
     /* Implementation */
 
     private final List<List<Solution>> layers = new ArrayList<>();
+    private final FenwickTree layerSizes = new FenwickTree();
     private int size = 0;
 
     private void addImpl(Solution solution) {
@@ -110,6 +123,7 @@ public class Storage extends SolutionStorage {
                     List<Solution> newLayer = new ArrayList<>();
                     newLayer.add(solution);
                     layers.add(i, newLayer);
+                    layerSizes.insert(i, 1);
                 } else {
                     layers.set(i, incomparable);
                     int position = 0;
@@ -117,6 +131,7 @@ public class Storage extends SolutionStorage {
                         ++position;
                     }
                     incomparable.add(position, solution);
+                    layerSizes.set(i, incomparable.size());
                     layer.clear();
                     push(i + 1, dominatedBy, layer, new ArrayList<>());
                 }
@@ -129,9 +144,16 @@ public class Storage extends SolutionStorage {
         List<Solution> newLayer = new ArrayList<>();
         newLayer.add(solution);
         layers.add(newLayer);
+        layerSizes.append(1);
     }
 
     public void removeWorstDebCompatible(int count) {
+        long start = metrics.start();
+        removeWorstDebCompatibleImpl(count);
+        metrics.finish(StorageMetrics.Operation.RemoveWorstDebCompatible, start);
+    }
+
+    private void removeWorstDebCompatibleImpl(int count) {
         if (size < count) {
             throw new IllegalStateException("not enough elements to remove");
         }
@@ -139,6 +161,7 @@ public class Storage extends SolutionStorage {
         while (layers.get(layers.size() - 1).size() <= count) {
             count -= layers.get(layers.size() - 1).size();
             layers.remove(layers.size() - 1);
+            layerSizes.removeLast();
         }
         if (count > 0) {
             List<Solution> lastLayer = layers.get(layers.size() - 1);
@@ -163,6 +186,7 @@ public class Storage extends SolutionStorage {
                 newContents.add(lastLayer.get(indices[i]));
             }
             layers.set(layers.size() - 1, newContents);
+            layerSizes.set(layers.size() - 1, remain);
         }
     }
 
@@ -174,6 +198,7 @@ public class Storage extends SolutionStorage {
         while (layers.get(layers.size() - 1).size() < count) {
             count -= layers.get(layers.size() - 1).size();
             layers.remove(layers.size() - 1);
+            layerSizes.removeLast();
         }
         List<Solution> lastLayer = layers.get(layers.size() - 1);
         if (lastLayer.size() < count) {
@@ -185,6 +210,7 @@ public class Storage extends SolutionStorage {
                 if (lastLayer.size() == 1) {
                     Solution rv = lastLayer.get(0);
                     layers.remove(layers.size() - 1);
+                    layerSizes.removeLast();
                     return rv;
                 }
                 double worstCrowding = Double.POSITIVE_INFINITY;
@@ -206,9 +232,10 @@ public class Storage extends SolutionStorage {
                         worst.add(i);
                     }
                 }
-                int index = worst.get(FastRandom.geneticThreadLocal().nextInt(worst.size()));
+                int index = worst.get(randomContext.genetic().nextInt(worst.size()));
                 last = lastLayer.remove(index);
             }
+            layerSizes.set(layers.size() - 1, lastLayer.size());
             return last;
         }
     }
@@ -219,6 +246,7 @@ public class Storage extends SolutionStorage {
         if (pushed.size() > 0) {
             if (layer == layers.size()) {
                 layers.add(pushed);
+                layerSizes.append(pushed.size());
             } else {
                 List<Solution> currentLayer = layers.get(layer);
                 Solution min = pushed.get(0);
@@ -249,6 +277,7 @@ public class Storage extends SolutionStorage {
                     incomparable.addAll(pushed);
                 }
                 layers.set(layer, incomparable);
+                layerSizes.set(layer, incomparable.size());
                 pushed.clear();
                 currentLayer.clear();
                 push(layer + 1, dominated, pushed, currentLayer);
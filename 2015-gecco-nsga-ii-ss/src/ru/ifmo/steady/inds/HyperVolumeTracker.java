@@ -0,0 +1,82 @@
+package ru.ifmo.steady.inds;
+
+import java.util.Iterator;
+
+import ru.ifmo.steady.Solution;
+
+/**
+ * Maintains the hypervolume of the first layer of an INDS storage
+ * under insertions and removals of single solutions.
+ *
+ * The hypervolume is measured as in {@link ru.ifmo.steady.SolutionStorage#hyperVolume(double, double, double, double)}:
+ * objectives are normalized to the given bounds, solutions outside the unit square are ignored,
+ * and the reference point is (1; 1). Since the first layer is sorted by x and decreasing y,
+ * the solutions inside the unit square form a contiguous range, so the exclusive contribution
+ * of a solution depends only on its neighbours in the layer: it is the rectangle between
+ * the solution, the x of the next neighbour and the y of the previous one.
+ * The layer changes by inserting or removing a solution with known neighbours,
+ * and the hypervolume changes exactly by the contribution of that solution.
+ */
+final class HyperVolumeTracker {
+    private final double minX, maxX, minY, maxY;
+    private double hyperVolume = 0;
+
+    HyperVolumeTracker(double minX, double maxX, double minY, double maxY) {
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+    }
+
+    private boolean isInside(Solution s) {
+        if (s == null) {
+            return false;
+        }
+        double x = s.getNormalizedX(minX, maxX);
+        double y = s.getNormalizedY(minY, maxY);
+        return 0 <= x && x <= 1 && 0 <= y && y <= 1;
+    }
+
+    /**
+     * Returns the exclusive contribution of a solution of the first layer,
+     * given its neighbours in the layer (null if there is no such neighbour).
+     */
+    double contribution(Solution prev, Solution curr, Solution next) {
+        if (!isInside(curr)) {
+            return 0;
+        }
+        double prevY = isInside(prev) ? prev.getNormalizedY(minY, maxY) : 1;
+        double nextX = isInside(next) ? next.getNormalizedX(minX, maxX) : 1;
+        return (nextX - curr.getNormalizedX(minX, maxX)) * (prevY - curr.getNormalizedY(minY, maxY));
+    }
+
+    // The solution has just been inserted between prev and next.
+    void inserted(Solution prev, Solution curr, Solution next) {
+        hyperVolume += contribution(prev, curr, next);
+    }
+
+    // The solution is about to be removed from between prev and next.
+    void removed(Solution prev, Solution curr, Solution next) {
+        hyperVolume -= contribution(prev, curr, next);
+    }
+
+    // Recomputes the hypervolume from scratch for the given first layer.
+    void reset(Iterator<Solution> firstLayer) {
+        double hv = 0;
+        double lastY = 1;
+        while (firstLayer.hasNext()) {
+            Solution s = firstLayer.next();
+            if (isInside(s)) {
+                double currX = s.getNormalizedX(minX, maxX);
+                double currY = s.getNormalizedY(minY, maxY);
+                hv += (lastY - currY) * (1 - currX);
+                lastY = currY;
+            }
+        }
+        hyperVolume = hv;
+    }
+
+    double get() {
+        return hyperVolume;
+    }
+}
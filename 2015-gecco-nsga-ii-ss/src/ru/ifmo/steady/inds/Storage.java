@@ -7,8 +7,8 @@ import ru.ifmo.steady.Solution;
 
 public class Storage extends StorageBase<Storage.LLNode> {
     protected class LLNode extends TreapNode<Solution, LLNode> implements StorageBase.LLNodeAdditionals<LLNode> {
-        public LLNode(Solution key) {
-            super(key);
+        public LLNode(Solution key, int heapKey) {
+            super(key, heapKey);
         }
 
         public double crowdingDistance(double globalDX, double globalDY) {
@@ -38,8 +38,8 @@ public class Storage extends StorageBase<Storage.LLNode> {
     }
 
     @Override
-    protected LLNode newLLNode(Solution s) {
-        return new LLNode(s);
+    protected LLNode newLLNode(Solution s, int heapKey) {
+        return new LLNode(s, heapKey);
     }
 
     @Override
@@ -1,5 +1,6 @@
 package ru.ifmo.steady.inds;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -7,8 +8,8 @@ import java.util.function.Predicate;
 import ru.ifmo.steady.ComparisonCounter;
 import ru.ifmo.steady.Solution;
 import ru.ifmo.steady.SolutionStorage;
+import ru.ifmo.steady.StorageMetrics;
 import ru.ifmo.steady.inds.TreapNode.SplitResult;
-import ru.ifmo.steady.util.FastRandom;
 
 import static ru.ifmo.steady.inds.TreapNode.split;
 import static ru.ifmo.steady.inds.TreapNode.splitK;
@@ -16,11 +17,34 @@ import static ru.ifmo.steady.inds.TreapNode.merge;
 import static ru.ifmo.steady.inds.TreapNode.cutRightmost;
 
 public abstract class StorageBase<LLType extends TreapNode<Solution, LLType> & StorageBase.LLNodeAdditionals<LLType>> extends SolutionStorage {
-    protected abstract LLType newLLNode(Solution s);
+    protected abstract LLType newLLNode(Solution s, int heapKey);
     public abstract String getName();
 
     public void add(Solution s) {
-        addToLayers(newLLNode(s));
+        long start = metrics.start();
+        addToLayers(obtainLLNode(s));
+        metrics.finish(StorageMetrics.Operation.Add, start);
+    }
+
+    /**
+     * Adds all the given solutions at once. The resulting layers, as well as
+     * the order of equal solutions within them, are the same as if the solutions
+     * were added one by one, but each affected layer is visited only once
+     * for the whole batch.
+     */
+    @Override
+    public void addAll(Solution... solutions) {
+        long start = metrics.start();
+        addAllImpl(solutions);
+        metrics.finish(StorageMetrics.Operation.AddAll, start);
+    }
+
+    private void addAllImpl(Solution... solutions) {
+        if (solutions.length == 1) {
+            addToLayers(obtainLLNode(solutions[0]));
+        } else if (solutions.length > 1) {
+            addAllToLayers(solutions);
+        }
     }
 
     public int getLayerCount() {
@@ -56,12 +80,16 @@ public abstract class StorageBase<LLType extends TreapNode<Solution, LLType> & S
     }
 
     public Solution removeWorst() {
-        LLType node = removeWorstByCrowding(1);
-        return node.key();
+        long start = metrics.start();
+        Solution rv = removeWorstByCrowding(1);
+        metrics.finish(StorageMetrics.Operation.RemoveWorst, start);
+        return rv;
     }
 
     public void removeWorst(int count) {
+        long start = metrics.start();
         removeWorstByCrowding(count);
+        metrics.finish(StorageMetrics.Operation.RemoveWorst, start);
     }
 
     public int size() {
@@ -69,17 +97,133 @@ public abstract class StorageBase<LLType extends TreapNode<Solution, LLType> & S
     }
 
     public void clear() {
-        layerRoot = null;
+        if (layerRoot != null) {
+            HLNode layer = layerRoot.leftmost();
+            while (layer != null) {
+                HLNode next = layer.next();
+                recycleLayer(layer);
+                layer = next;
+            }
+            layerRoot = null;
+        }
+        resetHyperVolume();
+    }
+
+    /**
+     * The internal state is the heap keys of the treaps. These define the shapes of the treaps,
+     * which define the comparisons made when walking them.
+     */
+    @Override
+    public int internalStateSize(int size) {
+        // A heap key for every solution and for every layer, and there are at most as many layers as solutions
+        return 8 * size;
+    }
+
+    @Override
+    public void writeInternalState(ByteBuffer buffer) {
+        int size = size(), layers = getLayerCount();
+        for (HLNode layer = layerRoot == null ? null : layerRoot.leftmost(); layer != null; layer = layer.next()) {
+            for (LLType node = layer.key().leftmost(); node != null; node = node.next()) {
+                buffer.putInt(node.heapKey());
+            }
+        }
+        for (HLNode layer = layerRoot == null ? null : layerRoot.leftmost(); layer != null; layer = layer.next()) {
+            buffer.putInt(layer.heapKey());
+        }
+        for (int i = layers; i < size; ++i) {
+            buffer.putInt(0);
+        }
+    }
+
+    @Override
+    public void readInternalState(ByteBuffer buffer) {
+        int size = size(), layerCount = getLayerCount();
+        int[] keys = new int[size];
+        for (int i = 0; i < size; ++i) {
+            keys[i] = buffer.getInt();
+        }
+        int[] layerKeys = new int[layerCount];
+        for (int i = 0; i < size; ++i) {
+            int key = buffer.getInt();
+            if (i < layerCount) {
+                layerKeys[i] = key;
+            }
+        }
+        List<List<Solution>> layers = new ArrayList<>(layerCount);
+        for (int i = 0; i < layerCount; ++i) {
+            List<Solution> layer = new ArrayList<>();
+            for (Iterator<Solution> it = getLayer(i); it.hasNext(); ) {
+                layer.add(it.next());
+            }
+            layers.add(layer);
+        }
+        // A treap is defined by the order of its nodes and their heap keys, so merging the nodes one by one rebuilds it
+        clear();
+        int k = 0;
+        for (int i = 0; i < layerCount; ++i) {
+            LLType layer = null;
+            for (Solution s : layers.get(i)) {
+                layer = merge(layer, obtainLLNode(s, keys[k++]));
+            }
+            layerRoot = merge(layerRoot, obtainHLNode(layer, layerKeys[i]));
+        }
+        resetHyperVolume();
+    }
+
+    @Override
+    public boolean trackHyperVolume(double minX, double maxX, double minY, double maxY) {
+        hvTracker = new HyperVolumeTracker(minX, maxX, minY, maxY);
+        resetHyperVolume();
+        return true;
+    }
+
+    @Override
+    public double trackedHyperVolume() {
+        if (hvTracker == null) {
+            return super.trackedHyperVolume();
+        }
+        return hvTracker.get();
+    }
+
+    @Override
+    public double hyperVolumeContribution(Solution solution) {
+        if (hvTracker == null) {
+            return super.hyperVolumeContribution(solution);
+        }
+        if (layerRoot == null) {
+            return 0;
+        }
+        // This is for monitoring, so the comparisons are not counted.
+        LLType node = layerRoot.leftmost().key();
+        double x = solution.getX();
+        while (node != null && node.key().getX() != x) {
+            node = node.key().getX() < x ? node.right() : node.left();
+        }
+        if (node == null || !node.key().equals(solution)) {
+            return 0;
+        }
+        LLType prev = node.prev(), next = node.next();
+        if (prev != null && prev.key().equals(solution) || next != null && next.key().equals(solution)) {
+            return 0;
+        }
+        return hvTracker.contribution(keyOrNull(prev), solution, keyOrNull(next));
     }
 
     public QueryResult getRandom() {
         if (layerRoot == null) {
             throw new IllegalStateException("empty data structure");
         }
-        return getKth(FastRandom.geneticThreadLocal().nextInt(size()));
+        return getKth(randomContext.genetic().nextInt(size()));
     }
 
     public QueryResult getKth(int index) {
+        long start = metrics.start();
+        QueryResult rv = getKthImpl(index);
+        metrics.finish(StorageMetrics.Operation.GetKth, start);
+        return rv;
+    }
+
+    private QueryResult getKthImpl(int index) {
         if (index < 0 || index >= size()) {
             throw new IllegalArgumentException("index = " + index + " size = " + size());
         }
@@ -134,6 +278,302 @@ public abstract class StorageBase<LLType extends TreapNode<Solution, LLType> & S
     private final SplitResult<LLType> lSplit = new SplitResult<>();
     private final SplitResult<HLNode> hSplit = new SplitResult<>();
     private final LayerWithIndex lwi = new LayerWithIndex();
+    private final LessX lessX = new LessX();
+    private final NotLessY notLessY = new NotLessY();
+    private final WorstCollector worstCollector = new WorstCollector();
+    private final WorstQueue worstQueue = new WorstQueue();
+    /**
+     * The hypervolume of the first layer, if asked to track it.
+     * Single insertions and removals update it using the neighbours in the layer,
+     * operations which may change the first layer a lot recompute it.
+     */
+    private HyperVolumeTracker hvTracker = null;
+    /**
+     * Nodes which were removed from the storage and can be reused,
+     * so that a steady-state run does not allocate nodes after warm-up.
+     */
+    private final List<LLType> llPool = new ArrayList<>();
+    private final List<HLNode> hlPool = new ArrayList<>();
+
+    private LLType obtainLLNode(Solution s) {
+        return obtainLLNode(s, randomContext.etc().nextInt());
+    }
+
+    private LLType obtainLLNode(Solution s, int heapKey) {
+        int size = llPool.size();
+        if (size == 0) {
+            return newLLNode(s, heapKey);
+        } else {
+            LLType rv = llPool.remove(size - 1);
+            rv.reinitialize(s, heapKey);
+            return rv;
+        }
+    }
+
+    private HLNode obtainHLNode(LLType key) {
+        return obtainHLNode(key, randomContext.etc().nextInt());
+    }
+
+    private HLNode obtainHLNode(LLType key, int heapKey) {
+        int size = hlPool.size();
+        if (size == 0) {
+            return new HLNode(key, heapKey);
+        } else {
+            HLNode rv = hlPool.remove(size - 1);
+            rv.reinitialize(key, heapKey);
+            return rv;
+        }
+    }
+
+    private void recycle(LLType node) {
+        node.setKey(null);
+        llPool.add(node);
+    }
+
+    private void recycleAll(LLType root) {
+        LLType node = root.leftmost();
+        while (node != null) {
+            LLType next = node.next();
+            recycle(node);
+            node = next;
+        }
+    }
+
+    private void recycleLayer(HLNode layer) {
+        recycleAll(layer.key());
+        layer.setKey(null);
+        hlPool.add(layer);
+    }
+
+    private Solution keyOrNull(LLType node) {
+        return node == null ? null : node.key();
+    }
+
+    private void resetHyperVolume() {
+        if (hvTracker != null) {
+            hvTracker.reset(layerRoot == null ? Collections.<Solution>emptyIterator() : getLayer(0));
+        }
+    }
+
+    // Tells the tracker that the node is about to be removed from the first layer.
+    private void trackRemovalFromFirstLayer(LLType node) {
+        if (hvTracker != null) {
+            hvTracker.removed(keyOrNull(node.prev()), node.key(), keyOrNull(node.next()));
+        }
+    }
+
+    /**
+     * A reusable predicate to split a layer before the given solution by X.
+     */
+    private final class LessX implements Predicate<LLType> {
+        private Solution pivot;
+
+        public LessX pivot(Solution pivot) {
+            this.pivot = pivot;
+            return this;
+        }
+
+        @Override
+        public boolean test(LLType node) {
+            return pivot.compareX(node.key(), counter) > 0;
+        }
+    }
+
+    /**
+     * A reusable predicate to split a layer after the given solution by Y.
+     */
+    private final class NotLessY implements Predicate<LLType> {
+        private Solution pivot;
+
+        public NotLessY pivot(Solution pivot) {
+            this.pivot = pivot;
+            return this;
+        }
+
+        @Override
+        public boolean test(LLType node) {
+            return pivot.compareY(node.key(), counter) <= 0;
+        }
+    }
+
+    /**
+     * A reusable consumer which collects all the nodes with the smallest crowding distance.
+     */
+    private final class WorstCollector implements Consumer<LLType> {
+        private final List<LLType> equal = new ArrayList<>();
+        private double globalDX, globalDY, crowding;
+
+        public WorstCollector reset(double globalDX, double globalDY) {
+            this.globalDX = globalDX;
+            this.globalDY = globalDY;
+            this.crowding = Double.POSITIVE_INFINITY;
+            equal.clear();
+            return this;
+        }
+
+        @Override
+        public void accept(LLType curr) {
+            double currCrowd = curr.crowdingDistance(globalDX, globalDY);
+            if (crowding > currCrowd) {
+                crowding = currCrowd;
+                equal.clear();
+            }
+            if (crowding == currCrowd) {
+                equal.add(curr);
+            }
+        }
+    }
+
+    /**
+     * A priority queue of the crowding distances of the last layer, used to remove many solutions at once.
+     *
+     * Removing a solution changes the crowding distances of its two neighbours only,
+     * as long as the extreme solutions, and hence the global normalization, stay the same.
+     * So the queue is built once and then updates just the two neighbours after each removal,
+     * instead of searching for the worst candidates every time.
+     *
+     * The queue answers only when the smallest crowding distance is unique and finite.
+     * Otherwise the removal falls back to the candidate search, which picks among equal values
+     * the same way as single removals do, and the queue just drops the removed solution as well.
+     * The extreme solutions have infinite crowding distances, so they are removed only by the fallback,
+     * and since removing one changes the normalization, the queue is rebuilt afterwards.
+     */
+    private final class WorstQueue {
+        private Object[] nodes = new Object[0];
+        private double[] keys = new double[0];
+        private int[] prev = new int[0], next = new int[0], heap = new int[0], where = new int[0];
+        private final Map<Object, Integer> indices = new IdentityHashMap<>();
+        private int heapSize;
+        private boolean valid;
+        private double globalDX, globalDY;
+
+        public boolean isValid() {
+            return valid;
+        }
+
+        public void invalidate() {
+            valid = false;
+        }
+
+        public void build(LLType layer, double globalDX, double globalDY) {
+            int size = layer.size();
+            if (nodes.length < size) {
+                int capacity = Math.max(size, 2 * nodes.length);
+                nodes = new Object[capacity];
+                keys = new double[capacity];
+                prev = new int[capacity];
+                next = new int[capacity];
+                heap = new int[capacity];
+                where = new int[capacity];
+            }
+            this.globalDX = globalDX;
+            this.globalDY = globalDY;
+            indices.clear();
+            int i = 0;
+            for (LLType curr = layer.leftmost(); curr != null; curr = curr.next(), ++i) {
+                nodes[i] = curr;
+                indices.put(curr, i);
+                keys[i] = curr.crowdingDistance(globalDX, globalDY);
+                prev[i] = i - 1;
+                next[i] = i + 1 == size ? -1 : i + 1;
+                heap[i] = i;
+                where[i] = i;
+            }
+            heapSize = size;
+            for (i = size / 2 - 1; i >= 0; --i) {
+                siftDown(i);
+            }
+            valid = true;
+        }
+
+        /**
+         * Returns the node with the smallest crowding distance if it is unique and finite, otherwise null.
+         */
+        @SuppressWarnings({"unchecked"})
+        public LLType uniqueMin() {
+            double min = keys[heap[0]];
+            if (min == Double.POSITIVE_INFINITY
+                    || heapSize > 1 && keys[heap[1]] == min
+                    || heapSize > 2 && keys[heap[2]] == min) {
+                return null;
+            }
+            return (LLType) nodes[heap[0]];
+        }
+
+        /**
+         * Removes the given node, which must not be an extreme one.
+         * Must be called after the node is removed from the layer.
+         */
+        @SuppressWarnings({"unchecked"})
+        public void remove(LLType node) {
+            int removed = indices.remove(node);
+            nodes[removed] = null;
+            int p = prev[removed], n = next[removed];
+            if (p >= 0) {
+                next[p] = n;
+            }
+            if (n >= 0) {
+                prev[n] = p;
+            }
+            int position = where[removed];
+            --heapSize;
+            if (position < heapSize) {
+                int moved = heap[heapSize];
+                place(moved, position);
+                siftUp(position);
+                siftDown(where[moved]);
+            }
+            if (p >= 0) {
+                update(p, ((LLType) nodes[p]).crowdingDistance(globalDX, globalDY));
+            }
+            if (n >= 0) {
+                update(n, ((LLType) nodes[n]).crowdingDistance(globalDX, globalDY));
+            }
+        }
+
+        private void update(int index, double key) {
+            keys[index] = key;
+            siftUp(where[index]);
+            siftDown(where[index]);
+        }
+
+        private void place(int index, int position) {
+            heap[position] = index;
+            where[index] = position;
+        }
+
+        private void siftUp(int position) {
+            int index = heap[position];
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (keys[heap[parent]] <= keys[index]) {
+                    break;
+                }
+                place(heap[parent], position);
+                position = parent;
+            }
+            place(index, position);
+        }
+
+        private void siftDown(int position) {
+            int index = heap[position];
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && keys[heap[child + 1]] < keys[heap[child]]) {
+                    ++child;
+                }
+                if (keys[index] <= keys[heap[child]]) {
+                    break;
+                }
+                place(heap[child], position);
+                position = child;
+            }
+            place(index, position);
+        }
+    }
 
     private boolean dominates(LLType layer, final Solution s) {
         LLType best = null;
@@ -218,17 +658,32 @@ public abstract class StorageBase<LLType extends TreapNode<Solution, LLType> & S
         while (currLayer != null) {
             Solution min = currPush.leftmost().key();
             Solution max = currPush.rightmost().key();
-            split(currLayer.key(), t -> min.compareX(t.key(), counter) > 0, lSplit);
+            long start = metrics.start();
+            split(currLayer.key(), lessX.pivot(min), lSplit);
             LLType tL = lSplit.left;
-            split(lSplit.right, t -> max.compareY(t.key(), counter) <= 0, lSplit);
+            split(lSplit.right, notLessY.pivot(max), lSplit);
             LLType tM = lSplit.left;
             LLType tR = lSplit.right;
+            metrics.finish(StorageMetrics.Operation.LayerSplit, start);
+            start = metrics.start();
             if (firstTime && tM != null && tM.key().equals(node.key())) {
                 currPush = merge(currPush, tM);
                 tM = null;
             }
             firstTime = false;
             currLayer.setKey(merge(tL, merge(currPush, tR)));
+            metrics.finish(StorageMetrics.Operation.LayerMerge, start);
+            if (currIndex == 0 && hvTracker != null) {
+                // The node is now in the first layer, and tM is leaving it
+                Solution prev = keyOrNull(node.prev());
+                Solution next = keyOrNull(node.next());
+                if (tM != null) {
+                    for (LLType removed = tM.leftmost(); removed != null; removed = removed.next()) {
+                        hvTracker.removed(prev, removed.key(), removed.next() == null ? next : removed.next().key());
+                    }
+                }
+                hvTracker.inserted(prev, node.key(), next);
+            }
             if (tM == null) {
                 recomputeInterval(layerRoot, initIndex, currIndex + 1);
                 return;
@@ -236,7 +691,7 @@ public abstract class StorageBase<LLType extends TreapNode<Solution, LLType> & S
             if (tL == null && tR == null) {
                 recomputeInterval(layerRoot, initIndex, currIndex + 1);
                 splitK(layerRoot, currIndex + 1, hSplit);
-                layerRoot = merge(hSplit.left, merge(new HLNode(tM), hSplit.right));
+                layerRoot = merge(hSplit.left, merge(obtainHLNode(tM), hSplit.right));
                 return;
             }
             currPush = tM;
@@ -244,11 +699,295 @@ public abstract class StorageBase<LLType extends TreapNode<Solution, LLType> & S
             ++currIndex;
         }
         recomputeInterval(layerRoot, initIndex, currIndex);
-        currLayer = new HLNode(currPush);
+        currLayer = obtainHLNode(currPush);
         layerRoot = merge(layerRoot, currLayer);
+        if (currIndex == 0 && hvTracker != null) {
+            hvTracker.inserted(null, node.key(), null);
+        }
+    }
+
+    /**
+     * Detached nodes waiting to be placed into some layer, in lexicographic order.
+     * Each node carries a rank used to order equal solutions: a node from the batch
+     * has its index in the batch, a node pushed out of an existing layer has -1.
+     * This way equal solutions end up in the same order as with sequential insertion:
+     * later ones go first.
+     */
+    private final class Pending {
+        final Object[] nodes;
+        final int[] ranks;
+        int size;
+
+        Pending(int capacity) {
+            nodes = new Object[capacity];
+            ranks = new int[capacity];
+        }
+
+        @SuppressWarnings({"unchecked"})
+        LLType node(int index) {
+            return (LLType) nodes[index];
+        }
+
+        void add(LLType node, int rank) {
+            nodes[size] = node;
+            ranks[size] = rank;
+            ++size;
+        }
+    }
+
+    private int comparePending(Solution l, int lRank, Solution r, int rRank) {
+        int cx = l.compareX(r, counter);
+        if (cx != 0) {
+            return cx;
+        }
+        int cy = l.compareY(r, counter);
+        if (cy != 0) {
+            return cy;
+        }
+        return Integer.compare(rRank, lRank);
+    }
+
+    private void mergePending(Pending a, int aFrom, int aUntil, Pending b, int bFrom, int bUntil, Pending target) {
+        target.size = 0;
+        while (aFrom < aUntil && bFrom < bUntil) {
+            if (comparePending(a.node(aFrom).key(), a.ranks[aFrom], b.node(bFrom).key(), b.ranks[bFrom]) <= 0) {
+                target.add(a.node(aFrom), a.ranks[aFrom]);
+                ++aFrom;
+            } else {
+                target.add(b.node(bFrom), b.ranks[bFrom]);
+                ++bFrom;
+            }
+        }
+        while (aFrom < aUntil) {
+            target.add(a.node(aFrom), a.ranks[aFrom]);
+            ++aFrom;
+        }
+        while (bFrom < bUntil) {
+            target.add(b.node(bFrom), b.ranks[bFrom]);
+            ++bFrom;
+        }
+    }
+
+    private void detachRuns(List<LLType> runs, Pending target) {
+        target.size = 0;
+        for (LLType run : runs) {
+            for (LLType curr = run.leftmost(); curr != null; curr = curr.next()) {
+                target.add(curr, -1);
+            }
+        }
+        for (int i = 0; i < target.size; ++i) {
+            LLType node = target.node(i);
+            node.setLeft(null);
+            node.setRight(null);
+            node.setPrev(null);
+            node.setNext(null);
+        }
+        runs.clear();
+    }
+
+    private LLType mergeRuns(List<LLType> runs) {
+        LLType rv = null;
+        for (LLType run : runs) {
+            rv = merge(rv, run);
+        }
+        runs.clear();
+        return rv;
+    }
+
+    /**
+     * Pushes the runs, which come from the previous layer, into the given layer
+     * exactly as a single run is pushed in sequential insertion.
+     * The parts of the layer pushed out become the runs for the next layer.
+     * Returns whether any node of the layer stays there.
+     */
+    private boolean pushRuns(HLNode layer, List<LLType> runs, List<LLType> nextRuns) {
+        LLType remaining = layer.key();
+        LLType result = null;
+        boolean survivors = false;
+        for (LLType run : runs) {
+            Solution min = run.leftmost().key();
+            Solution max = run.rightmost().key();
+            split(remaining, lessX.pivot(min), lSplit);
+            survivors |= lSplit.left != null;
+            result = merge(result, lSplit.left);
+            split(lSplit.right, notLessY.pivot(max), lSplit);
+            if (lSplit.left != null) {
+                nextRuns.add(lSplit.left);
+            }
+            remaining = lSplit.right;
+            result = merge(result, run);
+        }
+        survivors |= remaining != null;
+        layer.setKey(merge(result, remaining));
+        runs.clear();
+        return survivors;
+    }
+
+    private void markDominated(Pending pending, boolean[] dominated) {
+        Solution best = null;
+        for (int i = 0; i < pending.size; ++i) {
+            Solution curr = pending.node(i).key();
+            if (best == null) {
+                dominated[i] = false;
+                best = curr;
+            } else {
+                int cy = curr.compareY(best, counter);
+                if (cy < 0) {
+                    dominated[i] = false;
+                    best = curr;
+                } else {
+                    dominated[i] = cy > 0 || curr.compareX(best, counter) > 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts the non-dominated pending nodes into the given layer, which may be empty,
+     * and returns the new layer. The parts of the layer they dominate are collected
+     * into the next runs, and the dominated pending nodes are collected into the rest.
+     */
+    private LLType pushNonDominated(LLType layer, Pending pending, boolean[] dominated,
+                                    List<LLType> nextRuns, Pending rest) {
+        LLType result = null;
+        rest.size = 0;
+        for (int i = 0; i < pending.size; ) {
+            if (dominated[i]) {
+                rest.add(pending.node(i), pending.ranks[i]);
+                ++i;
+                continue;
+            }
+            Solution first = pending.node(i).key();
+            split(layer, lessX.pivot(first), lSplit);
+            result = merge(result, lSplit.left);
+            split(lSplit.right, notLessY.pivot(first), lSplit);
+            LLType pushed = lSplit.left;
+            layer = lSplit.right;
+            do {
+                result = merge(result, pending.node(i));
+                ++i;
+            } while (i < pending.size && !dominated[i] && pending.node(i).key().equals(first));
+            if (pushed != null) {
+                if (pushed.leftmost().key().equals(first)) {
+                    result = merge(result, pushed);
+                } else {
+                    nextRuns.add(pushed);
+                }
+            }
+        }
+        return merge(result, layer);
+    }
+
+    private void addAllToLayers(Solution[] solutions) {
+        int n = solutions.length;
+        int layerCount = getLayerCount();
+        int capacity = n + size();
+
+        // The layer a solution goes to is never smaller than the first existing layer
+        // which does not dominate it, so we can bucket the batch by these layers
+        // and sort each bucket separately.
+        int[] target = new int[n];
+        int[] bucketStart = new int[layerCount + 2];
+        int minTarget = layerCount, maxTarget = 0;
+        for (int i = 0; i < n; ++i) {
+            int t = smallestNonDominatingLayer(solutions[i]).index;
+            target[i] = t;
+            minTarget = Math.min(minTarget, t);
+            maxTarget = Math.max(maxTarget, t);
+            ++bucketStart[t + 1];
+        }
+        for (int i = 1; i < bucketStart.length; ++i) {
+            bucketStart[i] += bucketStart[i - 1];
+        }
+        Integer[] order = new Integer[n];
+        int[] fill = bucketStart.clone();
+        for (int i = 0; i < n; ++i) {
+            order[fill[target[i]]++] = i;
+        }
+        Comparator<Integer> batchOrder = (l, r) -> comparePending(solutions[l], l, solutions[r], r);
+        for (int t = minTarget; t <= maxTarget; ++t) {
+            Arrays.sort(order, bucketStart[t], bucketStart[t + 1], batchOrder);
+        }
+        Pending incoming = new Pending(n);
+        for (int i = 0; i < n; ++i) {
+            incoming.add(obtainLLNode(solutions[order[i]]), order[i]);
+        }
+
+        Pending loose = new Pending(capacity);
+        Pending detached = new Pending(capacity);
+        Pending temp = new Pending(capacity);
+        boolean[] dominated = new boolean[capacity];
+        List<LLType> runs = new ArrayList<>();
+        List<LLType> nextRuns = new ArrayList<>();
+        List<LLType> appended = new ArrayList<>();
+        LLType inserted = null;
+
+        int index = minTarget;
+        HLNode layer = index < layerCount ? TreapNode.getKth(layerRoot, index) : null;
+        while (true) {
+            boolean batchHere = index <= maxTarget && bucketStart[index] < bucketStart[index + 1];
+            if (loose.size == 0 && !batchHere) {
+                // Only the runs pushed out of the previous layer go further.
+                if (runs.isEmpty()) {
+                    if (index >= maxTarget) {
+                        break;
+                    }
+                } else if (layer == null) {
+                    appended.add(mergeRuns(runs));
+                    break;
+                } else if (!pushRuns(layer, runs, nextRuns) && index >= maxTarget) {
+                    // The entire layer is pushed down, so it becomes a new layer.
+                    inserted = mergeRuns(nextRuns);
+                    ++index;
+                    break;
+                }
+            } else {
+                if (!runs.isEmpty()) {
+                    detachRuns(runs, detached);
+                    mergePending(loose, 0, loose.size, detached, 0, detached.size, temp);
+                    Pending swap = loose; loose = temp; temp = swap;
+                }
+                if (batchHere) {
+                    mergePending(loose, 0, loose.size, incoming, bucketStart[index], bucketStart[index + 1], temp);
+                    Pending swap = loose; loose = temp; temp = swap;
+                }
+                markDominated(loose, dominated);
+                LLType result = pushNonDominated(layer == null ? null : layer.key(), loose, dominated, nextRuns, temp);
+                if (layer == null) {
+                    appended.add(result);
+                } else {
+                    layer.setKey(result);
+                }
+                Pending swap = loose; loose = temp; temp = swap;
+            }
+            List<LLType> swap = runs; runs = nextRuns; nextRuns = swap;
+            ++index;
+            if (layer != null) {
+                layer = layer.next();
+            }
+        }
+        if (minTarget < layerCount) {
+            recomputeInterval(layerRoot, minTarget, Math.min(index, layerCount));
+        }
+        if (inserted != null) {
+            splitK(layerRoot, index, hSplit);
+            layerRoot = merge(hSplit.left, merge(obtainHLNode(inserted), hSplit.right));
+        }
+        for (LLType newLayer : appended) {
+            layerRoot = merge(layerRoot, obtainHLNode(newLayer));
+        }
+        if (minTarget == 0) {
+            resetHyperVolume();
+        }
     }
 
     public void removeWorstDebCompatible(int count) {
+        long start = metrics.start();
+        removeWorstDebCompatibleImpl(count);
+        metrics.finish(StorageMetrics.Operation.RemoveWorstDebCompatible, start);
+    }
+
+    private void removeWorstDebCompatibleImpl(int count) {
         if (size() < count) {
             throw new IllegalStateException("Insufficient size of data structure");
         }
@@ -258,6 +997,7 @@ public abstract class StorageBase<LLType extends TreapNode<Solution, LLType> & S
             count -= lastLayer.key().size();
             cutRightmost(layerRoot, hSplit);
             layerRoot = hSplit.left;
+            recycleLayer(hSplit.right);
             lastLayer = layerRoot.rightmost();
         }
         if (count > 0) {
@@ -289,18 +1029,26 @@ public abstract class StorageBase<LLType extends TreapNode<Solution, LLType> & S
                 if (indices[j] == i) {
                     newLayer = merge(newLayer, lSplit.left);
                     ++j;
+                } else {
+                    recycle(lSplit.left);
                 }
             }
+            if (root != null) {
+                recycleAll(root);
+            }
             lastLayer.setKey(newLayer);
             int sz = layerRoot.size();
             recomputeInterval(layerRoot, sz - 1, sz);
+            if (sz == 1) {
+                resetHyperVolume();
+            }
         }
         if (size() != expected) {
             throw new AssertionError();
         }
     }
 
-    private LLType removeWorstByCrowding(int count) {
+    private Solution removeWorstByCrowding(int count) {
         if (size() < count) {
             throw new IllegalStateException("Insufficient size of data structure");
         }
@@ -309,28 +1057,37 @@ public abstract class StorageBase<LLType extends TreapNode<Solution, LLType> & S
             count -= lastLayer.key().size();
             cutRightmost(layerRoot, hSplit);
             layerRoot = hSplit.left;
+            recycleLayer(hSplit.right);
             lastLayer = layerRoot.rightmost();
         }
-        Random rnd = FastRandom.geneticThreadLocal();
-        List<LLType> equal = new ArrayList<>();
-        LLType last = null;
+        Random rnd = randomContext.genetic();
+        boolean bulk = count > 1;
+        worstQueue.invalidate();
+        Solution last = null;
         while (count-- > 0) {
             LLType lastLayerRoot = lastLayer.key();
+            boolean isFirstLayer = layerRoot.size() == 1;
             if (lastLayerRoot.size() == 1) {
+                if (isFirstLayer) {
+                    trackRemovalFromFirstLayer(lastLayerRoot);
+                }
                 cutRightmost(layerRoot, hSplit);
                 layerRoot = hSplit.left;
-                last = lastLayer.key();
+                last = lastLayerRoot.key();
+                recycleLayer(lastLayer);
             } else if (lastLayerRoot.size() == 2) {
-                splitK(lastLayerRoot, 1, lSplit);
                 boolean choice = rnd.nextInt(2) == 1;
+                if (isFirstLayer) {
+                    trackRemovalFromFirstLayer(choice ? lastLayerRoot.rightmost() : lastLayerRoot.leftmost());
+                }
+                splitK(lastLayerRoot, 1, lSplit);
                 lastLayer.setKey(choice ? lSplit.left : lSplit.right);
                 int rcIndex = layerRoot.size() - 1;
                 recomputeInterval(layerRoot, rcIndex, rcIndex + 1);
-                last = choice ? lSplit.right : lSplit.left;
+                LLType removed = choice ? lSplit.right : lSplit.left;
+                last = removed.key();
+                recycle(removed);
             } else {
-                equal.clear();
-                double[] crowding = { Double.POSITIVE_INFINITY };
-
                 LLType lastLayerL = lastLayerRoot.leftmost();
                 LLType lastLayerR = lastLayerRoot.rightmost();
                 Solution lKey = lastLayerL.key();
@@ -338,20 +1095,28 @@ public abstract class StorageBase<LLType extends TreapNode<Solution, LLType> & S
                 double globalDX = Solution.crowdingDistanceDX(lKey, rKey, counter);
                 double globalDY = Solution.crowdingDistanceDY(lKey, rKey, counter);
 
-                lastLayerRoot.forEachWorstCrowdingDistanceCandidate(globalDX, globalDY, (LLType curr) -> {
-                    double currCrowd = curr.crowdingDistance(globalDX, globalDY);
-                    if (crowding[0] > currCrowd) {
-                        crowding[0] = currCrowd;
-                        equal.clear();
+                LLType chosen = null;
+                if (bulk) {
+                    if (!worstQueue.isValid()) {
+                        worstQueue.build(lastLayerRoot, globalDX, globalDY);
                     }
-                    if (crowding[0] == currCrowd) {
-                        equal.add(curr);
+                    chosen = worstQueue.uniqueMin();
+                    if (chosen != null) {
+                        // The candidate search would draw from a single candidate here
+                        rnd.nextInt(1);
                     }
-                });
+                }
+                if (chosen == null) {
+                    lastLayerRoot.forEachWorstCrowdingDistanceCandidate(globalDX, globalDY, worstCollector.reset(globalDX, globalDY));
 
-                LLType chosen = equal.get(rnd.nextInt(equal.size()));
-                Solution chosenKey = chosen.key();
-                split(lastLayerRoot, lln -> lln.key().compareX(chosenKey, counter) < 0, lSplit);
+                    List<LLType> equal = worstCollector.equal;
+                    chosen = equal.get(rnd.nextInt(equal.size()));
+                    equal.clear();
+                }
+                if (isFirstLayer) {
+                    trackRemovalFromFirstLayer(chosen);
+                }
+                split(lastLayerRoot, lessX.pivot(chosen.key()), lSplit);
                 LLType left = lSplit.left;
                 splitK(lSplit.right, 1, lSplit);
                 LLType rv = lSplit.left;
@@ -363,7 +1128,13 @@ public abstract class StorageBase<LLType extends TreapNode<Solution, LLType> & S
                 lastLayer.setKey(newLayer);
                 int rcIndex = layerRoot.size() - 1;
                 recomputeInterval(layerRoot, rcIndex, rcIndex + 1);
-                last = rv;
+                if (rv == lastLayerL || rv == lastLayerR) {
+                    worstQueue.invalidate();
+                } else if (worstQueue.isValid()) {
+                    worstQueue.remove(rv);
+                }
+                last = rv.key();
+                recycle(rv);
             }
         }
         return last;
@@ -371,6 +1142,11 @@ public abstract class StorageBase<LLType extends TreapNode<Solution, LLType> & S
 
     /* Node classes */
 
+    /**
+     * The secondary criterion of the storage, which is the crowding distance
+     * unless an implementation says otherwise. Larger values are better,
+     * and the removal picks one of the smallest values in the last layer.
+     */
     public static interface LLNodeAdditionals<FinalType extends LLNodeAdditionals<FinalType>> {
         public double crowdingDistance(double globalDX, double globalDY);
         public void forEachWorstCrowdingDistanceCandidate(double globalDX, double globalDY, Consumer<FinalType> consumer);
@@ -379,8 +1155,8 @@ public abstract class StorageBase<LLType extends TreapNode<Solution, LLType> & S
     private final class HLNode extends TreapNode<LLType, HLNode> {
         int totalSize;
 
-        public HLNode(LLType key) {
-            super(key);
+        public HLNode(LLType key, int heapKey) {
+            super(key, heapKey);
         }
 
         @Override
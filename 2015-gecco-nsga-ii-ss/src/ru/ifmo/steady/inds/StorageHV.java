@@ -0,0 +1,110 @@
+package ru.ifmo.steady.inds;
+
+import java.util.function.Consumer;
+
+import ru.ifmo.steady.Solution;
+
+/**
+ * An INDS solution storage which uses the exclusive hypervolume contribution
+ * instead of the crowding distance as the secondary criterion, as in SMS-EMOA.
+ *
+ * The contribution of a solution is the rectangle between the solution,
+ * the x of the next solution in the layer and the y of the previous one.
+ * The extreme solutions of a layer have infinite contributions,
+ * so they are kept as long as possible, like with the crowding distance.
+ *
+ * Every node keeps its contribution, which changes only when its neighbours do,
+ * and the minimum contribution in its subtree. Neighbours change only on the paths
+ * of splits and merges, so both values are maintained in O(log n) per update,
+ * and the solutions with the smallest contribution are found by a single descent.
+ * The contributions are in the original objective space, so the global spans are ignored.
+ */
+public class StorageHV extends StorageBase<StorageHV.LLNode> {
+    protected class LLNode extends TreapNode<Solution, LLNode> implements StorageBase.LLNodeAdditionals<LLNode> {
+        double contribution = Double.POSITIVE_INFINITY;
+        double minContribution = Double.POSITIVE_INFINITY;
+
+        public LLNode(Solution key, int heapKey) {
+            super(key, heapKey);
+        }
+
+        @Override
+        protected void reinitialize(Solution key, int heapKey) {
+            super.reinitialize(key, heapKey);
+            contribution = minContribution = Double.POSITIVE_INFINITY;
+        }
+
+        public double crowdingDistance(double globalDX, double globalDY) {
+            return contribution;
+        }
+
+        public void forEachWorstCrowdingDistanceCandidate(double globalDX, double globalDY, Consumer<LLNode> consumer) {
+            forEachWithContribution(minContribution, consumer);
+        }
+
+        private void forEachWithContribution(double value, Consumer<LLNode> consumer) {
+            LLNode left = left();
+            if (left != null && left.minContribution == value) {
+                left.forEachWithContribution(value, consumer);
+            }
+            if (contribution == value) {
+                consumer.accept(this);
+            }
+            LLNode right = right();
+            if (right != null && right.minContribution == value) {
+                right.forEachWithContribution(value, consumer);
+            }
+        }
+
+        private void reevaluateContribution() {
+            LLNode prev = prev();
+            LLNode next = next();
+            if (prev == null || next == null) {
+                contribution = Double.POSITIVE_INFINITY;
+            } else {
+                Solution curr = key();
+                counter.add(2);
+                contribution = (next.key().getX() - curr.getX()) * (prev.key().getY() - curr.getY());
+            }
+        }
+
+        @Override
+        public void recomputeInternals() {
+            super.recomputeInternals();
+            double min = contribution;
+            LLNode left = left();
+            if (left != null && left.minContribution < min) {
+                min = left.minContribution;
+            }
+            LLNode right = right();
+            if (right != null && right.minContribution < min) {
+                min = right.minContribution;
+            }
+            minContribution = min;
+        }
+
+        @Override
+        protected void setPrev(LLNode that) {
+            super.setPrev(that);
+            reevaluateContribution();
+            recomputeInternals();
+        }
+
+        @Override
+        protected void setNext(LLNode that) {
+            super.setNext(that);
+            reevaluateContribution();
+            recomputeInternals();
+        }
+    }
+
+    @Override
+    protected LLNode newLLNode(Solution s, int heapKey) {
+        return new LLNode(s, heapKey);
+    }
+
+    @Override
+    public String getName() {
+        return "INDS-HV";
+    }
+}
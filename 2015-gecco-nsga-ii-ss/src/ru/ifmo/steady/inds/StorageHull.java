@@ -1,26 +1,40 @@
 package ru.ifmo.steady.inds;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.function.Consumer;
 
 import ru.ifmo.steady.Solution;
+import ru.ifmo.steady.StorageMetrics;
 
 public class StorageHull extends StorageBase<StorageHull.LLNode> {
     private int maxHullSize = 1;
 
     private LLNode[] hullStack = new LLNode[16];
     private boolean  hullStackContainsOnlyInfinity = true;
-    private LLNode[] oneNodeArray1 = new LLNode[1];
-    private LLNode[] oneNodeArray2 = new LLNode[1];
 
     protected class LLNode extends TreapNode<Solution, LLNode> implements StorageBase.LLNodeAdditionals<LLNode> {
         double dx = Double.POSITIVE_INFINITY;
         double dy = Double.POSITIVE_INFINITY;
+        /*
+         * The hull occupies the first hullSize elements of the buffer,
+         * hullSize == 0 means the hull is not computed. The buffer is kept
+         * when the hull is invalidated and when the node is reused.
+         */
         LLNode[] hull = null;
+        int hullSize = 0;
         boolean isHullValid = true;
 
-        public LLNode(Solution key) {
-            super(key);
+        public LLNode(Solution key, int heapKey) {
+            super(key, heapKey);
+        }
+
+        @Override
+        protected void reinitialize(Solution key, int heapKey) {
+            super.reinitialize(key, heapKey);
+            dx = dy = Double.POSITIVE_INFINITY;
+            hullSize = 0;
+            isHullValid = true;
         }
 
         public double crowdingDistance(double globalDX, double globalDY) {
@@ -40,12 +54,12 @@ public class StorageHull extends StorageBase<StorageHull.LLNode> {
                         computeHull();
                     }
                     if (Double.isInfinite(hull[0].dx)) {
-                        for (LLNode node : hull) {
-                            consumer.accept(node);
+                        for (int i = 0; i < hullSize; ++i) {
+                            consumer.accept(hull[i]);
                         }
                     } else {
                         double idX = 1 / globalDX, idY = 1 / globalDY;
-                        int l = 0, r = hull.length - 1;
+                        int l = 0, r = hullSize - 1;
                         while (l + 1 < r) {
                             counter.add(2);
                             int m = (l + r) >>> 1;
@@ -88,7 +102,7 @@ public class StorageHull extends StorageBase<StorageHull.LLNode> {
                 dx = Solution.crowdingDistanceDX(prevKey, nextKey, counter);
                 dy = Solution.crowdingDistanceDY(prevKey, nextKey, counter);
             }
-            hull = null;
+            hullSize = 0;
             isHullValid = false;
         }
 
@@ -142,33 +156,41 @@ public class StorageHull extends StorageBase<StorageHull.LLNode> {
             hullStackContainsOnlyInfinity = true;
         }
 
-        private void mergeWithOne(LLNode[] hull) {
-            initStackFitting(hull.length + 1);
+        private void storeHull(int stackSize) {
+            if (hull == null || hull.length < stackSize) {
+                hull = new LLNode[Math.max(stackSize, hull == null ? 2 : hull.length * 2)];
+            }
+            System.arraycopy(hullStack, 0, hull, 0, stackSize);
+            hullSize = stackSize;
+        }
+
+        private void mergeWithOne(LLNode[] hull, int hullSize) {
+            initStackFitting(hullSize + 1);
             int stackSize = 0;
             int index = 0;
-            while (index < hull.length && (hull[index].dx < dx || hull[index].dx == dx && hull[index].dy > dy)) {
+            while (index < hullSize && (hull[index].dx < dx || hull[index].dx == dx && hull[index].dy > dy)) {
                 stackSize = addToStack(hull[index++], stackSize);
             }
             stackSize = addToStack(this, stackSize);
-            while (index < hull.length) {
+            while (index < hullSize) {
                 stackSize = addToStack(hull[index++], stackSize);
             }
-            this.hull = Arrays.copyOf(hullStack, stackSize);
+            storeHull(stackSize);
         }
 
-        private void mergeWithTwo(LLNode[] lhull, LLNode[] rhull) {
-            initStackFitting(lhull.length + rhull.length + 1);
+        private void mergeWithTwo(LLNode[] lhull, int lhullSize, LLNode[] rhull, int rhullSize) {
+            initStackFitting(lhullSize + rhullSize + 1);
             int stackSize = 0;
             int lIndex = 0, rIndex = 0;
             boolean usedMe = false;
-            while (lIndex < lhull.length || rIndex < rhull.length || !usedMe) {
+            while (lIndex < lhullSize || rIndex < rhullSize || !usedMe) {
                 LLNode current = null;
                 int choice = 0;
-                if (lIndex < lhull.length) {
+                if (lIndex < lhullSize) {
                     current = lhull[lIndex];
                     choice = 1;
                 }
-                if (rIndex < rhull.length) {
+                if (rIndex < rhullSize) {
                     if (current == null || current.dx > rhull[rIndex].dx || current.dx == rhull[rIndex].dx && current.dy < rhull[rIndex].dy) {
                         current = rhull[rIndex];
                         choice = 2;
@@ -188,34 +210,46 @@ public class StorageHull extends StorageBase<StorageHull.LLNode> {
                     default: throw new AssertionError();
                 }
             }
-            this.hull = Arrays.copyOf(hullStack, stackSize);
+            storeHull(stackSize);
         }
 
-        private LLNode[] makeHullFor(LLNode node, LLNode[] oneNodeArray) {
-            if (node == null) {
-                return null;
-            }
-            if (node.hull == null) {
-                node.computeHull();
-            }
-            if (node.hull == null) {
-                oneNodeArray[0] = node;
-                return oneNodeArray;
-            } else {
-                return node.hull;
+        private void ensureHull() {
+            if (hullSize == 0) {
+                if (size() == 1) {
+                    if (hull == null) {
+                        hull = new LLNode[2];
+                    }
+                    hull[0] = this;
+                    hullSize = 1;
+                    isHullValid = true;
+                } else {
+                    computeHull();
+                }
             }
         }
 
         private void computeHull() {
+            long start = metrics.start();
+            computeHullImpl();
+            metrics.finish(StorageMetrics.Operation.HullRecomputation, start);
+        }
+
+        private void computeHullImpl() {
             if (size() > 1) {
-                LLNode[] leftHull  = makeHullFor(left(),  oneNodeArray1);
-                LLNode[] rightHull = makeHullFor(right(), oneNodeArray2);
-                if (leftHull == null) {
-                    mergeWithOne(rightHull);
-                } else if (rightHull == null) {
-                    mergeWithOne(leftHull);
+                LLNode left = left();
+                LLNode right = right();
+                if (left != null) {
+                    left.ensureHull();
+                }
+                if (right != null) {
+                    right.ensureHull();
+                }
+                if (left == null) {
+                    mergeWithOne(right.hull, right.hullSize);
+                } else if (right == null) {
+                    mergeWithOne(left.hull, left.hullSize);
                 } else {
-                    mergeWithTwo(leftHull, rightHull);
+                    mergeWithTwo(left.hull, left.hullSize, right.hull, right.hullSize);
                 }
             }
             isHullValid = true;
@@ -229,7 +263,7 @@ public class StorageHull extends StorageBase<StorageHull.LLNode> {
                 LLNode right = right();
                 if (left != null && !left.isHullValid || right != null && !right.isHullValid) {
                     isHullValid = false;
-                    hull = null;
+                    hullSize = 0;
                 }
             }
         }
@@ -238,14 +272,14 @@ public class StorageHull extends StorageBase<StorageHull.LLNode> {
         protected void setLeft(LLNode that) {
             super.setLeft(that);
             isHullValid = false;
-            hull = null;
+            hullSize = 0;
         }
 
         @Override
         protected void setRight(LLNode that) {
             super.setRight(that);
             isHullValid = false;
-            hull = null;
+            hullSize = 0;
         }
 
         @Override
@@ -264,6 +298,38 @@ public class StorageHull extends StorageBase<StorageHull.LLNode> {
     @Override
     public void add(Solution s) {
         super.add(s);
+        updateMaxHullSize();
+    }
+
+    @Override
+    public void addAll(Solution... solutions) {
+        super.addAll(solutions);
+        if (size() > 0) {
+            updateMaxHullSize();
+        }
+    }
+
+    /**
+     * Besides the heap keys, the state includes the largest hull size, which depends on the whole history of the storage.
+     */
+    @Override
+    public int internalStateSize(int size) {
+        return super.internalStateSize(size) + 4;
+    }
+
+    @Override
+    public void writeInternalState(ByteBuffer buffer) {
+        super.writeInternalState(buffer);
+        buffer.putInt(maxHullSize);
+    }
+
+    @Override
+    public void readInternalState(ByteBuffer buffer) {
+        super.readInternalState(buffer);
+        maxHullSize = buffer.getInt();
+    }
+
+    private void updateMaxHullSize() {
         int lastLayerSize = getLayerSize(getLayerCount() - 1);
         while (true) {
             double mhsOverLog = maxHullSize / Math.log(1 + maxHullSize) * Math.log(2);
@@ -275,8 +341,8 @@ public class StorageHull extends StorageBase<StorageHull.LLNode> {
     }
 
     @Override
-    protected LLNode newLLNode(Solution s) {
-        return new LLNode(s);
+    protected LLNode newLLNode(Solution s, int heapKey) {
+        return new LLNode(s, heapKey);
     }
 
     @Override
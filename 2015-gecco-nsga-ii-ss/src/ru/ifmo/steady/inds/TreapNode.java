@@ -2,20 +2,33 @@ package ru.ifmo.steady.inds;
 
 import java.util.function.Predicate;
 
-import ru.ifmo.steady.util.FastRandom;
-
 public class TreapNode<K, ThisType extends TreapNode<K, ThisType>> {
     private ThisType left, right, prev, next;
     private K key;
-    private final int heapKey = FastRandom.etcThreadLocal().nextInt();
+    private int heapKey;
     private int size;
 
-    public TreapNode(K key) {
+    public TreapNode(K key, int heapKey) {
+        this.key = key;
+        this.heapKey = heapKey;
+        this.left = null;
+        this.right = null;
+        this.prev = null;
+        this.next = null;
+        recomputeInternals();
+    }
+
+    /**
+     * Makes this node look exactly like a newly created one with the given key and heap key,
+     * so that it can be reused instead of allocating a new node.
+     */
+    protected void reinitialize(K key, int heapKey) {
         this.key = key;
         this.left = null;
         this.right = null;
         this.prev = null;
         this.next = null;
+        this.heapKey = heapKey;
         recomputeInternals();
     }
 
@@ -0,0 +1,319 @@
+package ru.ifmo.steady.mo;
+
+import java.util.*;
+
+import ru.ifmo.steady.*;
+
+/**
+ * An implementation of incremental non-dominated sorting
+ * for any number of objectives, which accommodates crowding distance.
+ *
+ * Every layer is kept sorted lexicographically by objectives.
+ * Domination by layers is monotone (if a layer dominates a solution, so do all previous layers),
+ * so the layer of a new solution is found by binary search. The solutions it dominates in that layer
+ * move to the next layer, where they displace the solutions they dominate, and so on.
+ *
+ * Crowding distances are computed as in Deb's NSGA-II, layer by layer, and are cached
+ * until the layer changes. As in the bi-objective storages, all crowding distances in a layer
+ * are infinite if the layer is degenerate in at least one objective.
+ */
+public class Storage extends SolutionStorage {
+    public void add(Solution solution) {
+        long start = metrics.start();
+        addImpl(solution);
+        metrics.finish(StorageMetrics.Operation.Add, start);
+    }
+
+    public boolean supportsObjectiveCount(int objectives) {
+        return objectives >= 2;
+    }
+
+    public int getLayerCount() {
+        return layers.size();
+    }
+
+    public Iterator<Solution> getLayer(int index) {
+        if (index < 0 || index >= getLayerCount()) {
+            throw new IllegalArgumentException("No such layer: " + index);
+        }
+        return layers.get(index).iterator();
+    }
+
+    public String getName() {
+        return "MO-INDS";
+    }
+
+    public QueryResult getRandom() {
+        if (size == 0) {
+            throw new IllegalStateException("empty data structure");
+        }
+        return getKth(randomContext.genetic().nextInt(size));
+    }
+
+    public QueryResult getKth(int index) {
+        long start = metrics.start();
+        QueryResult rv = getKthImpl(index);
+        metrics.finish(StorageMetrics.Operation.GetKth, start);
+        return rv;
+    }
+
+    private QueryResult getKthImpl(int index) {
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("index = " + index + " size = " + size);
+        }
+        int layer = 0;
+        while (index >= layers.get(layer).size()) {
+            index -= layers.get(layer).size();
+            ++layer;
+        }
+        return new QueryResult(layers.get(layer).get(index), crowding(layer)[index], layer);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Solution removeWorst() {
+        long start = metrics.start();
+        Solution rv = removeWorstImpl(1);
+        metrics.finish(StorageMetrics.Operation.RemoveWorst, start);
+        return rv;
+    }
+
+    public void removeWorst(int count) {
+        long start = metrics.start();
+        removeWorstImpl(count);
+        metrics.finish(StorageMetrics.Operation.RemoveWorst, start);
+    }
+
+    public void clear() {
+        size = 0;
+        layers.clear();
+        crowdings.clear();
+    }
+
+    @Override
+    public void restoreLayers(List<List<Solution>> layers) {
+        clear();
+        for (List<Solution> layer : layers) {
+            setLayer(this.layers.size(), new ArrayList<>(layer));
+            size += layer.size();
+        }
+    }
+
+    public void removeWorstDebCompatible(int count) {
+        long start = metrics.start();
+        removeWorstDebCompatibleImpl(count);
+        metrics.finish(StorageMetrics.Operation.RemoveWorstDebCompatible, start);
+    }
+
+    private void removeWorstDebCompatibleImpl(int count) {
+        if (size < count) {
+            throw new IllegalStateException("not enough elements to remove");
+        }
+        size -= count;
+        while (count > 0 && layers.get(layers.size() - 1).size() <= count) {
+            count -= layers.get(layers.size() - 1).size();
+            removeLastLayer();
+        }
+        if (count > 0) {
+            int last = layers.size() - 1;
+            List<Solution> lastLayer = layers.get(last);
+            int lls = lastLayer.size();
+            double[] crowding = crowding(last);
+            Integer[] indices = new Integer[lls];
+            for (int i = 0; i < lls; ++i) {
+                indices[i] = i;
+            }
+            Arrays.sort(indices, (l, r) -> Double.compare(crowding[r], crowding[l]));
+            int remain = lls - count;
+            Arrays.sort(indices, 0, remain);
+            List<Solution> newContents = new ArrayList<>(remain);
+            for (int i = 0; i < remain; ++i) {
+                newContents.add(lastLayer.get(indices[i]));
+            }
+            layers.set(last, newContents);
+            crowdings.set(last, null);
+        }
+    }
+
+    /* Implementation */
+
+    private final List<List<Solution>> layers = new ArrayList<>();
+    // Cached crowding distances for every layer, null if the layer has changed since they were computed.
+    private final List<double[]> crowdings = new ArrayList<>();
+    private int size = 0;
+
+    private int compareLexicographically(Solution a, Solution b) {
+        for (int i = 0, objectives = a.getObjectiveCount(); i < objectives; ++i) {
+            int cmp = a.compareObjective(b, i, counter);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private boolean dominates(List<Solution> layer, Solution solution) {
+        for (Solution s : layer) {
+            if (Solution.dominanceComparison(s, solution, counter) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void setLayer(int index, List<Solution> layer) {
+        if (index == layers.size()) {
+            layers.add(layer);
+            crowdings.add(null);
+        } else {
+            layers.set(index, layer);
+            crowdings.set(index, null);
+        }
+    }
+
+    private void removeLastLayer() {
+        layers.remove(layers.size() - 1);
+        crowdings.remove(crowdings.size() - 1);
+    }
+
+    private void addImpl(Solution solution) {
+        if (size > 0 && solution.getObjectiveCount() != layers.get(0).get(0).getObjectiveCount()) {
+            throw new IllegalArgumentException("Solutions with different numbers of objectives");
+        }
+        int lo = 0, hi = layers.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (dominates(layers.get(mid), solution)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        ++size;
+        List<Solution> pushed = new ArrayList<>();
+        pushed.add(solution);
+        for (int layer = lo; !pushed.isEmpty(); ++layer) {
+            if (layer == layers.size()) {
+                setLayer(layer, pushed);
+                break;
+            }
+            List<Solution> current = layers.get(layer);
+            List<Solution> remaining = new ArrayList<>(current.size() + pushed.size());
+            List<Solution> dominated = new ArrayList<>();
+            for (Solution s : current) {
+                boolean isDominated = false;
+                for (Solution p : pushed) {
+                    if (Solution.dominanceComparison(p, s, counter) < 0) {
+                        isDominated = true;
+                        break;
+                    }
+                }
+                (isDominated ? dominated : remaining).add(s);
+            }
+            setLayer(layer, merge(remaining, pushed));
+            pushed = dominated;
+        }
+    }
+
+    // Merges two lexicographically sorted lists. Equal solutions from the second list go last.
+    private List<Solution> merge(List<Solution> a, List<Solution> b) {
+        List<Solution> rv = new ArrayList<>(a.size() + b.size());
+        int ai = 0, bi = 0;
+        while (ai < a.size() || bi < b.size()) {
+            if (bi == b.size() || ai < a.size() && compareLexicographically(a.get(ai), b.get(bi)) <= 0) {
+                rv.add(a.get(ai++));
+            } else {
+                rv.add(b.get(bi++));
+            }
+        }
+        return rv;
+    }
+
+    private double[] crowding(int layerIndex) {
+        double[] rv = crowdings.get(layerIndex);
+        if (rv != null) {
+            return rv;
+        }
+        List<Solution> layer = layers.get(layerIndex);
+        int n = layer.size();
+        rv = new double[n];
+        if (n <= 2) {
+            Arrays.fill(rv, Double.POSITIVE_INFINITY);
+        } else {
+            int objectives = layer.get(0).getObjectiveCount();
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; ++i) {
+                order[i] = i;
+            }
+            for (int k = 0; k < objectives; ++k) {
+                final int objective = k;
+                if (k > 0) {
+                    // Ties go in the reverse layer order, so that for two objectives
+                    // the neighbours are the same as in the bi-objective storages.
+                    Arrays.sort(order, (l, r) -> {
+                        int cmp = layer.get(l).compareObjective(layer.get(r), objective, counter);
+                        return cmp != 0 ? cmp : Integer.compare(r, l);
+                    });
+                }
+                double min = layer.get(order[0]).getObjective(k);
+                double max = layer.get(order[n - 1]).getObjective(k);
+                if (min == max) {
+                    Arrays.fill(rv, Double.POSITIVE_INFINITY);
+                    break;
+                }
+                rv[order[0]] = Double.POSITIVE_INFINITY;
+                rv[order[n - 1]] = Double.POSITIVE_INFINITY;
+                for (int i = 1; i + 1 < n; ++i) {
+                    double prev = layer.get(order[i - 1]).getObjective(k);
+                    double next = layer.get(order[i + 1]).getObjective(k);
+                    rv[order[i]] += (next - prev) / (max - min);
+                }
+            }
+        }
+        crowdings.set(layerIndex, rv);
+        return rv;
+    }
+
+    private Solution removeWorstImpl(int count) {
+        if (size < count) {
+            throw new IllegalStateException("empty data structure");
+        }
+        if (count == 0) {
+            return null;
+        }
+        size -= count;
+        while (layers.get(layers.size() - 1).size() < count) {
+            count -= layers.get(layers.size() - 1).size();
+            removeLastLayer();
+        }
+        Random random = randomContext.genetic();
+        List<Integer> worst = new ArrayList<>();
+        Solution last = null;
+        while (count-- > 0) {
+            int lastIndex = layers.size() - 1;
+            List<Solution> lastLayer = layers.get(lastIndex);
+            if (lastLayer.size() == 1) {
+                last = lastLayer.get(0);
+                removeLastLayer();
+                continue;
+            }
+            double[] crowding = crowding(lastIndex);
+            double worstCrowding = Double.POSITIVE_INFINITY;
+            worst.clear();
+            for (int i = 0; i < crowding.length; ++i) {
+                if (worstCrowding > crowding[i]) {
+                    worstCrowding = crowding[i];
+                    worst.clear();
+                }
+                if (worstCrowding == crowding[i]) {
+                    worst.add(i);
+                }
+            }
+            last = lastLayer.remove((int) worst.get(random.nextInt(worst.size())));
+            crowdings.set(lastIndex, null);
+        }
+        return last;
+    }
+}
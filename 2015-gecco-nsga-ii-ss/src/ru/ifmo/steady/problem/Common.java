@@ -4,8 +4,18 @@ package ru.ifmo.steady.problem;
  * Common utilities for test problems.
  */
 public class Common {
-    public static double gDTLZ1(double[] input, int first) {
-        int last = input.length;
+    /**
+     * Computes the sum of the given range of an array, left to right.
+     */
+    public static double sum(double[] input, int first, int last) {
+        double sum = 0;
+        for (int i = first; i < last; ++i) {
+            sum += input[i];
+        }
+        return sum;
+    }
+
+    public static double gDTLZ1(double[] input, int first, int last) {
         double sum = last - first;
         for (int i = first; i < last; ++i) {
             double xi = input[i] - 0.5;
@@ -15,8 +25,7 @@ public class Common {
         return sum * 100;
     }
 
-    public static double gDTLZ2(double[] input, int first) {
-        int last = input.length;
+    public static double gDTLZ2(double[] input, int first, int last) {
         double sum = 0;
         for (int i = first; i < last; ++i) {
             double xi = input[i] - 0.5;
@@ -25,6 +34,30 @@ public class Common {
         return sum;
     }
 
+    /**
+     * Computes the objectives of a DTLZ problem whose front lies on a sphere
+     * (DTLZ2 to DTLZ6) from the position angles and the distance from the origin,
+     * and writes them to the given array starting at the given offset.
+     */
+    public static void sphereDTLZ(double[] angles, double radius, int objectives, double[] rv, int offset) {
+        for (int i = 0; i < objectives; ++i) {
+            double f = radius;
+            for (int j = 0, last = objectives - 1 - i; j < last; ++j) {
+                f *= Math.cos(angles[j]);
+            }
+            if (i > 0) {
+                f *= Math.sin(angles[objectives - 1 - i]);
+            }
+            rv[offset + i] = f;
+        }
+    }
+
+    public static void checkObjectiveCount(int objectives) {
+        if (objectives < 2) {
+            throw new IllegalArgumentException("At least two objectives are expected, found " + objectives);
+        }
+    }
+
     // Various functions supporting WFG
 
     public static final double wEPS = 1e-10;
@@ -68,6 +101,14 @@ public class Common {
         }
         return correct01(tmp1 / tmp2);
     }
+    // rSum with all weights equal to one, which gives exactly the same result
+    public static double rSum(double[] y, int from, int to) {
+        double tmp = 0;
+        for (int i = from; i <= to; ++i) {
+            tmp += y[i];
+        }
+        return correct01(tmp / (to - from + 1));
+    }
     public static double rNonSep(double[] y, int from, int to, int A) {
         double tmp = Math.ceil(A / 2.0);
         double den = (to - from + 1) * tmp * (1.0 + 2 * A - 2 * tmp) / A;
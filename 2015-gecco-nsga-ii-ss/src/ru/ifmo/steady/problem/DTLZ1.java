@@ -4,23 +4,57 @@ import ru.ifmo.steady.Problem;
 import ru.ifmo.steady.Solution;
 
 public class DTLZ1 implements Problem {
-    private static final Problem instance = new DTLZ1();
+    private static final Problem instance = new DTLZ1(2);
     public static Problem instance() { return instance; }
+    public static Problem instance(int objectives) {
+        return objectives == 2 ? instance : new DTLZ1(objectives);
+    }
+
+    private final int objectives;
+    private final String name;
+
+    private DTLZ1(int objectives) {
+        Common.checkObjectiveCount(objectives);
+        this.objectives = objectives;
+        this.name = objectives == 2 ? "DTLZ1" : "DTLZ1_" + objectives;
+    }
+
+    public double frontMinX() { return frontMin(0); }
+    public double frontMaxX() { return frontMax(0); }
+    public double frontMinY() { return frontMin(1); }
+    public double frontMaxY() { return frontMax(1); }
 
-    public double frontMinX() { return 0; }
-    public double frontMaxX() { return 0.5; }
-    public double frontMinY() { return 0; }
-    public double frontMaxY() { return 0.5; }
+    public int objectiveCount() { return objectives; }
+    public double frontMin(int objective) { return 0; }
+    public double frontMax(int objective) { return 0.5; }
 
-    public int inputDimension() { return 6; }
-    public String getName() { return "DTLZ1"; }
+    public int inputDimension() { return objectives + 4; }
+    public String getName() { return name; }
+
+    private void evaluate(double[] input, int first, double[] output, int offset) {
+        double gm = Common.gDTLZ1(input, first + objectives - 1, first + inputDimension());
+        for (int i = 0; i < objectives; ++i) {
+            double v = 0.5;
+            for (int j = 0, last = objectives - 1 - i; j < last; ++j) {
+                v *= input[first + j];
+            }
+            if (i > 0) {
+                v *= 1 - input[first + objectives - 1 - i];
+            }
+            output[offset + i] = v * (1 + gm);
+        }
+    }
 
     public Solution evaluate(double[] input) {
-        double gm = Common.gDTLZ1(input, 1);
-        return new Solution(
-            0.5 * input[0] * (1 + gm),
-            0.5 * (1 - input[0]) * (1 + gm),
-            input
-        );
+        double[] f = new double[objectives];
+        evaluate(input, 0, f, 0);
+        return new Solution(f, input);
+    }
+
+    public void evaluateBatch(double[] inputs, int count, double[] output) {
+        int n = inputDimension();
+        for (int i = 0; i < count; ++i) {
+            evaluate(inputs, i * n, output, i * objectives);
+        }
     }
 }
@@ -4,24 +4,52 @@ import ru.ifmo.steady.Problem;
 import ru.ifmo.steady.Solution;
 
 public class DTLZ3 implements Problem {
-    private static final Problem instance = new DTLZ3();
+    private static final Problem instance = new DTLZ3(2);
     public static Problem instance() { return instance; }
+    public static Problem instance(int objectives) {
+        return objectives == 2 ? instance : new DTLZ3(objectives);
+    }
+
+    private final int objectives;
+    private final String name;
+
+    private DTLZ3(int objectives) {
+        Common.checkObjectiveCount(objectives);
+        this.objectives = objectives;
+        this.name = objectives == 2 ? "DTLZ3" : "DTLZ3_" + objectives;
+    }
+
+    public double frontMinX() { return frontMin(0); }
+    public double frontMaxX() { return frontMax(0); }
+    public double frontMinY() { return frontMin(1); }
+    public double frontMaxY() { return frontMax(1); }
 
-    public double frontMinX() { return 0; }
-    public double frontMaxX() { return 1; }
-    public double frontMinY() { return 0; }
-    public double frontMaxY() { return 1; }
+    public int objectiveCount() { return objectives; }
+    public double frontMin(int objective) { return 0; }
+    public double frontMax(int objective) { return 1; }
 
-    public int inputDimension() { return 11; }
-    public String getName() { return "DTLZ3"; }
+    public int inputDimension() { return objectives + 9; }
+    public String getName() { return name; }
+
+    private void evaluate(double[] input, int first, double[] angles, double[] output, int offset) {
+        double gm = Common.gDTLZ1(input, first + objectives - 1, first + inputDimension());
+        for (int i = 0; i < angles.length; ++i) {
+            angles[i] = input[first + i] * Math.PI / 2;
+        }
+        Common.sphereDTLZ(angles, 1 + gm, objectives, output, offset);
+    }
 
     public Solution evaluate(double[] input) {
-        double gm = Common.gDTLZ1(input, 1);
-        double a = input[0] * Math.PI / 2;
-        return new Solution(
-            (1 + gm) * Math.cos(a),
-            (1 + gm) * Math.sin(a),
-            input
-        );
+        double[] f = new double[objectives];
+        evaluate(input, 0, new double[objectives - 1], f, 0);
+        return new Solution(f, input);
+    }
+
+    public void evaluateBatch(double[] inputs, int count, double[] output) {
+        double[] angles = new double[objectives - 1];
+        int n = inputDimension();
+        for (int i = 0; i < count; ++i) {
+            evaluate(inputs, i * n, angles, output, i * objectives);
+        }
     }
 }
@@ -4,24 +4,57 @@ import ru.ifmo.steady.Problem;
 import ru.ifmo.steady.Solution;
 
 public class DTLZ5 implements Problem {
-    private static final Problem instance = new DTLZ5();
+    private static final Problem instance = new DTLZ5(2);
     public static Problem instance() { return instance; }
+    public static Problem instance(int objectives) {
+        return objectives == 2 ? instance : new DTLZ5(objectives);
+    }
+
+    private final int objectives;
+    private final String name;
+
+    private DTLZ5(int objectives) {
+        Common.checkObjectiveCount(objectives);
+        this.objectives = objectives;
+        this.name = objectives == 2 ? "DTLZ5" : "DTLZ5_" + objectives;
+    }
+
+    public double frontMinX() { return frontMin(0); }
+    public double frontMaxX() { return frontMax(0); }
+    public double frontMinY() { return frontMin(1); }
+    public double frontMaxY() { return frontMax(1); }
 
-    public double frontMinX() { return 0; }
-    public double frontMaxX() { return 1; }
-    public double frontMinY() { return 0; }
-    public double frontMaxY() { return 1; }
+    public int objectiveCount() { return objectives; }
+    public double frontMin(int objective) { return 0; }
+    public double frontMax(int objective) {
+        // The front is a curve where all angles but the first one are pi/4
+        int halves = objective == 0 ? objectives - 2 : objectives - 1 - objective;
+        return Math.pow(Math.sqrt(0.5), halves);
+    }
+
+    public int inputDimension() { return objectives + 9; }
+    public String getName() { return name; }
 
-    public int inputDimension() { return 11; }
-    public String getName() { return "DTLZ5"; }
+    private void evaluate(double[] input, int first, double[] angles, double[] output, int offset) {
+        double gm = Common.gDTLZ2(input, first + objectives - 1, first + inputDimension());
+        angles[0] = Math.PI / 2 * input[first];
+        for (int i = 1; i < angles.length; ++i) {
+            angles[i] = Math.PI / (4 * (1 + gm)) * (1 + 2 * gm * input[first + i]);
+        }
+        Common.sphereDTLZ(angles, 1 + gm, objectives, output, offset);
+    }
 
     public Solution evaluate(double[] input) {
-        double gm = Common.gDTLZ2(input, 1);
-        double a = Math.PI / 2 * input[0];
-        return new Solution(
-            (1 + gm) * Math.cos(a),
-            (1 + gm) * Math.sin(a),
-            input
-        );
+        double[] f = new double[objectives];
+        evaluate(input, 0, new double[objectives - 1], f, 0);
+        return new Solution(f, input);
+    }
+
+    public void evaluateBatch(double[] inputs, int count, double[] output) {
+        double[] angles = new double[objectives - 1];
+        int n = inputDimension();
+        for (int i = 0; i < count; ++i) {
+            evaluate(inputs, i * n, angles, output, i * objectives);
+        }
     }
 }
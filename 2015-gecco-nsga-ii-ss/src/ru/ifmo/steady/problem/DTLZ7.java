@@ -4,33 +4,64 @@ import ru.ifmo.steady.Problem;
 import ru.ifmo.steady.Solution;
 
 public class DTLZ7 implements Problem {
-    private static final Problem instance = new DTLZ7();
+    private static final Problem instance = new DTLZ7(2);
     public static Problem instance() { return instance; }
+    public static Problem instance(int objectives) {
+        return objectives == 2 ? instance : new DTLZ7(objectives);
+    }
+
+    private final int objectives;
+    private final String name;
+
+    private DTLZ7(int objectives) {
+        Common.checkObjectiveCount(objectives);
+        this.objectives = objectives;
+        this.name = objectives == 2 ? "DTLZ7" : "DTLZ7_" + objectives;
+    }
+
+    public double frontMinX() { return frontMin(0); }
+    public double frontMaxX() { return frontMax(0); }
+    public double frontMinY() { return frontMin(1); }
+    public double frontMaxY() { return frontMax(1); }
+
+    public int objectiveCount() { return objectives; }
+    public double frontMin(int objective) { return 0; }
+    public double frontMax(int objective) {
+        if (objective == objectives - 1) {
+            return 2 * objectives;
+        }
+        // the bi-objective bound is the one used in the paper experiments
+        return objectives == 2 ? 2.116426808 : 1;
+    }
 
-    public double frontMinX() { return 0; }
-    public double frontMaxX() { return 2.116426808; }
-    public double frontMinY() { return 0; }
-    public double frontMaxY() { return 4; }
+    public int inputDimension() { return objectives + 19; }
+    public String getName() { return name; }
 
-    public int inputDimension() { return 21; }
-    public String getName() { return "DTLZ7"; }
+    private static double g(double[] input, int first, int last) {
+        return 1 + 9.0 / (last - first) * Common.sum(input, first, last);
+    }
 
-    private double g(double[] input, int first) {
-        int last = input.length;
-        double sum = 0;
-        for (int i = first; i < last; ++i) {
-            sum += input[i];
+    private void evaluate(double[] input, int first, double[] output, int offset) {
+        double gm = g(input, first + objectives - 1, first + inputDimension());
+        double h = objectives;
+        for (int i = 0; i < objectives - 1; ++i) {
+            double xi = input[first + i];
+            output[offset + i] = xi;
+            h -= xi / (1 + gm) * (1 + Math.sin(3 * Math.PI * xi));
         }
-        return 1 + 9.0 / (last - first) * sum;
+        output[offset + objectives - 1] = (1 + gm) * h;
     }
 
     public Solution evaluate(double[] input) {
-        double gm = g(input, 1);
-        double h = 2 - input[0] / (1 + gm) * (1 + Math.sin(3 * Math.PI * input[0]));
-        return new Solution(
-            input[0],
-            (1 + gm) * h,
-            input
-        );
+        double[] f = new double[objectives];
+        evaluate(input, 0, f, 0);
+        return new Solution(f, input);
+    }
+
+    public void evaluateBatch(double[] inputs, int count, double[] output) {
+        int n = inputDimension();
+        for (int i = 0; i < count; ++i) {
+            evaluate(inputs, i * n, output, i * objectives);
+        }
     }
 }
@@ -3,6 +3,14 @@ package ru.ifmo.steady.problem;
 import ru.ifmo.steady.Problem;
 import ru.ifmo.steady.Solution;
 
+/**
+ * The common part of the WFG problems.
+ *
+ * Every problem sets its chain of transformations once in the constructor.
+ * An evaluation runs the chain over two buffers of a per-thread workspace,
+ * each transformation reading from one buffer and writing to the other,
+ * so an evaluation allocates nothing besides the resulting solution.
+ */
 public abstract class WFG implements Problem {
     protected final int k, l, m;
     protected double[] A;
@@ -10,39 +18,85 @@ public abstract class WFG implements Problem {
     protected int D = 1;
     protected final int number;
 
+    /**
+     * A step of the transformation chain. It reads the first {@code length} values of {@code z},
+     * writes its results to {@code rv}, which is never the same array, and returns their number.
+     */
+    protected interface Transformation {
+        int apply(double[] z, int length, double[] rv);
+    }
+
+    private static final class Workspace {
+        final double[] a, b, x, objectives;
+
+        Workspace(int n, int m) {
+            a = new double[n];
+            b = new double[n];
+            x = new double[m];
+            objectives = new double[m];
+        }
+    }
+
+    private Transformation[] transformations;
+    private final ThreadLocal<Workspace> workspace;
+
     protected WFG(int number, int k, int l, int m) {
         this.number = number;
         this.k = k;
         this.l = l;
         this.m = m;
+        this.workspace = ThreadLocal.withInitial(() -> new Workspace(k + l, m));
     }
 
     public int inputDimension() { return k + l; }
     public String getName() { return "WFG" + number; }
 
-    protected abstract double[] evaluateImpl(double[] input);
+    protected void setTransformations(Transformation... transformations) {
+        this.transformations = transformations;
+    }
+
+    /**
+     * Computes the objectives from the position vector {@code x} of length {@code m}
+     * and writes them to {@code rv} starting at {@code offset}.
+     */
+    protected abstract void shape(double[] x, double[] rv, int offset);
 
-    protected double[] calculateX(double[] t) {
-        double[] x = new double[m];
+    private void calculateX(double[] t, double[] x) {
         for (int i = 0; i < m - 1; ++i) {
             x[i] = Math.max(t[m - 1], A[i]) * (t[i] - 0.5) + 0.5;
         }
         x[m - 1] = t[m - 1];
-        return x;
     }
-    protected void normalize(double[] z) {
-        for (int i = 0; i < z.length; ++i) {
-            z[i] = Common.correct01(z[i] / (2 * (i + 1)));
+
+    private void evaluate(double[] input, int first, Workspace ws, double[] rv, int offset) {
+        double[] z = ws.a, next = ws.b;
+        int length = k + l;
+        // the input is scaled to [0; 2i] by the problem definition and then normalized back
+        for (int i = 0; i < length; ++i) {
+            double scale = 2 * (i + 1);
+            z[i] = Common.correct01(input[first + i] * scale / scale);
+        }
+        for (Transformation t : transformations) {
+            length = t.apply(z, length, next);
+            double[] tmp = z;
+            z = next;
+            next = tmp;
         }
+        calculateX(z, ws.x);
+        shape(ws.x, rv, offset);
     }
 
     public Solution evaluate(double[] input) {
-        double[] scaled = input.clone();
-        for (int i = 0; i < scaled.length; ++i) {
-            scaled[i] *= 2 * (i + 1);
+        Workspace ws = workspace.get();
+        evaluate(input, 0, ws, ws.objectives, 0);
+        return new Solution(ws.objectives[0], ws.objectives[1], input);
+    }
+
+    public void evaluateBatch(double[] inputs, int count, double[] objectives) {
+        Workspace ws = workspace.get();
+        int n = inputDimension();
+        for (int i = 0; i < count; ++i) {
+            evaluate(inputs, i * n, ws, objectives, i * m);
         }
-        double[] ei = evaluateImpl(scaled);
-        return new Solution(ei[0], ei[1], input);
     }
 }
-
@@ -14,6 +14,8 @@ public class WFG1 extends WFG {
     public double frontMinY() { return 0; }
     public double frontMaxY() { return 4; }
 
+    private final double[] w;
+
     protected WFG1(int k, int l, int m) {
         super(1, k, l, m);
         S = new double[m];
@@ -22,50 +24,47 @@ public class WFG1 extends WFG {
         }
         A = new double[m - 1];
         Arrays.fill(A, 1);
+        w = new double[k + l];
+        for (int i = 0; i < w.length; ++i) {
+            w[i] = 2 * (i + 1);
+        }
+        setTransformations(this::t1, this::t2, this::t3, this::t4);
     }
 
-    protected double[] evaluateImpl(double[] y) {
-        normalize(y);
-        t1(y);
-        t2(y);
-        t3(y);
-        y = t4(y);
-        double[] x = calculateX(y);
-        double[] rv = new double[m];
+    protected void shape(double[] x, double[] rv, int offset) {
         for (int i = 1; i < m; ++i) {
-            rv[i - 1] = D * x[m - 1] + S[i - 1] * Common.convexShape(x, i);
+            rv[offset + i - 1] = D * x[m - 1] + S[i - 1] * Common.convexShape(x, i);
         }
-        rv[m - 1] = D * x[m - 1] + S[m - 1] * Common.mixedShape(x, 5, 1);
-        return rv;
+        rv[offset + m - 1] = D * x[m - 1] + S[m - 1] * Common.mixedShape(x, 5, 1);
     }
 
-    private void t1(double[] z) {
-        for (int i = k; i < z.length; ++i) {
-            z[i] = Common.sLinear(z[i], 0.35);
+    private int t1(double[] z, int length, double[] rv) {
+        System.arraycopy(z, 0, rv, 0, k);
+        for (int i = k; i < length; ++i) {
+            rv[i] = Common.sLinear(z[i], 0.35);
         }
+        return length;
     }
-    private void t2(double[] z) {
-        for (int i = k; i < z.length; ++i) {
-            z[i] = Common.bFlat(z[i], 0.8, 0.75, 0.85);
+    private int t2(double[] z, int length, double[] rv) {
+        System.arraycopy(z, 0, rv, 0, k);
+        for (int i = k; i < length; ++i) {
+            rv[i] = Common.bFlat(z[i], 0.8, 0.75, 0.85);
         }
+        return length;
     }
-    private void t3(double[] z) {
-        for (int i = 0; i < z.length; ++i) {
-            z[i] = Common.bPoly(z[i], 0.02);
+    private int t3(double[] z, int length, double[] rv) {
+        for (int i = 0; i < length; ++i) {
+            rv[i] = Common.bPoly(z[i], 0.02);
         }
+        return length;
     }
-    private double[] t4(double[] z) {
-        double[] w = new double[z.length];
-        for (int i = 0; i < w.length; ++i) {
-            w[i] = 2 * (i + 1);
-        }
-        double[] r = new double[m];
+    private int t4(double[] z, int length, double[] rv) {
         for (int i = 1; i < m; ++i) {
             int head = (i - 1) * k / (m - 1) + 1;
             int tail = i * k / (m - 1);
-            r[i - 1] = Common.rSum(z, w, head - 1, tail - 1);
+            rv[i - 1] = Common.rSum(z, w, head - 1, tail - 1);
         }
-        r[m - 1] = Common.rSum(z, w, k, z.length - 1);
-        return r;
+        rv[m - 1] = Common.rSum(z, w, k, length - 1);
+        return m;
     }
 }
@@ -1,5 +1,7 @@
 package ru.ifmo.steady.problem;
 
+import java.util.Arrays;
+
 import ru.ifmo.steady.Problem;
 import ru.ifmo.steady.Solution;
 
@@ -22,51 +24,32 @@ public class WFG2 extends WFG {
         for (int i = 0; i + 1 < m; ++i) {
             A[i] = 1;
         }
+        setTransformations(this::t1, this::t2);
     }
 
-    protected double[] evaluateImpl(double[] y) {
-        normalize(y);
-        t1(y);
-        y = t2(y);
-        double[] x = calculateX(y);
-        double[] rv = new double[m];
+    protected void shape(double[] x, double[] rv, int offset) {
         for (int i = 1; i < m; ++i) {
-            rv[i - 1] = D * x[m - 1] + S[i - 1] * Common.convexShape(x, i);
+            rv[offset + i - 1] = D * x[m - 1] + S[i - 1] * Common.convexShape(x, i);
         }
-        rv[m - 1] = D * x[m - 1] + S[m - 1] * Common.discShape(x, 5, 1, 1);
-        return rv;
+        rv[offset + m - 1] = D * x[m - 1] + S[m - 1] * Common.discShape(x, 5, 1, 1);
     }
 
-    private void t1(double[] z) {
-        for (int i = k; i < z.length; ++i) {
-            z[i] = Common.sLinear(z[i], 0.35);
+    private int t1(double[] z, int length, double[] rv) {
+        System.arraycopy(z, 0, rv, 0, k);
+        for (int i = k; i < length; ++i) {
+            rv[i] = Common.sLinear(z[i], 0.35);
         }
+        return length;
     }
-    private double[] t2(double[] z) {
-        double[] rv = new double[z.length];
+    private int t2(double[] z, int length, double[] rv) {
         System.arraycopy(z, 0, rv, 0, k);
-        int l = z.length - k;
+        int l = length - k;
         for (int i = k + 1; i <= k + l / 2; ++i) {
             int head = k + 2 * (i - k) - 1;
             int tail = k + 2 * (i - k);
             rv[i - 1] = Common.rNonSep(z, head - 1, tail - 1, 2);
         }
-        return rv;
-    }
-    private double[] t3(double[] z) {
-        double[] rv = new double[m];
-        double[] w = new double[z.length];
-        for (int i = 0; i < z.length; ++i) {
-            w[i] = 1;
-        }
-        for (int i = 0; i < m; ++i) {
-            int head = (i - 1) * k / (m - 1) + 1;
-            int tail = i * k / (m - 1);
-            rv[i - 1] = Common.rSum(z, w, head - 1, tail - 1);
-        }
-        int head = k + 1;
-        int tail = k + (z.length - k) / 2;
-        rv[m - 1] = Common.rSum(z, w, head - 1, tail - 1);
-        return rv;
+        Arrays.fill(rv, k + l / 2, length, 0);
+        return length;
     }
 }
@@ -1,5 +1,7 @@
 package ru.ifmo.steady.problem;
 
+import java.util.Arrays;
+
 import ru.ifmo.steady.Problem;
 import ru.ifmo.steady.Solution;
 
@@ -20,52 +22,43 @@ public class WFG3 extends WFG {
         }
         A = new double[m - 1];
         A[0] = 1;
+        setTransformations(this::t1, this::t2, this::t3);
     }
 
-    protected double[] evaluateImpl(double[] y) {
-        normalize(y);
-        t1(y);
-        y = t2(y);
-        y = t3(y);
-        double[] x = calculateX(y);
-        double[] rv = new double[m];
+    protected void shape(double[] x, double[] rv, int offset) {
         for (int i = 1; i <= m; ++i) {
-            rv[i - 1] = D * x[m - 1] + S[i - 1] * Common.linearShape(x, i);
+            rv[offset + i - 1] = D * x[m - 1] + S[i - 1] * Common.linearShape(x, i);
         }
-        return rv;
     }
 
-    private void t1(double[] z) {
-        for (int i = k; i < z.length; ++i) {
-            z[i] = Common.sLinear(z[i], 0.35);
+    private int t1(double[] z, int length, double[] rv) {
+        System.arraycopy(z, 0, rv, 0, k);
+        for (int i = k; i < length; ++i) {
+            rv[i] = Common.sLinear(z[i], 0.35);
         }
+        return length;
     }
-    private double[] t2(double[] z) {
-        double[] rv = new double[z.length];
+    private int t2(double[] z, int length, double[] rv) {
         System.arraycopy(z, 0, rv, 0, k);
-        int l = z.length - k;
+        int l = length - k;
         for (int i = k + 1; i <= k + l / 2; ++i) {
             int head = k + 2 * (i - k) - 1;
             int tail = k + 2 * (i - k);
             rv[i - 1] = Common.rNonSep(z, head - 1, tail - 1, 2);
         }
-        return rv;
+        Arrays.fill(rv, k + l / 2, length, 0);
+        return length;
     }
-    private double[] t3(double[] z) {
-        double[] w = new double[z.length];
-        for (int i = 0; i < w.length; ++i) {
-            w[i] = 1;
-        }
-        double[] r = new double[m];
+    private int t3(double[] z, int length, double[] rv) {
         for (int i = 1; i < m; ++i) {
             int head = (i - 1) * k / (m - 1) + 1;
             int tail = i * k / (m - 1);
-            r[i - 1] = Common.rSum(z, w, head - 1, tail - 1);
+            rv[i - 1] = Common.rSum(z, head - 1, tail - 1);
         }
-        int l = z.length - k;
+        int l = length - k;
         int head = k + 1;
         int tail = k + l / 2;
-        r[m - 1] = Common.rSum(z, w, head - 1, tail - 1);
-        return r;
+        rv[m - 1] = Common.rSum(z, head - 1, tail - 1);
+        return m;
     }
 }
@@ -22,37 +22,28 @@ public class WFG5 extends WFG {
         }
         A = new double[m - 1];
         Arrays.fill(A, 1);
+        setTransformations(this::t1, this::t2);
     }
 
-    protected double[] evaluateImpl(double[] y) {
-        normalize(y);
-        t1(y);
-        y = t2(y);
-        double[] x = calculateX(y);
-        double[] rv = new double[m];
+    protected void shape(double[] x, double[] rv, int offset) {
         for (int i = 1; i <= m; ++i) {
-            rv[i - 1] = D * x[m - 1] + S[i - 1] * Common.concaveShape(x, i);
+            rv[offset + i - 1] = D * x[m - 1] + S[i - 1] * Common.concaveShape(x, i);
         }
-        return rv;
     }
 
-    private void t1(double[] z) {
-        for (int i = 0; i < z.length; ++i) {
-            z[i] = Common.sDecept(z[i], 0.35, 0.001, 0.05);
+    private int t1(double[] z, int length, double[] rv) {
+        for (int i = 0; i < length; ++i) {
+            rv[i] = Common.sDecept(z[i], 0.35, 0.001, 0.05);
         }
+        return length;
     }
-    private double[] t2(double[] z) {
-        double[] w = new double[z.length];
-        for (int i = 0; i < w.length; ++i) {
-            w[i] = 1;
-        }
-        double[] r = new double[m];
+    private int t2(double[] z, int length, double[] rv) {
         for (int i = 1; i < m; ++i) {
             int head = (i - 1) * k / (m - 1) + 1;
             int tail = i * k / (m - 1);
-            r[i - 1] = Common.rSum(z, w, head - 1, tail - 1);
+            rv[i - 1] = Common.rSum(z, head - 1, tail - 1);
         }
-        r[m - 1] = Common.rSum(z, w, k, z.length - 1);
-        return r;
+        rv[m - 1] = Common.rSum(z, k, length - 1);
+        return m;
     }
 }
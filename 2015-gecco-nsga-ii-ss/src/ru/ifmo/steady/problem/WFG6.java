@@ -22,33 +22,29 @@ public class WFG6 extends WFG {
         }
         A = new double[m - 1];
         Arrays.fill(A, 1);
+        setTransformations(this::t1, this::t2);
     }
 
-    protected double[] evaluateImpl(double[] y) {
-        normalize(y);
-        t1(y);
-        y = t2(y);
-        double[] x = calculateX(y);
-        double[] rv = new double[m];
+    protected void shape(double[] x, double[] rv, int offset) {
         for (int i = 1; i <= m; ++i) {
-            rv[i - 1] = D * x[m - 1] + S[i - 1] * Common.concaveShape(x, i);
+            rv[offset + i - 1] = D * x[m - 1] + S[i - 1] * Common.concaveShape(x, i);
         }
-        return rv;
     }
 
-    private void t1(double[] z) {
-        for (int i = k; i < z.length; ++i) {
-            z[i] = Common.sLinear(z[i], 0.35);
+    private int t1(double[] z, int length, double[] rv) {
+        System.arraycopy(z, 0, rv, 0, k);
+        for (int i = k; i < length; ++i) {
+            rv[i] = Common.sLinear(z[i], 0.35);
         }
+        return length;
     }
-    private double[] t2(double[] z) {
-        double[] r = new double[m];
+    private int t2(double[] z, int length, double[] rv) {
         for (int i = 1; i < m; ++i) {
             int head = (i - 1) * k / (m - 1) + 1;
             int tail = i * k / (m - 1);
-            r[i - 1] = Common.rNonSep(z, head - 1, tail - 1, k / (m - 1));
+            rv[i - 1] = Common.rNonSep(z, head - 1, tail - 1, k / (m - 1));
         }
-        r[m - 1] = Common.rNonSep(z, k, z.length - 1, z.length - k);
-        return r;
+        rv[m - 1] = Common.rNonSep(z, k, length - 1, length - k);
+        return m;
     }
 }
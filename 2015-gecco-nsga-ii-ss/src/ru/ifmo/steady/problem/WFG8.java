@@ -22,50 +22,38 @@ public class WFG8 extends WFG {
         }
         A = new double[m - 1];
         Arrays.fill(A, 1);
+        setTransformations(this::t1, this::t2, this::t3);
     }
 
-    protected double[] evaluateImpl(double[] y) {
-        normalize(y);
-        y = t1(y);
-        t2(y);
-        y = t3(y);
-        double[] x = calculateX(y);
-        double[] rv = new double[m];
+    protected void shape(double[] x, double[] rv, int offset) {
         for (int i = 1; i <= m; ++i) {
-            rv[i - 1] = D * x[m - 1] + S[i - 1] * Common.concaveShape(x, i);
+            rv[offset + i - 1] = D * x[m - 1] + S[i - 1] * Common.concaveShape(x, i);
         }
-        return rv;
     }
 
-    private double[] t1(double[] z) {
-        double[] rv = new double[z.length];
-        double[] w = new double[z.length];
-        Arrays.fill(w, 1);
+    private int t1(double[] z, int length, double[] rv) {
         System.arraycopy(z, 0, rv, 0, k);
-        for (int i = k; i < z.length; ++i) {
-            double aux = Common.rSum(z, w, 0, i - 1);
+        for (int i = k; i < length; ++i) {
+            double aux = Common.rSum(z, 0, i - 1);
             rv[i] = Common.bParam(z[i], aux, 0.98 / 49.98, 0.02, 50);
         }
-        return rv;
+        return length;
     }
 
-    private void t2(double[] z) {
-        for (int i = k; i < z.length; ++i) {
-            z[i] = Common.sLinear(z[i], 0.35);
+    private int t2(double[] z, int length, double[] rv) {
+        System.arraycopy(z, 0, rv, 0, k);
+        for (int i = k; i < length; ++i) {
+            rv[i] = Common.sLinear(z[i], 0.35);
         }
+        return length;
     }
-    private double[] t3(double[] z) {
-        double[] w = new double[z.length];
-        for (int i = 0; i < w.length; ++i) {
-            w[i] = 1;
-        }
-        double[] r = new double[m];
+    private int t3(double[] z, int length, double[] rv) {
         for (int i = 1; i < m; ++i) {
             int head = (i - 1) * k / (m - 1) + 1;
             int tail = i * k / (m - 1);
-            r[i - 1] = Common.rSum(z, w, head - 1, tail - 1);
+            rv[i - 1] = Common.rSum(z, head - 1, tail - 1);
         }
-        r[m - 1] = Common.rSum(z, w, k, z.length - 1);
-        return r;
+        rv[m - 1] = Common.rSum(z, k, length - 1);
+        return m;
     }
 }
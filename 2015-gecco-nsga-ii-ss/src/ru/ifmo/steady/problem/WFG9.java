@@ -22,49 +22,40 @@ public class WFG9 extends WFG {
         }
         A = new double[m - 1];
         Arrays.fill(A, 1);
+        setTransformations(this::t1, this::t2, this::t3);
     }
 
-    protected double[] evaluateImpl(double[] y) {
-        normalize(y);
-        y = t1(y);
-        t2(y);
-        y = t3(y);
-        double[] x = calculateX(y);
-        double[] rv = new double[m];
+    protected void shape(double[] x, double[] rv, int offset) {
         for (int i = 1; i <= m; ++i) {
-            rv[i - 1] = D * x[m - 1] + S[i - 1] * Common.concaveShape(x, i);
+            rv[offset + i - 1] = D * x[m - 1] + S[i - 1] * Common.concaveShape(x, i);
         }
-        return rv;
     }
 
-    private double[] t1(double[] z) {
-        double[] rv = new double[z.length];
-        double[] w = new double[z.length];
-        Arrays.fill(w, 1);
-        for (int i = 0; i < z.length - 1; ++i) {
-            double aux = Common.rSum(z, w, i + 1, z.length - 1);
+    private int t1(double[] z, int length, double[] rv) {
+        for (int i = 0; i < length - 1; ++i) {
+            double aux = Common.rSum(z, i + 1, length - 1);
             rv[i] = Common.bParam(z[i], aux, 0.98 / 49.98, 0.02, 50);
         }
-        rv[z.length - 1] = z[z.length - 1];
-        return rv;
+        rv[length - 1] = z[length - 1];
+        return length;
     }
 
-    private void t2(double[] z) {
+    private int t2(double[] z, int length, double[] rv) {
         for (int i = 0; i < k; ++i) {
-            z[i] = Common.sDecept(z[i], 0.35, 0.001, 0.05);
+            rv[i] = Common.sDecept(z[i], 0.35, 0.001, 0.05);
         }
-        for (int i = k; i < z.length; ++i) {
-            z[i] = Common.sMulti(z[i], 30, 95, 0.35);
+        for (int i = k; i < length; ++i) {
+            rv[i] = Common.sMulti(z[i], 30, 95, 0.35);
         }
+        return length;
     }
-    private double[] t3(double[] z) {
-        double[] r = new double[m];
+    private int t3(double[] z, int length, double[] rv) {
         for (int i = 1; i < m; ++i) {
             int head = (i - 1) * k / (m - 1) + 1;
             int tail = i * k / (m - 1);
-            r[i - 1] = Common.rNonSep(z, head - 1, tail - 1, k / (m - 1));
+            rv[i - 1] = Common.rNonSep(z, head - 1, tail - 1, k / (m - 1));
         }
-        r[m - 1] = Common.rNonSep(z, k, z.length - 1, z.length - k);
-        return r;
+        rv[m - 1] = Common.rNonSep(z, k, length - 1, length - k);
+        return m;
     }
 }
@@ -15,17 +15,25 @@ public class ZDT2 implements Problem {
     public int inputDimension() { return 30; }
     public String getName() { return "ZDT2"; }
 
-    private double g(double[] input) {
-        double g = 0;
-        for (int i = 1; i < input.length; ++i) {
-            g += input[i];
-        }
-        return 1 + g * 9 / (input.length - 1);
+    private static double g(double[] input, int first, int last) {
+        return 1 + Common.sum(input, first + 1, last) * 9 / (last - first - 1);
+    }
+
+    private static double y(double x, double g) {
+        double h = 1 - (x / g) * (x / g);
+        return h * g;
     }
 
     public Solution evaluate(double[] input) {
-        double g = g(input);
-        double h = 1 - (input[0] / g) * (input[0] / g);
-        return new Solution(input[0], h * g, input);
+        return new Solution(input[0], y(input[0], g(input, 0, input.length)), input);
+    }
+
+    public void evaluateBatch(double[] inputs, int count, double[] objectives) {
+        int n = inputDimension();
+        for (int i = 0, first = 0; i < count; ++i, first += n) {
+            double x = inputs[first];
+            objectives[2 * i] = x;
+            objectives[2 * i + 1] = y(x, g(inputs, first, first + n));
+        }
     }
 }
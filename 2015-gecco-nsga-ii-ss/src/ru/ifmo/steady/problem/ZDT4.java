@@ -15,19 +15,30 @@ public class ZDT4 implements Problem {
     public int inputDimension() { return 10; }
     public String getName() { return "ZDT4"; }
 
-    private double g(double[] input) {
+    private static double g(double[] input, int first, int last) {
         double g = 0;
-        for (int i = 1; i < input.length; ++i) {
+        for (int i = first + 1; i < last; ++i) {
             double x = input[i] * 10 - 5;
             g += x * x + 10 * (1 - Math.cos(4 * Math.PI * x));
         }
         return 1 + g;
     }
 
-    public Solution evaluate(double[] input) {
-        double g = g(input);
-        double f = input[0];
+    private static double y(double f, double g) {
         double h = 1 - Math.sqrt(f / g);
-        return new Solution(input[0], h * g, input);
+        return h * g;
+    }
+
+    public Solution evaluate(double[] input) {
+        return new Solution(input[0], y(input[0], g(input, 0, input.length)), input);
+    }
+
+    public void evaluateBatch(double[] inputs, int count, double[] objectives) {
+        int n = inputDimension();
+        for (int i = 0, first = 0; i < count; ++i, first += n) {
+            double x = inputs[first];
+            objectives[2 * i] = x;
+            objectives[2 * i + 1] = y(x, g(inputs, first, first + n));
+        }
     }
 }
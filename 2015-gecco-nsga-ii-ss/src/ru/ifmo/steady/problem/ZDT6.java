@@ -15,19 +15,30 @@ public class ZDT6 implements Problem {
     public int inputDimension() { return 10; }
     public String getName() { return "ZDT6"; }
 
-    private double g(double[] input) {
-        double g = 0;
-        for (int i = 1; i < input.length; ++i) {
-            g += input[i];
-        }
-        return 1 + 9 * Math.pow(g / (input.length - 1), 0.25);
+    private static double g(double[] input, int first, int last) {
+        return 1 + 9 * Math.pow(Common.sum(input, first + 1, last) / (last - first - 1), 0.25);
     }
 
-    public Solution evaluate(double[] input) {
-        double g = g(input);
-        double x1 = input[0];
-        double f = 1 - Math.exp(-4 * x1) * Math.pow(Math.sin(6 * Math.PI * x1), 6);
+    private static double x(double x1) {
+        return 1 - Math.exp(-4 * x1) * Math.pow(Math.sin(6 * Math.PI * x1), 6);
+    }
+
+    private static double y(double f, double g) {
         double h = 1 - (f / g) * (f / g);
-        return new Solution(f, h * g, input);
+        return h * g;
+    }
+
+    public Solution evaluate(double[] input) {
+        double f = x(input[0]);
+        return new Solution(f, y(f, g(input, 0, input.length)), input);
+    }
+
+    public void evaluateBatch(double[] inputs, int count, double[] objectives) {
+        int n = inputDimension();
+        for (int i = 0, first = 0; i < count; ++i, first += n) {
+            double f = x(inputs[first]);
+            objectives[2 * i] = f;
+            objectives[2 * i + 1] = y(f, g(inputs, first, first + n));
+        }
     }
 }
@@ -0,0 +1,493 @@
+package ru.ifmo.steady.soa;
+
+import java.util.*;
+
+import ru.ifmo.steady.*;
+
+/**
+ * An implementation of incremental non-dominated sorting
+ * which keeps every layer in primitive arrays instead of treaps.
+ *
+ * A layer is stored as three parallel arrays sorted by increasing x:
+ * the objectives x and y and an integer handle into the solution store.
+ * Crowding distances are computed from the neighbouring entries on demand.
+ * Insertion and removal shift array tails, which costs more element moves
+ * than a treap but touches memory sequentially. Arrays of removed layers,
+ * handles of removed solutions and the buffers used to push dominated runs
+ * between layers are reused, so steady-state operation does not allocate.
+ */
+public class Storage extends SolutionStorage {
+    public void add(Solution solution) {
+        long start = metrics.start();
+        addImpl(solution);
+        metrics.finish(StorageMetrics.Operation.Add, start);
+    }
+
+    public int getLayerCount() {
+        return layerCount;
+    }
+
+    public Iterator<Solution> getLayer(int index) {
+        if (index < 0 || index >= getLayerCount()) {
+            throw new IllegalArgumentException("No such layer: " + index);
+        }
+        final int[] handles = layerH[index];
+        final int layerSize = layerSizes[index];
+        return new Iterator<Solution>() {
+            private int position = 0;
+
+            public boolean hasNext() {
+                return position < layerSize;
+            }
+
+            public Solution next() {
+                if (position == layerSize) {
+                    throw new NoSuchElementException();
+                }
+                return solutions[handles[position++]];
+            }
+        };
+    }
+
+    public String getName() {
+        return "SoA";
+    }
+
+    public QueryResult getRandom() {
+        if (size == 0) {
+            throw new IllegalStateException("empty data structure");
+        }
+        return getKth(randomContext.genetic().nextInt(size));
+    }
+
+    public QueryResult getKth(int index) {
+        long start = metrics.start();
+        QueryResult rv = getKthImpl(index);
+        metrics.finish(StorageMetrics.Operation.GetKth, start);
+        return rv;
+    }
+
+    private QueryResult getKthImpl(int index) {
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("index = " + index + " size = " + size);
+        }
+        int layer = 0;
+        while (index >= layerSizes[layer]) {
+            index -= layerSizes[layer];
+            ++layer;
+        }
+        double[] x = layerX[layer];
+        double[] y = layerY[layer];
+        int ls = layerSizes[layer];
+        double crowding;
+        if (index == 0 || index + 1 == ls) {
+            crowding = Double.POSITIVE_INFINITY;
+        } else {
+            counter.add(4);
+            double diffX = x[ls - 1] - x[0];
+            double diffY = y[0] - y[ls - 1];
+            crowding = crowdingDistance(x, y, index, diffX, diffY);
+        }
+        return new QueryResult(solutions[layerH[layer][index]], crowding, layer);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Solution removeWorst() {
+        long start = metrics.start();
+        Solution rv = removeWorstImpl(1);
+        metrics.finish(StorageMetrics.Operation.RemoveWorst, start);
+        return rv;
+    }
+
+    public void removeWorst(int count) {
+        long start = metrics.start();
+        removeWorstImpl(count);
+        metrics.finish(StorageMetrics.Operation.RemoveWorst, start);
+    }
+
+    public void clear() {
+        Arrays.fill(solutions, 0, handleCount, null);
+        handleCount = 0;
+        freeHandleCount = 0;
+        layerCount = 0;
+        size = 0;
+    }
+
+    @Override
+    public void restoreLayers(List<List<Solution>> layers) {
+        // Here an added solution goes after the equal ones, so the layers are added in their order.
+        clear();
+        for (List<Solution> layer : layers) {
+            for (Solution solution : layer) {
+                addImpl(solution);
+            }
+        }
+    }
+
+    public void removeWorstDebCompatible(int count) {
+        long start = metrics.start();
+        removeWorstDebCompatibleImpl(count);
+        metrics.finish(StorageMetrics.Operation.RemoveWorstDebCompatible, start);
+    }
+
+    private void removeWorstDebCompatibleImpl(int count) {
+        if (size < count) {
+            throw new IllegalStateException("not enough elements to remove");
+        }
+        size -= count;
+        while (count > 0 && layerSizes[layerCount - 1] <= count) {
+            count -= layerSizes[layerCount - 1];
+            removeLastLayer();
+        }
+        if (count > 0) {
+            int last = layerCount - 1;
+            double[] x = layerX[last];
+            double[] y = layerY[last];
+            int[] h = layerH[last];
+            int lls = layerSizes[last];
+            if (crowding.length < lls) {
+                int newCapacity = Math.max(lls, crowding.length * 2);
+                crowding = new double[newCapacity];
+                sortedCrowding = new double[newCapacity];
+            }
+            counter.add(4);
+            double diffX = x[lls - 1] - x[0];
+            double diffY = y[0] - y[lls - 1];
+            for (int i = 0; i < lls; ++i) {
+                if (i == 0 || i + 1 == lls) {
+                    crowding[i] = Double.POSITIVE_INFINITY;
+                } else {
+                    counter.add(4);
+                    crowding[i] = crowdingDistance(x, y, i, diffX, diffY);
+                }
+            }
+            // The remaining ones have the largest crowding distances, and the smallest indices among equal ones
+            System.arraycopy(crowding, 0, sortedCrowding, 0, lls);
+            Arrays.sort(sortedCrowding, 0, lls);
+            int remain = lls - count;
+            double threshold = sortedCrowding[count];
+            int equalToKeep = remain;
+            for (int i = count; i < lls; ++i) {
+                if (Double.compare(sortedCrowding[i], threshold) > 0) {
+                    --equalToKeep;
+                }
+            }
+            for (int i = 0, k = 0; i < lls; ++i) {
+                int cmp = Double.compare(crowding[i], threshold);
+                if (cmp > 0 || cmp == 0 && equalToKeep-- > 0) {
+                    x[k] = x[i];
+                    y[k] = y[i];
+                    h[k] = h[i];
+                    ++k;
+                } else {
+                    releaseHandle(h[i]);
+                }
+            }
+            layerSizes[last] = remain;
+        }
+    }
+
+    /* Implementation */
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Layers: parallel arrays sorted by increasing x (and thus non-increasing y).
+    private double[][] layerX = new double[INITIAL_CAPACITY][];
+    private double[][] layerY = new double[INITIAL_CAPACITY][];
+    private int[][] layerH = new int[INITIAL_CAPACITY][];
+    private int[] layerSizes = new int[INITIAL_CAPACITY];
+    private int layerCount = 0;
+    private int size = 0;
+
+    // Solution store addressed by handles, with a stack of free handles.
+    private Solution[] solutions = new Solution[INITIAL_CAPACITY];
+    private int[] freeHandles = new int[INITIAL_CAPACITY];
+    private int handleCount = 0;
+    private int freeHandleCount = 0;
+
+    // The run of solutions being pushed to the next layer, and a spare buffer of the same shape.
+    private double[] carryX = new double[INITIAL_CAPACITY], spareX = new double[INITIAL_CAPACITY];
+    private double[] carryY = new double[INITIAL_CAPACITY], spareY = new double[INITIAL_CAPACITY];
+    private int[] carryH = new int[INITIAL_CAPACITY], spareH = new int[INITIAL_CAPACITY];
+    private int carrySize = 0;
+
+    // Indices of the candidates with the smallest crowding distance.
+    private int[] worst = new int[INITIAL_CAPACITY];
+
+    // Crowding distances of the last layer for the bulk removal, and a copy of them to be sorted.
+    private double[] crowding = new double[INITIAL_CAPACITY], sortedCrowding = new double[INITIAL_CAPACITY];
+
+    private int acquireHandle(Solution solution) {
+        int handle;
+        if (freeHandleCount > 0) {
+            handle = freeHandles[--freeHandleCount];
+        } else {
+            if (handleCount == solutions.length) {
+                solutions = Arrays.copyOf(solutions, handleCount * 2);
+                freeHandles = Arrays.copyOf(freeHandles, handleCount * 2);
+            }
+            handle = handleCount++;
+        }
+        solutions[handle] = solution;
+        return handle;
+    }
+
+    private Solution releaseHandle(int handle) {
+        Solution rv = solutions[handle];
+        solutions[handle] = null;
+        freeHandles[freeHandleCount++] = handle;
+        return rv;
+    }
+
+    private static double crowdingDistance(double[] x, double[] y, int index, double diffX, double diffY) {
+        if (diffX == 0 || diffY == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return (x[index + 1] - x[index - 1]) / diffX
+             + (y[index - 1] - y[index + 1]) / diffY;
+    }
+
+    private void ensureCarryCapacity(int capacity) {
+        if (carryX.length < capacity) {
+            int newCapacity = Math.max(capacity, carryX.length * 2);
+            carryX = Arrays.copyOf(carryX, newCapacity);
+            carryY = Arrays.copyOf(carryY, newCapacity);
+            carryH = Arrays.copyOf(carryH, newCapacity);
+            spareX = new double[newCapacity];
+            spareY = new double[newCapacity];
+            spareH = new int[newCapacity];
+        }
+    }
+
+    private void ensureLayerCapacity(int layer, int capacity) {
+        if (layerX[layer] == null) {
+            int newCapacity = Math.max(capacity, INITIAL_CAPACITY);
+            layerX[layer] = new double[newCapacity];
+            layerY[layer] = new double[newCapacity];
+            layerH[layer] = new int[newCapacity];
+        } else if (layerX[layer].length < capacity) {
+            int newCapacity = Math.max(capacity, layerX[layer].length * 2);
+            layerX[layer] = Arrays.copyOf(layerX[layer], newCapacity);
+            layerY[layer] = Arrays.copyOf(layerY[layer], newCapacity);
+            layerH[layer] = Arrays.copyOf(layerH[layer], newCapacity);
+        }
+    }
+
+    private void appendCarryAsLayer() {
+        if (layerCount == layerSizes.length) {
+            int newLength = layerCount * 2;
+            layerX = Arrays.copyOf(layerX, newLength);
+            layerY = Arrays.copyOf(layerY, newLength);
+            layerH = Arrays.copyOf(layerH, newLength);
+            layerSizes = Arrays.copyOf(layerSizes, newLength);
+        }
+        ensureLayerCapacity(layerCount, carrySize);
+        System.arraycopy(carryX, 0, layerX[layerCount], 0, carrySize);
+        System.arraycopy(carryY, 0, layerY[layerCount], 0, carrySize);
+        System.arraycopy(carryH, 0, layerH[layerCount], 0, carrySize);
+        layerSizes[layerCount] = carrySize;
+        ++layerCount;
+    }
+
+    private void removeLastLayer() {
+        --layerCount;
+        int[] h = layerH[layerCount];
+        for (int i = layerSizes[layerCount] - 1; i >= 0; --i) {
+            releaseHandle(h[i]);
+        }
+        layerSizes[layerCount] = 0;
+    }
+
+    /*
+     * Returns the first index in the layer whose solution either has a greater x than (sx, sy),
+     * or has the same x and a greater y. Everything before this index either precedes (sx, sy)
+     * in x or is equal to it.
+     */
+    private int firstAfter(double[] x, double[] y, int layerSize, double sx, double sy) {
+        int lo = 0, hi = layerSize;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            counter.add(1);
+            boolean after = x[mid] > sx;
+            if (x[mid] == sx) {
+                counter.add(1);
+                after = y[mid] > sy;
+            }
+            if (after) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    // Returns the first index at or after from whose solution has y smaller than sy.
+    private int firstBelowY(double[] y, int from, int layerSize, double sy) {
+        int lo = from, hi = layerSize;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            counter.add(1);
+            if (y[mid] < sy) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    private boolean dominates(int layer, double sx, double sy) {
+        double[] x = layerX[layer];
+        double[] y = layerY[layer];
+        int position = firstAfter(x, y, layerSizes[layer], sx, sy);
+        if (position == 0) {
+            return false;
+        }
+        // The predecessor has the smallest y among the solutions with x not greater than sx.
+        --position;
+        counter.add(1);
+        if (y[position] != sy) {
+            return y[position] < sy;
+        }
+        counter.add(1);
+        return x[position] < sx;
+    }
+
+    /*
+     * Inserts the carried run into the given layer in place of the solutions it dominates,
+     * which become the new carried run. As the carried run was a contiguous part of a layer
+     * (or a single solution not dominated by this layer), the dominated solutions form
+     * a contiguous part of this layer as well.
+     */
+    private void pushCarry(int layer) {
+        double[] x = layerX[layer];
+        double[] y = layerY[layer];
+        int[] h = layerH[layer];
+        int ls = layerSizes[layer];
+        int from = firstAfter(x, y, ls, carryX[0], carryY[0]);
+        int until = firstBelowY(y, from, ls, carryY[carrySize - 1]);
+        int dominated = until - from;
+        int newSize = ls - dominated + carrySize;
+
+        ensureCarryCapacity(dominated);
+        System.arraycopy(x, from, spareX, 0, dominated);
+        System.arraycopy(y, from, spareY, 0, dominated);
+        System.arraycopy(h, from, spareH, 0, dominated);
+
+        ensureLayerCapacity(layer, newSize);
+        x = layerX[layer];
+        y = layerY[layer];
+        h = layerH[layer];
+        System.arraycopy(x, until, x, from + carrySize, ls - until);
+        System.arraycopy(y, until, y, from + carrySize, ls - until);
+        System.arraycopy(h, until, h, from + carrySize, ls - until);
+        System.arraycopy(carryX, 0, x, from, carrySize);
+        System.arraycopy(carryY, 0, y, from, carrySize);
+        System.arraycopy(carryH, 0, h, from, carrySize);
+        layerSizes[layer] = newSize;
+
+        double[] tmpX = carryX; carryX = spareX; spareX = tmpX;
+        double[] tmpY = carryY; carryY = spareY; spareY = tmpY;
+        int[] tmpH = carryH; carryH = spareH; spareH = tmpH;
+        carrySize = dominated;
+    }
+
+    private void addImpl(Solution solution) {
+        double sx = solution.getX();
+        double sy = solution.getY();
+        int lo = 0, hi = layerCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (dominates(mid, sx, sy)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        ++size;
+        carryX[0] = sx;
+        carryY[0] = sy;
+        carryH[0] = acquireHandle(solution);
+        carrySize = 1;
+        for (int layer = lo; carrySize > 0; ++layer) {
+            if (layer == layerCount) {
+                appendCarryAsLayer();
+                carrySize = 0;
+            } else {
+                pushCarry(layer);
+            }
+        }
+    }
+
+    private Solution removeFromLastLayer(int index) {
+        int last = layerCount - 1;
+        int ls = --layerSizes[last];
+        int[] h = layerH[last];
+        Solution rv = releaseHandle(h[index]);
+        System.arraycopy(layerX[last], index + 1, layerX[last], index, ls - index);
+        System.arraycopy(layerY[last], index + 1, layerY[last], index, ls - index);
+        System.arraycopy(h, index + 1, h, index, ls - index);
+        if (ls == 0) {
+            --layerCount;
+        }
+        return rv;
+    }
+
+    private Solution removeWorstImpl(int count) {
+        if (size < count) {
+            throw new IllegalStateException("empty data structure");
+        }
+        if (count == 0) {
+            return null;
+        }
+        size -= count;
+        while (layerSizes[layerCount - 1] < count) {
+            count -= layerSizes[layerCount - 1];
+            removeLastLayer();
+        }
+        Random random = randomContext.genetic();
+        Solution last = null;
+        while (count-- > 0) {
+            int lastLayer = layerCount - 1;
+            int lls = layerSizes[lastLayer];
+            if (lls == 1) {
+                last = removeFromLastLayer(0);
+                continue;
+            }
+            double[] x = layerX[lastLayer];
+            double[] y = layerY[lastLayer];
+            counter.add(2);
+            double diffX = x[lls - 1] - x[0];
+            double diffY = y[0] - y[lls - 1];
+            if (worst.length < lls) {
+                worst = new int[Math.max(lls, worst.length * 2)];
+            }
+            int worstCount = 0;
+            if (lls == 2 || diffX == 0 || diffY == 0) {
+                // All crowding distances are infinite
+                for (int i = 0; i < lls; ++i) {
+                    worst[worstCount++] = i;
+                }
+            } else {
+                double worstCrowding = Double.POSITIVE_INFINITY;
+                for (int i = 1; i + 1 < lls; ++i) {
+                    counter.add(2);
+                    double curr = crowdingDistance(x, y, i, diffX, diffY);
+                    if (worstCrowding > curr) {
+                        worstCrowding = curr;
+                        worstCount = 0;
+                    }
+                    if (worstCrowding == curr) {
+                        worst[worstCount++] = i;
+                    }
+                }
+            }
+            last = removeFromLastLayer(worst[random.nextInt(worstCount)]);
+        }
+        return last;
+    }
+}
@@ -1,6 +1,7 @@
 package ru.ifmo.steady.util;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 /**
@@ -208,6 +209,40 @@ public final class FastRandom extends Random implements Serializable {
         System.arraycopy(source.Q, 0, this.Q, 0, Q_SIZE);
     }
 
+    /**
+     * The number of bytes written by {@link #saveState(ByteBuffer)}.
+     */
+    public static final int STATE_BYTES = 4 * (Q_SIZE + 2);
+
+    /**
+     * Writes the state of this RNG to the given buffer in a compact binary form.
+     *
+     * @param buffer the buffer to write {@link #STATE_BYTES} bytes to.
+     */
+    public final void saveState(ByteBuffer buffer) {
+        buffer.putInt(c);
+        buffer.putInt(idx);
+        for (int i = 0; i < Q_SIZE; ++i) {
+            buffer.putInt(Q[i]);
+        }
+    }
+
+    /**
+     * Sets this RNG to the state previously written by {@link #saveState(ByteBuffer)}.
+     *
+     * This RNG will, after the method returns, produce the same random sequence
+     * as the saved one would have produced.
+     *
+     * @param buffer the buffer to read {@link #STATE_BYTES} bytes from.
+     */
+    public final void loadState(ByteBuffer buffer) {
+        c = buffer.getInt();
+        idx = buffer.getInt();
+        for (int i = 0; i < Q_SIZE; ++i) {
+            Q[i] = buffer.getInt();
+        }
+    }
+
     /**
      * Seeds the RNG with the given seed of type {@code long}.
      *
@@ -0,0 +1,125 @@
+package ru.ifmo.steady.util;
+
+import java.util.Arrays;
+
+/**
+ * A Fenwick tree over a growable sequence of non-negative integers, such as the sizes of layers.
+ *
+ * It answers prefix sums and finds the element containing the given unit in O(log n).
+ * Changing an element, appending an element and removing the last one take O(log n) as well.
+ * Inserting an element in the middle rebuilds the tree in O(n).
+ */
+public final class FenwickTree {
+    private int[] values = new int[16];
+    private int[] tree = new int[17];
+    private int size = 0;
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int get(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    public void set(int index, int value) {
+        checkIndex(index);
+        int delta = value - values[index];
+        values[index] = value;
+        for (int i = index + 1; i <= size; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    public void append(int value) {
+        ensureCapacity(size + 1);
+        values[size] = value;
+        int i = ++size;
+        int sum = value;
+        for (int step = 1, lowest = i & -i; step < lowest; step <<= 1) {
+            sum += tree[i - step];
+        }
+        tree[i] = sum;
+    }
+
+    public void removeLast() {
+        if (size == 0) {
+            throw new IllegalStateException("The tree is empty");
+        }
+        --size;
+    }
+
+    public void insert(int index, int value) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index " + index + " size " + size);
+        }
+        ensureCapacity(size + 1);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        ++size;
+        for (int i = 1; i <= size; ++i) {
+            tree[i] = values[i - 1];
+        }
+        for (int i = 1; i <= size; ++i) {
+            int parent = i + (i & -i);
+            if (parent <= size) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of the first {@code count} elements.
+     */
+    public int prefixSum(int count) {
+        if (count < 0 || count > size) {
+            throw new IndexOutOfBoundsException("Count " + count + " size " + size);
+        }
+        int rv = 0;
+        for (int i = count; i > 0; i -= i & -i) {
+            rv += tree[i];
+        }
+        return rv;
+    }
+
+    /**
+     * Returns the index of the element containing the given unit,
+     * that is, the smallest index such that the sum of the elements up to it, inclusively, exceeds {@code unit}.
+     */
+    public int find(int unit) {
+        if (unit < 0) {
+            throw new IndexOutOfBoundsException("Unit " + unit);
+        }
+        int pos = 0;
+        for (int step = Integer.highestOneBit(Math.max(size, 1)); step > 0; step >>>= 1) {
+            int next = pos + step;
+            if (next <= size && tree[next] <= unit) {
+                pos = next;
+                unit -= tree[next];
+            }
+        }
+        if (pos == size) {
+            throw new IndexOutOfBoundsException("The sum of all elements does not exceed the unit");
+        }
+        return pos;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " size " + size);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (values.length < capacity) {
+            int newCapacity = Math.max(capacity, values.length * 2);
+            values = Arrays.copyOf(values, newCapacity);
+            tree = Arrays.copyOf(tree, newCapacity + 1);
+        }
+    }
+}
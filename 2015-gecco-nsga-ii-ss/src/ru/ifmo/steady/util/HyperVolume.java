@@ -0,0 +1,88 @@
+package ru.ifmo.steady.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Computes the hypervolume of a set of points using the Hypervolume by Slicing Objectives (HSO) algorithm.
+ *
+ * The objectives are minimized, all point coordinates are expected to lie in [0; 1],
+ * and the reference point is (1, ..., 1). The algorithm cuts the space into slices
+ * along the last objective and computes the hypervolume of every slice in one dimension less.
+ * Points dominated in the projection are dropped before going down, and the two-dimensional
+ * case is solved by a sweep, which is fast enough for final populations with up to five objectives.
+ */
+public final class HyperVolume {
+    private HyperVolume() {}
+
+    public static double compute(double[][] points, int dimension) {
+        if (dimension < 1) {
+            throw new IllegalArgumentException("Dimension must be positive, found " + dimension);
+        }
+        return hso(points.clone(), points.length, dimension);
+    }
+
+    private static boolean weaklyDominates(double[] a, double[] b, int dimension) {
+        for (int i = 0; i < dimension; ++i) {
+            if (a[i] > b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double hso(double[][] points, int count, int dimension) {
+        if (count == 0) {
+            return 0;
+        }
+        if (dimension == 1) {
+            double min = 1;
+            for (int i = 0; i < count; ++i) {
+                min = Math.min(min, points[i][0]);
+            }
+            return 1 - min;
+        }
+        final int last = dimension - 1;
+        Arrays.sort(points, 0, count, Comparator.comparingDouble(p -> p[last]));
+        if (dimension == 2) {
+            double hv = 0;
+            double lastX = 1;
+            for (int i = 0; i < count; ++i) {
+                double[] p = points[i];
+                if (p[0] < lastX) {
+                    hv += (lastX - p[0]) * (1 - p[1]);
+                    lastX = p[0];
+                }
+            }
+            return hv;
+        }
+        double hv = 0;
+        double[][] front = new double[count][];
+        int frontSize = 0;
+        for (int i = 0; i < count; ++i) {
+            double[] p = points[i];
+            boolean dominated = false;
+            for (int j = 0; j < frontSize; ++j) {
+                if (weaklyDominates(front[j], p, last)) {
+                    dominated = true;
+                    break;
+                }
+            }
+            if (!dominated) {
+                int newSize = 0;
+                for (int j = 0; j < frontSize; ++j) {
+                    if (!weaklyDominates(p, front[j], last)) {
+                        front[newSize++] = front[j];
+                    }
+                }
+                front[newSize++] = p;
+                frontSize = newSize;
+            }
+            double upper = i + 1 < count ? points[i + 1][last] : 1;
+            if (upper > p[last]) {
+                hv += (upper - p[last]) * hso(Arrays.copyOf(front, frontSize), frontSize, last);
+            }
+        }
+        return hv;
+    }
+}
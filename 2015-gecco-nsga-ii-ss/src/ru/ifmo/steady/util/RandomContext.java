@@ -0,0 +1,76 @@
+package ru.ifmo.steady.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The random number generators of a single run: one for genetic operators and selection,
+ * and one for everything else, such as heap keys of treaps in storages.
+ *
+ * A run which takes all its randomness from its context does not depend on the thread it runs on,
+ * so the same seed gives the same results and the same comparison counts wherever it is run.
+ * Contexts for independent parts of a run, e.g. islands, are derived by {@link #split(long)},
+ * which depends only on the seed of this context and on the given key, not on the state of the generators.
+ *
+ * A context is not thread-safe, just as {@link FastRandom} is not.
+ */
+public final class RandomContext {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final FastRandom genetic = new FastRandom(0);
+    private final FastRandom etc = new FastRandom(0);
+    private long seed;
+
+    /**
+     * Creates a context with an arbitrary seed, for uses which need no reproducibility.
+     */
+    public RandomContext() {
+        this(ThreadLocalRandom.current().nextLong());
+    }
+
+    public RandomContext(long seed) {
+        setSeed(seed);
+    }
+
+    /**
+     * Restarts both generators from the given seed.
+     * The genetic generator then produces the same sequence as a {@link FastRandom} with this seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        genetic.setSeed(seed);
+        etc.setSeed(mix(seed + GOLDEN_GAMMA));
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the generator for genetic operators and selection.
+     */
+    public FastRandom genetic() {
+        return genetic;
+    }
+
+    /**
+     * Returns the generator for non-genetic purposes, whose use does not change the course of the run.
+     */
+    public FastRandom etc() {
+        return etc;
+    }
+
+    /**
+     * Returns a new context whose seed depends only on the seed of this one and on the given key.
+     * Different keys give independent contexts.
+     */
+    public RandomContext split(long key) {
+        return new RandomContext(mix(seed ^ mix(key * GOLDEN_GAMMA + GOLDEN_GAMMA)));
+    }
+
+    // The finalizer of SplitMix64
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
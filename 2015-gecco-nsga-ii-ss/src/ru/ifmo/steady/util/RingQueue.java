@@ -0,0 +1,92 @@
+package ru.ifmo.steady.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock-free queue for many producers and many consumers, the array-based one by Dmitry Vyukov.
+ *
+ * Every cell of the ring has a sequence number, which tells whether the cell
+ * is ready to be written at the given position or to be read from it.
+ * Producers and consumers claim positions by compare-and-set on the tail and the head,
+ * so no thread ever waits for another one: {@link #offer(Object)} fails when the queue is full,
+ * and {@link #poll()} returns {@code null} when it is empty.
+ */
+public final class RingQueue<T> {
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<T> elements;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Creates a queue which holds at least the given number of elements.
+     * The actual capacity is the nearest power of two.
+     */
+    public RingQueue(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30, found " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        elements = new AtomicReferenceArray<>(size);
+        for (int i = 0; i < size; ++i) {
+            sequences.set(i, i);
+        }
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Adds the element to the queue.
+     * @return {@code false} if the queue is full and the element is not added.
+     */
+    public boolean offer(T element) {
+        if (element == null) {
+            throw new NullPointerException("The queue does not hold nulls");
+        }
+        while (true) {
+            long pos = tail.get();
+            int cell = (int) (pos & mask);
+            long diff = sequences.get(cell) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    elements.lazySet(cell, element);
+                    sequences.set(cell, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element from the queue.
+     * @return the element, or {@code null} if the queue is empty.
+     */
+    public T poll() {
+        while (true) {
+            long pos = head.get();
+            int cell = (int) (pos & mask);
+            long diff = sequences.get(cell) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    T rv = elements.get(cell);
+                    elements.lazySet(cell, null);
+                    sequences.set(cell, pos + mask + 1);
+                    return rv;
+                }
+            } else if (diff < 0) {
+                return null;
+            }
+        }
+    }
+}
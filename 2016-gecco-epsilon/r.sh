@@ -22,8 +22,15 @@ elif [[ "$1" == "experiments" ]]; then
     echo "Running unit tests..." && java -cp classes ru.ifmo.eps.tests.Tests && \
     echo "Running torture tests..." && java -cp classes ru.ifmo.eps.tests.Torture && \
     echo "Running timing tests..." && taskset 0x01 java -Xmx2G -Xms2G -cp classes ru.ifmo.eps.tests.Timing | tee logs/results.log
+elif [[ "$1" == "speedup" ]]; then
+    echo -n "Compiling... " && javac -cp src -d classes src/ru/ifmo/eps/*.java \
+                                                        src/ru/ifmo/eps/tests/*.java \
+                                                        src/ru/ifmo/eps/omq/*.java \
+                                                        src/ru/ifmo/eps/util/*.java \
+                            && echo "done!"
+    echo "Running speedup tests..." && java -Xmx4G -Xms4G -cp classes ru.ifmo.eps.tests.Timing speedup | tee logs/speedup.log
 else
-    echo "Usage: $0 [<experiments> | <pictures>]"
+    echo "Usage: $0 [<experiments> | <pictures> | <speedup>]"
     exit 1
 fi
 
@@ -0,0 +1,36 @@
+package ru.ifmo.eps;
+
+import ru.ifmo.eps.omq.*;
+
+/**
+ * The unary additive epsilon indicator: the smallest epsilon such that every reference point
+ * is weakly dominated by some point of the set, shifted by epsilon in every objective.
+ * This is the binary epsilon with the set as the moving set and the reference set as the fixed set.
+ *
+ * The reference set is prepared by OMQBinaryEpsilon once, so evaluating a set
+ * costs only the preprocessing of that set and the sweeps.
+ */
+public class AdditiveEpsilon extends UnaryIndicator {
+    private final OMQBinaryEpsilon algorithm;
+    private final FixedSetEpsilon reference;
+
+    public AdditiveEpsilon(double[][] referenceSet) {
+        this(referenceSet, TreeOMQ.INSTANCE);
+    }
+
+    public AdditiveEpsilon(double[][] referenceSet, OMQBuilder builder) {
+        super(referenceSet);
+        this.algorithm = new OMQBinaryEpsilon(builder);
+        this.reference = algorithm.prepare(referenceSet);
+    }
+
+    @Override
+    protected double computeImpl(double[][] set) {
+        return reference.computeBinaryEpsilon(set);
+    }
+
+    @Override
+    public String getName() {
+        return "AdditiveEpsilon(" + algorithm.getName() + ")";
+    }
+}
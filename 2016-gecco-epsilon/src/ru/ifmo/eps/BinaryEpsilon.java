@@ -28,7 +28,38 @@ public abstract class BinaryEpsilon {
 
     protected abstract double computeBinaryEpsilonImpl(double[][] movingSet, double[][] fixedSet);
 
-    private static void checkNonNullSet(double[][] set, int dimension) {
+    /**
+     * Prepares the given fixed set for computing the epsilon of many moving sets against it.
+     * The fixed set is copied, so it may be changed by the caller afterwards.
+     *
+     * This implementation only copies the fixed set. Algorithms which can preprocess it
+     * once for all moving sets override this method.
+     */
+    public FixedSetEpsilon prepare(double[][] fixedSet) {
+        return new FixedSetEpsilon(fixedSet) {
+            private final double[][] fixed = copyOf(fixedSet);
+
+            @Override
+            protected double computeBinaryEpsilonImpl(double[][] movingSet) {
+                return BinaryEpsilon.this.computeBinaryEpsilonImpl(movingSet, fixed);
+            }
+
+            @Override
+            public String getName() {
+                return BinaryEpsilon.this.getName();
+            }
+        };
+    }
+
+    static double[][] copyOf(double[][] set) {
+        double[][] rv = new double[set.length][];
+        for (int i = 0; i < set.length; ++i) {
+            rv[i] = set[i].clone();
+        }
+        return rv;
+    }
+
+    static void checkNonNullSet(double[][] set, int dimension) {
         for (double[] point : set) {
             if (dimension != point.length) {
                 throw new IllegalArgumentException("All points must have equal dimension");
@@ -0,0 +1,47 @@
+package ru.ifmo.eps;
+
+import java.util.Objects;
+
+/**
+ * The binary epsilon against a fixed set which was prepared once by {@link BinaryEpsilon#prepare(double[][])}.
+ * Instances do not change after construction, so many threads can compute
+ * the epsilon of different moving sets against the same instance at once.
+ */
+public abstract class FixedSetEpsilon {
+    private final int fixedSetSize;
+    private final int dimension;
+
+    protected FixedSetEpsilon(double[][] fixedSet) {
+        Objects.requireNonNull(fixedSet, "Fixed set must not be null");
+        for (double[] point : fixedSet) {
+            Objects.requireNonNull(point, "Points in fixed set must not be null");
+        }
+        fixedSetSize = fixedSet.length;
+        dimension = fixedSetSize == 0 ? 0 : fixedSet[0].length;
+        BinaryEpsilon.checkNonNullSet(fixedSet, dimension);
+    }
+
+    public final double computeBinaryEpsilon(double[][] movingSet) {
+        Objects.requireNonNull(movingSet, "Moving set must not be null");
+
+        if (fixedSetSize == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (movingSet.length == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        for (double[] point : movingSet) {
+            Objects.requireNonNull(point, "Points in moving set must not be null");
+        }
+        BinaryEpsilon.checkNonNullSet(movingSet, dimension);
+        return computeBinaryEpsilonImpl(movingSet);
+    }
+
+    /**
+     * Computes the epsilon of a non-empty moving set, whose points were already checked, against a non-empty fixed set.
+     */
+    protected abstract double computeBinaryEpsilonImpl(double[][] movingSet);
+
+    public abstract String getName();
+}
@@ -0,0 +1,33 @@
+package ru.ifmo.eps;
+
+import ru.ifmo.eps.util.*;
+
+/**
+ * The generational distance: the mean Euclidean distance from the points of the set
+ * to the nearest points of the reference set.
+ *
+ * This is a nearest neighbour problem rather than an orthant one, so the reference set
+ * is indexed once by NearestNeighbourIndex.
+ */
+public class GenerationalDistance extends UnaryIndicator {
+    private final NearestNeighbourIndex reference;
+
+    public GenerationalDistance(double[][] referenceSet) {
+        super(referenceSet);
+        this.reference = new NearestNeighbourIndex(copyOf(referenceSet));
+    }
+
+    @Override
+    protected double computeImpl(double[][] set) {
+        double sum = 0;
+        for (double[] point : set) {
+            sum += reference.distance(point);
+        }
+        return sum / set.length;
+    }
+
+    @Override
+    public String getName() {
+        return "GenerationalDistance";
+    }
+}
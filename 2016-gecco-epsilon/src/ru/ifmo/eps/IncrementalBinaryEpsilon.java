@@ -0,0 +1,145 @@
+package ru.ifmo.eps;
+
+import java.util.*;
+
+import ru.ifmo.eps.omq.*;
+
+/**
+ * The binary epsilon of a moving set against a fixed set, both of which grow by single points.
+ *
+ * For every coordinate k, the moving points are encoded as in OMQBinaryEpsilon and kept in a DynamicOMQ,
+ * so that the bound of a fixed point, the minimum epsilon by which some moving point covers it,
+ * is found in polylogarithmic time. Adding a fixed point computes its bound right away.
+ * Adding a moving point can only decrease the bounds, so they are not updated at once:
+ * the fixed points are kept in a priority queue by their possibly outdated bounds, and the largest one
+ * is recomputed until it is up to date. Thus reading the epsilon recomputes only the fixed points
+ * whose bounds were above the answer, and the result is exactly the one of OMQBinaryEpsilon.
+ */
+public class IncrementalBinaryEpsilon {
+    private final int dimension;
+    private final OMQBuilder builder;
+    private final DynamicOMQ[] moving;
+    private final double[] encoded;
+
+    private double[][] fixed = new double[4][];
+    private double[] bounds = new double[4];
+    // The number of moving points at the moment the bound was computed
+    private int[] boundVersions = new int[4];
+    private int fixedSize = 0;
+    private final PriorityQueue<Integer> queue = new PriorityQueue<>((l, r) -> Double.compare(bounds[r], bounds[l]));
+
+    public IncrementalBinaryEpsilon(int dimension) {
+        this(dimension, TreeOMQ.INSTANCE);
+    }
+
+    public IncrementalBinaryEpsilon(int dimension, OMQBuilder builder) {
+        if (dimension < 1) {
+            throw new IllegalArgumentException("Dimension must be positive");
+        }
+        this.dimension = dimension;
+        this.builder = builder;
+        this.moving = new DynamicOMQ[dimension];
+        for (int k = 0; k < dimension; ++k) {
+            moving[k] = new DynamicOMQ(builder, dimension - 1);
+        }
+        this.encoded = new double[dimension + 1];
+    }
+
+    /*
+     * Translates a point (x_1, x_2, ..., x_d) to (0, x_k - x_1, ..., x_k - x_d, x_k).
+     * This is the encoding of OMQBinaryEpsilon with a constant first coordinate prepended,
+     * which DynamicOMQ ignores, so that the domination is checked in all the remaining ones.
+     */
+    private static void encode(double[] src, int k, double[] trg) {
+        int d = src.length;
+        double xk = src[k];
+        trg[0] = 0;
+        for (int i = 0; i < k; ++i) {
+            trg[i + 1] = xk - src[i];
+        }
+        for (int i = k + 1; i < d; ++i) {
+            trg[i] = xk - src[i];
+        }
+        trg[d] = xk;
+    }
+
+    private void checkPoint(double[] point, String name) {
+        Objects.requireNonNull(point, name + " point must not be null");
+        BinaryEpsilon.checkNonNullSet(new double[][] { point }, dimension);
+    }
+
+    public void addMovingPoint(double[] point) {
+        checkPoint(point, "Moving");
+        for (int k = 0; k < dimension; ++k) {
+            double[] encodedPoint = new double[dimension + 1];
+            encode(point, k, encodedPoint);
+            moving[k].add(encodedPoint);
+        }
+    }
+
+    public void addFixedPoint(double[] point) {
+        checkPoint(point, "Fixed");
+        if (fixedSize == fixed.length) {
+            int newLength = fixedSize * 2;
+            fixed = Arrays.copyOf(fixed, newLength);
+            bounds = Arrays.copyOf(bounds, newLength);
+            boundVersions = Arrays.copyOf(boundVersions, newLength);
+        }
+        fixed[fixedSize] = point.clone();
+        updateBound(fixedSize);
+        queue.add(fixedSize);
+        ++fixedSize;
+    }
+
+    private void updateBound(int index) {
+        double[] point = fixed[index];
+        double rv = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < dimension; ++k) {
+            encode(point, k, encoded);
+            rv = Math.min(rv, moving[k].getMin(encoded) - encoded[dimension]);
+        }
+        bounds[index] = rv;
+        boundVersions[index] = moving[0].size();
+    }
+
+    public int getMovingSetSize() {
+        return moving[0].size();
+    }
+
+    public int getFixedSetSize() {
+        return fixedSize;
+    }
+
+    /**
+     * Returns the binary epsilon of all moving points added so far against all fixed points added so far,
+     * with the same conventions for empty sets as {@link BinaryEpsilon#computeBinaryEpsilon(double[][], double[][])}.
+     */
+    public double getEpsilon() {
+        if (fixedSize == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        int version = moving[0].size();
+        while (true) {
+            int top = queue.peek();
+            if (boundVersions[top] == version) {
+                return bounds[top];
+            }
+            queue.poll();
+            updateBound(top);
+            queue.add(top);
+        }
+    }
+
+    public void clear() {
+        for (DynamicOMQ omq : moving) {
+            omq.clear();
+        }
+        Arrays.fill(fixed, 0, fixedSize, null);
+        fixedSize = 0;
+        queue.clear();
+    }
+
+    public String getName() {
+        return "IncrementalBinaryEpsilon(" + builder.getName() + ")";
+    }
+}
@@ -0,0 +1,34 @@
+package ru.ifmo.eps;
+
+import ru.ifmo.eps.util.*;
+
+/**
+ * The inverted generational distance: the mean Euclidean distance from the points of the reference set
+ * to the nearest points of the set.
+ *
+ * The queries come from the reference set here, so it is the evaluated set which is indexed,
+ * once per evaluation, by NearestNeighbourIndex.
+ */
+public class InvertedGenerationalDistance extends UnaryIndicator {
+    private final double[][] referenceSet;
+
+    public InvertedGenerationalDistance(double[][] referenceSet) {
+        super(referenceSet);
+        this.referenceSet = copyOf(referenceSet);
+    }
+
+    @Override
+    protected double computeImpl(double[][] set) {
+        NearestNeighbourIndex index = new NearestNeighbourIndex(set);
+        double sum = 0;
+        for (double[] point : referenceSet) {
+            sum += index.distance(point);
+        }
+        return sum / referenceSet.length;
+    }
+
+    @Override
+    public String getName() {
+        return "InvertedGenerationalDistance";
+    }
+}
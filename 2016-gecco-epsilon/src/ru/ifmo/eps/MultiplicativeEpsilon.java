@@ -0,0 +1,48 @@
+package ru.ifmo.eps;
+
+import ru.ifmo.eps.omq.*;
+
+/**
+ * The unary multiplicative epsilon indicator: the smallest factor epsilon such that every reference point
+ * is weakly dominated by some point of the set, divided by epsilon in every objective.
+ * All objectives must be positive.
+ *
+ * Since a / r <= e if and only if log a - log r <= log e, this is the exponent
+ * of the additive epsilon of the logarithms of the points.
+ */
+public class MultiplicativeEpsilon extends UnaryIndicator {
+    private final AdditiveEpsilon additive;
+
+    public MultiplicativeEpsilon(double[][] referenceSet) {
+        this(referenceSet, TreeOMQ.INSTANCE);
+    }
+
+    public MultiplicativeEpsilon(double[][] referenceSet, OMQBuilder builder) {
+        super(referenceSet);
+        this.additive = new AdditiveEpsilon(logarithms(referenceSet), builder);
+    }
+
+    private static double[][] logarithms(double[][] set) {
+        double[][] rv = new double[set.length][];
+        for (int i = 0; i < set.length; ++i) {
+            rv[i] = new double[set[i].length];
+            for (int j = 0; j < rv[i].length; ++j) {
+                if (!(set[i][j] > 0)) {
+                    throw new IllegalArgumentException("All points must have positive coordinates");
+                }
+                rv[i][j] = Math.log(set[i][j]);
+            }
+        }
+        return rv;
+    }
+
+    @Override
+    protected double computeImpl(double[][] set) {
+        return Math.exp(additive.compute(logarithms(set)));
+    }
+
+    @Override
+    public String getName() {
+        return "MultiplicativeEpsilon(" + additive.getName() + ")";
+    }
+}
@@ -1,10 +1,39 @@
 package ru.ifmo.eps;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import ru.ifmo.eps.util.*;
 
 public class OMQ2BinaryEpsilon extends BinaryEpsilon {
+    private static final int DEFAULT_PARALLEL_CUTOFF = 1 << 13;
+
+    private final ForkJoinPool pool;
+    private final int parallelCutoff;
+
+    public OMQ2BinaryEpsilon() {
+        this(null, Integer.MAX_VALUE);
+    }
+
+    public OMQ2BinaryEpsilon(ForkJoinPool pool) {
+        this(pool, DEFAULT_PARALLEL_CUTOFF);
+    }
+
+    /**
+     * Creates an instance which runs the independent parts of the divide-and-conquer in the given pool,
+     * as long as they contain at least parallelCutoff points. The result is exactly the same as without the pool.
+     */
+    public OMQ2BinaryEpsilon(ForkJoinPool pool, int parallelCutoff) {
+        if (parallelCutoff < 1) {
+            throw new IllegalArgumentException("Parallel cutoff must be positive");
+        }
+        this.pool = pool;
+        this.parallelCutoff = parallelCutoff;
+    }
+
     // Translates a point (x_1, x_2, ..., x_d) to (x_k - x_1, ..., x_k - x_d, x_k)
     private static void encode(double[] src, int k, double[] trg) {
         int d = src.length;
@@ -20,21 +49,38 @@ public class OMQ2BinaryEpsilon extends BinaryEpsilon {
 
     private static class ArrayWrapper2 extends ArrayWrapper {
         double[] bound;
-        double[] medianSwap;
-
-        int fenwickSize;
-        double[] fenwick;
-        double[] fwPivots;
 
         int numberOfQueries;
 
-        public ArrayWrapper2(double[][] contents, int numberOfQueries) {
+        final ForkJoinPool pool;
+        final int parallelCutoff;
+        /*
+         * The buffers for splitting, merging and median search belong to a chain of tasks, not to a thread:
+         * of the two independent subproblems, one continues with the buffers of its parent,
+         * which waits for both of them, and the other one takes spare buffers, returning them when it is done.
+         * The spares live as long as the wrapper, so nothing is left in the threads of the pool.
+         */
+        final Scratch scratch;
+        final Queue<Scratch> spareScratch = new ConcurrentLinkedQueue<>();
+
+        public ArrayWrapper2(double[][] contents, int numberOfQueries, ForkJoinPool pool, int parallelCutoff) {
             super(contents, 0, contents[0].length - 2);
             this.numberOfQueries = numberOfQueries;
+            this.pool = pool;
+            this.parallelCutoff = parallelCutoff;
             bound = new double[contents.length];
-            medianSwap = new double[contents.length];
-            fenwick = new double[contents.length];
-            fwPivots = new double[contents.length];
+            scratch = new Scratch(contents.length);
+            Arrays.fill(bound, Double.POSITIVE_INFINITY);
+        }
+
+        public ArrayWrapper2(double[][] contents, int[] sortedIndices, int numberOfQueries,
+                             ForkJoinPool pool, int parallelCutoff) {
+            super(contents, 0, contents[0].length - 2, sortedIndices);
+            this.numberOfQueries = numberOfQueries;
+            this.pool = pool;
+            this.parallelCutoff = parallelCutoff;
+            bound = new double[contents.length];
+            scratch = new Scratch(contents.length);
             Arrays.fill(bound, Double.POSITIVE_INFINITY);
         }
 
@@ -43,6 +89,11 @@ public class OMQ2BinaryEpsilon extends BinaryEpsilon {
             Arrays.fill(bound, Double.POSITIVE_INFINITY);
         }
 
+        public void reloadContents(int[] sortedIndices) {
+            super.reloadContents(sortedIndices);
+            Arrays.fill(bound, Double.POSITIVE_INFINITY);
+        }
+
         public double getBound(int index) {
             return bound[idx[index]];
         }
@@ -73,7 +124,11 @@ public class OMQ2BinaryEpsilon extends BinaryEpsilon {
                 }
                 System.arraycopy(swp, 0, idx, 0, contents.length);
                 // Running recursion
-                updateLeftByRight(0, numberOfQueries, numberOfQueries, contents.length, dimension - 2);
+                if (pool == null) {
+                    updateLeftByRight(scratch, 0, numberOfQueries, numberOfQueries, contents.length, dimension - 2);
+                } else {
+                    pool.invoke(new UpdateTask(scratch, 0, numberOfQueries, numberOfQueries, contents.length, dimension - 2));
+                }
             }
         }
 
@@ -93,7 +148,37 @@ public class OMQ2BinaryEpsilon extends BinaryEpsilon {
             update(target, source);
         }
 
-        public void updateLeftByRight(int minLeft, int maxLeft, int minRight, int maxRight, int d) {
+        @SuppressWarnings("serial")
+        private class UpdateTask extends RecursiveAction {
+            // The buffers of the parent, or null to take spare ones
+            private final Scratch scratch;
+            private final int minLeft, maxLeft, minRight, maxRight, d;
+
+            UpdateTask(Scratch scratch, int minLeft, int maxLeft, int minRight, int maxRight, int d) {
+                this.scratch = scratch;
+                this.minLeft = minLeft;
+                this.maxLeft = maxLeft;
+                this.minRight = minRight;
+                this.maxRight = maxRight;
+                this.d = d;
+            }
+
+            @Override
+            protected void compute() {
+                if (scratch != null) {
+                    updateLeftByRight(scratch, minLeft, maxLeft, minRight, maxRight, d);
+                } else {
+                    Scratch spare = spareScratch.poll();
+                    if (spare == null) {
+                        spare = new Scratch(contents.length);
+                    }
+                    updateLeftByRight(spare, minLeft, maxLeft, minRight, maxRight, d);
+                    spareScratch.add(spare);
+                }
+            }
+        }
+
+        public void updateLeftByRight(Scratch s, int minLeft, int maxLeft, int minRight, int maxRight, int d) {
             if (minLeft == maxLeft || minRight == maxRight) {
                 return;
             }
@@ -104,8 +189,9 @@ public class OMQ2BinaryEpsilon extends BinaryEpsilon {
                     }
                 }
             } else if (d == 1) {
-                updateLeftByRight2D(minLeft, maxLeft, minRight, maxRight);
+                updateLeftByRight2D(s, minLeft, maxLeft, minRight, maxRight);
             } else {
+                double[] medianSwap = s.medianSwap;
                 double minMax = Double.NEGATIVE_INFINITY;
                 double maxMin = Double.POSITIVE_INFINITY;
                 int mc = 0;
@@ -118,30 +204,70 @@ public class OMQ2BinaryEpsilon extends BinaryEpsilon {
                     maxMin = Math.min(maxMin, medianSwap[mc]);
                 }
                 if (minMax <= maxMin) {
-                    updateLeftByRight(minLeft, maxLeft, minRight, maxRight, d - 1);
+                    updateLeftByRight(s, minLeft, maxLeft, minRight, maxRight, d - 1);
                 } else {
                     double median = Miscellaneous.destructiveMedian(medianSwap, 0, mc);
-                    split(minLeft, maxLeft, median, d);
-                    int midMinLeft = splitL, midMaxLeft = splitR;
-                    split(minRight, maxRight, median, d);
-                    int midMinRight = splitL, midMaxRight = splitR;
+                    split(minLeft, maxLeft, median, d, s);
+                    int midMinLeft = s.splitL, midMaxLeft = s.splitR;
+                    split(minRight, maxRight, median, d, s);
+                    int midMinRight = s.splitL, midMaxRight = s.splitR;
 
-                    updateLeftByRight(midMaxLeft, maxLeft, midMaxRight, maxRight, d);
-                    updateLeftByRight(minLeft, midMinLeft, minRight, midMinRight, d);
-                    merge(midMinRight, midMaxRight, maxRight);
-                    merge(minLeft, midMinLeft, midMaxLeft);
-                    updateLeftByRight(minLeft, midMaxLeft, midMinRight, maxRight, d - 1);
-                    merge(minRight, midMinRight, maxRight);
-                    merge(minLeft, midMaxLeft, maxLeft);
+                    // These two touch disjoint ranges, both of points and of bounds
+                    if (pool != null && mc >= parallelCutoff) {
+                        ForkJoinTask.invokeAll(new UpdateTask(s, midMaxLeft, maxLeft, midMaxRight, maxRight, d),
+                                               new UpdateTask(null, minLeft, midMinLeft, minRight, midMinRight, d));
+                    } else {
+                        updateLeftByRight(s, midMaxLeft, maxLeft, midMaxRight, maxRight, d);
+                        updateLeftByRight(s, minLeft, midMinLeft, minRight, midMinRight, d);
+                    }
+                    merge(midMinRight, midMaxRight, maxRight, s);
+                    merge(minLeft, midMinLeft, midMaxLeft, s);
+                    updateLeftByRight(s, minLeft, midMaxLeft, midMinRight, maxRight, d - 1);
+                    merge(minRight, midMinRight, maxRight, s);
+                    merge(minLeft, midMaxLeft, maxLeft, s);
                 }
             }
         }
 
-        private void buildFenwick(int from, int until) {
-            int inSize = until - from;
+        public void updateLeftByRight2D(Scratch s, int minLeft, int maxLeft, int minRight, int maxRight) {
+            int inSize = maxRight - minRight;
             for (int i = 0; i < inSize; ++i) {
-                fwPivots[i] = get(from + i, 1);
+                s.fwPivots[i] = get(minRight + i, 1);
             }
+            s.buildFenwick(inSize);
+            for (int li = maxLeft - 1, ri = maxRight - 1; li >= minLeft; --li) {
+                while (ri >= minRight && get(ri, 0) >= get(li, 0)) {
+                    s.setFenwick(get(ri, 1), get(ri, dimension - 1));
+                    --ri;
+                }
+                double qf = s.queryFenwick(get(li, 1));
+                bound[idx[li]] = Math.min(bound[idx[li]], qf);
+            }
+        }
+    }
+
+    /*
+     * The buffers of a chain of tasks: for splitting and merging, for median search,
+     * and for the Fenwick tree of the two-dimensional case. All of them are indexed
+     * either by positions in the wrapper or by the number of points in a subproblem,
+     * so they have the size of the wrapper.
+     */
+    private static final class Scratch extends ArrayWrapper.Buffers {
+        final double[] medianSwap;
+
+        int fenwickSize;
+        final double[] fenwick;
+        final double[] fwPivots;
+
+        Scratch(int size) {
+            super(size);
+            medianSwap = new double[size];
+            fenwick = new double[size];
+            fwPivots = new double[size];
+        }
+
+        // Builds an empty tree over the first inSize values of fwPivots
+        void buildFenwick(int inSize) {
             Arrays.sort(fwPivots, 0, inSize);
             fenwickSize = 1;
             for (int i = 1; i < inSize; ++i) {
@@ -152,7 +278,7 @@ public class OMQ2BinaryEpsilon extends BinaryEpsilon {
             Arrays.fill(fenwick, 0, fenwickSize, Double.POSITIVE_INFINITY);
         }
 
-        private int indexFenwick(double key) {
+        int indexFenwick(double key) {
             int left = -1, right = fenwickSize;
             while (right - left > 1) {
                 int mid = (left + right) >>> 1;
@@ -165,7 +291,7 @@ public class OMQ2BinaryEpsilon extends BinaryEpsilon {
             return fenwickSize - 1 - right;
         }
 
-        private void setFenwick(double key, double value) {
+        void setFenwick(double key, double value) {
             int fwi = indexFenwick(key);
             while (fwi < fenwickSize) {
                 fenwick[fwi] = Math.min(fenwick[fwi], value);
@@ -173,7 +299,7 @@ public class OMQ2BinaryEpsilon extends BinaryEpsilon {
             }
         }
 
-        private double queryFenwick(double key) {
+        double queryFenwick(double key) {
             int fwi = indexFenwick(key);
             if (fwi == -1) {
                 return Double.POSITIVE_INFINITY;
@@ -186,18 +312,6 @@ public class OMQ2BinaryEpsilon extends BinaryEpsilon {
                 return rv;
             }
         }
-
-        public void updateLeftByRight2D(int minLeft, int maxLeft, int minRight, int maxRight) {
-            buildFenwick(minRight, maxRight);
-            for (int li = maxLeft - 1, ri = maxRight - 1; li >= minLeft; --li) {
-                while (ri >= minRight && get(ri, 0) >= get(li, 0)) {
-                    setFenwick(get(ri, 1), get(ri, dimension - 1));
-                    --ri;
-                }
-                double qf = queryFenwick(get(li, 1));
-                bound[idx[li]] = Math.min(bound[idx[li]], qf);
-            }
-        }
     }
 
     @Override
@@ -218,7 +332,7 @@ public class OMQ2BinaryEpsilon extends BinaryEpsilon {
             }
 
             if (wrapper == null) {
-                wrapper = new ArrayWrapper2(joinedSet, fixedSet.length);
+                wrapper = new ArrayWrapper2(joinedSet, fixedSet.length, pool, parallelCutoff);
             } else {
                 wrapper.reloadContents();
             }
@@ -237,8 +351,113 @@ public class OMQ2BinaryEpsilon extends BinaryEpsilon {
         return rv;
     }
 
+    /**
+     * The fixed set encoded and sorted for every coordinate, so that it can be used against many moving sets.
+     * It is not modified after construction, so it may be shared between threads:
+     * the wrappers only reorder indices and never write the points themselves.
+     */
+    private static final class PreparedFixedSet {
+        final int size;
+        // For every coordinate, the encoded points and their indices in the order of ArrayWrapper2
+        final double[][][] encoded;
+        final int[][] order;
+
+        PreparedFixedSet(double[][] fixedSet) {
+            size = fixedSet.length;
+            int d = fixedSet[0].length;
+            encoded = new double[d][size][d];
+            order = new int[d][size];
+            for (int k = 0; k < d; ++k) {
+                for (int i = 0; i < size; ++i) {
+                    encode(fixedSet[i], k, encoded[k][i]);
+                }
+                ArrayWrapper fixedW = new ArrayWrapper(encoded[k], 0, d - 2);
+                for (int i = 0; i < size; ++i) {
+                    order[k][i] = fixedW.getIndex(i);
+                }
+            }
+        }
+    }
+
+    @Override
+    public FixedSetEpsilon prepare(double[][] fixedSet) {
+        return new FixedSetEpsilon(fixedSet) {
+            private final PreparedFixedSet prepared = fixedSet.length == 0 ? null : new PreparedFixedSet(fixedSet);
+
+            @Override
+            protected double computeBinaryEpsilonImpl(double[][] movingSet) {
+                return compute(movingSet, prepared);
+            }
+
+            @Override
+            public String getName() {
+                return OMQ2BinaryEpsilon.this.getName();
+            }
+        };
+    }
+
+    /*
+     * Same as computeBinaryEpsilonImpl, but only the moving set is sorted for every coordinate.
+     * The joint order, which is lexicographic with fixed points first on ties,
+     * is obtained by merging it with the order of the prepared fixed set.
+     */
+    private double compute(double[][] movingSet, PreparedFixedSet fixed) {
+        int d = movingSet[0].length;
+        int fixedSize = fixed.size, size = fixedSize + movingSet.length;
+        double[][] movingEncoded = new double[movingSet.length][d];
+        double[][] joinedSet = new double[size][];
+        System.arraycopy(movingEncoded, 0, joinedSet, fixedSize, movingSet.length);
+        int[] order = new int[size];
+        double[] bounds = new double[fixedSize];
+        Arrays.fill(bounds, Double.POSITIVE_INFINITY);
+
+        ArrayWrapper movingW = null;
+        ArrayWrapper2 wrapper = null;
+
+        for (int k = 0; k < d; ++k) {
+            for (int i = 0, ii = movingSet.length; i < ii; ++i) {
+                encode(movingSet[i], k, movingEncoded[i]);
+            }
+            if (movingW == null) {
+                movingW = new ArrayWrapper(movingEncoded, 0, d - 2);
+            } else {
+                movingW.reloadContents();
+            }
+
+            double[][] fixedEncoded = fixed.encoded[k];
+            int[] fixedOrder = fixed.order[k];
+            System.arraycopy(fixedEncoded, 0, joinedSet, 0, fixedSize);
+            for (int t = 0, f = 0, m = 0; t < size; ++t) {
+                if (m == movingSet.length || f < fixedSize
+                        && Miscellaneous.lexCompare(fixedEncoded[fixedOrder[f]], movingW.get(m), d - 1) <= 0) {
+                    order[t] = fixedOrder[f++];
+                } else {
+                    order[t] = fixedSize + movingW.getIndex(m++);
+                }
+            }
+
+            if (wrapper == null) {
+                wrapper = new ArrayWrapper2(joinedSet, order, fixedSize, pool, parallelCutoff);
+            } else {
+                wrapper.reloadContents(order);
+            }
+
+            wrapper.run();
+
+            for (int i = 0; i < fixedSize; ++i) {
+                bounds[i] = Math.min(bounds[i], wrapper.bound[i] - fixedEncoded[i][d - 1]);
+            }
+        }
+
+        double rv = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < fixedSize; ++i) {
+            rv = Math.max(rv, bounds[i]);
+        }
+        return rv;
+    }
+
     @Override
     public String getName() {
-        return "OMQ2BinaryEpsilon";
+        return pool == null ? "OMQ2BinaryEpsilon" : "OMQ2BinaryEpsilon(" + pool.getParallelism() + " threads)";
     }
 }
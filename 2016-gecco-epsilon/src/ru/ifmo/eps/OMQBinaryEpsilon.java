@@ -1,15 +1,27 @@
 package ru.ifmo.eps;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import ru.ifmo.eps.omq.*;
 import ru.ifmo.eps.util.*;
 
 public class OMQBinaryEpsilon extends BinaryEpsilon {
     private OMQBuilder builder;
+    private ForkJoinPool pool;
 
     public OMQBinaryEpsilon(OMQBuilder builder) {
+        this(builder, null);
+    }
+
+    /**
+     * Creates an instance which runs the sweeps for different coordinates in the given pool.
+     * The sweeps are independent, so the result is exactly the same as without the pool.
+     */
+    public OMQBinaryEpsilon(OMQBuilder builder, ForkJoinPool pool) {
         this.builder = builder;
+        this.pool = pool;
     }
 
     // Translates a point (x_1, x_2, ..., x_d) to (x_k - x_1, ..., x_k - x_d, x_k)
@@ -25,47 +37,118 @@ public class OMQBinaryEpsilon extends BinaryEpsilon {
         trg[d - 1] = xk;
     }
 
-    @Override
-    protected double computeBinaryEpsilonImpl(double[][] movingSet0, double[][] fixedSet0) {
-        int d = movingSet0[0].length;
-        double[][] movingSet = new double[movingSet0.length][d];
-        double[][] fixedSet = new double[fixedSet0.length][d];
+    /**
+     * The fixed set encoded and sorted for every coordinate, so that it can be used against many moving sets.
+     * It is not modified after construction, so it may be shared between threads.
+     */
+    private static final class PreparedFixedSet {
+        final int size;
+        // For every coordinate, the encoded points in the order of the sweep and their indices in the fixed set
+        final double[][][] sorted;
+        final int[][] indices;
+
+        PreparedFixedSet(double[][] fixedSet) {
+            size = fixedSet.length;
+            int dimension = fixedSet[0].length;
+            sorted = new double[dimension][size][];
+            indices = new int[dimension][size];
+            for (int k = 0; k < dimension; ++k) {
+                double[][] encoded = new double[size][dimension];
+                for (int i = 0; i < size; ++i) {
+                    encode(fixedSet[i], k, encoded[i]);
+                }
+                ArrayWrapper fixedW = new ArrayWrapper(encoded);
+                for (int fp = 0; fp < size; ++fp) {
+                    sorted[k][fp] = fixedW.get(fp);
+                    indices[k][fp] = fixedW.getIndex(fp);
+                }
+            }
+        }
+    }
 
-        double[] upperBounds = new double[fixedSet.length];
-        Arrays.fill(upperBounds, Double.POSITIVE_INFINITY);
+    /**
+     * Sweeps for some of the coordinates, reusing the encoded sets, the wrappers and the query structure.
+     * The fixed set is either encoded for every coordinate, or taken from a prepared one.
+     */
+    private class Sweep {
+        final double[][] movingSet0, fixedSet0;
+        final PreparedFixedSet prepared;
+        final int d;
+        final double[][] movingSet, fixedSet;
+        final double[][] fixedSorted;
+        final int[] fixedIndices;
+        final double[] upperBounds;
+        final OrthantMinimumQuery driver;
 
         ArrayWrapper movingW = null;
         ArrayWrapper movingW2 = null;
         ArrayWrapper fixedW = null;
 
-        OrthantMinimumQuery driver = builder.build(d - 2);
+        Sweep(double[][] movingSet0, double[][] fixedSet0, PreparedFixedSet prepared) {
+            this.movingSet0 = movingSet0;
+            this.fixedSet0 = fixedSet0;
+            this.prepared = prepared;
+            d = movingSet0[0].length;
+            movingSet = new double[movingSet0.length][d];
+            int fixedSize = prepared == null ? fixedSet0.length : prepared.size;
+            fixedSet = prepared == null ? new double[fixedSize][d] : null;
+            fixedSorted = prepared == null ? new double[fixedSize][] : null;
+            fixedIndices = prepared == null ? new int[fixedSize] : null;
+            upperBounds = new double[fixedSize];
+            Arrays.fill(upperBounds, Double.POSITIVE_INFINITY);
+            driver = builder.build(d - 2);
+        }
+
+        // Runs the sweeps for coordinates first, first + step, ... and returns the upper bounds
+        double[] run(int first, int step) {
+            for (int k = first; k < d; k += step) {
+                run(k);
+            }
+            return upperBounds;
+        }
 
-        for (int k = 0; k < d; ++k) {
+        void run(int k) {
             for (int i = 0, ii = movingSet.length; i < ii; ++i) {
                 encode(movingSet0[i], k, movingSet[i]);
             }
-            for (int i = 0, ii = fixedSet.length; i < ii; ++i) {
-                encode(fixedSet0[i], k, fixedSet[i]);
-            }
-
             if (movingW == null) {
                 movingW = new ArrayWrapper(movingSet);
                 movingW2 = new ArrayWrapper(movingSet, 1, d - 1);
-                fixedW = new ArrayWrapper(fixedSet);
             } else {
                 movingW.reloadContents();
                 movingW2.reloadContents();
-                fixedW.reloadContents();
+            }
+
+            double[][] fixedSorted;
+            int[] fixedIndices;
+            if (prepared != null) {
+                fixedSorted = prepared.sorted[k];
+                fixedIndices = prepared.indices[k];
+            } else {
+                for (int i = 0, ii = fixedSet.length; i < ii; ++i) {
+                    encode(fixedSet0[i], k, fixedSet[i]);
+                }
+                if (fixedW == null) {
+                    fixedW = new ArrayWrapper(fixedSet);
+                } else {
+                    fixedW.reloadContents();
+                }
+                fixedSorted = this.fixedSorted;
+                fixedIndices = this.fixedIndices;
+                for (int fp = 0; fp < fixedSorted.length; ++fp) {
+                    fixedSorted[fp] = fixedW.get(fp);
+                    fixedIndices[fp] = fixedW.getIndex(fp);
+                }
             }
 
             driver.init(movingW2);
 
             int mp = movingW.size() - 1;
 
-            for (int fp = fixedW.size() - 1; fp >= 0; --fp) {
-                int fi = fixedW.getIndex(fp);
-                double[] fs = fixedW.get(fp);
-                while (mp >= 0 && lexCompare(movingW.get(mp), fs, d - 1) >= 0) {
+            for (int fp = fixedSorted.length - 1; fp >= 0; --fp) {
+                int fi = fixedIndices[fp];
+                double[] fs = fixedSorted[fp];
+                while (mp >= 0 && Miscellaneous.lexCompare(movingW.get(mp), fs, d - 1) >= 0) {
                     driver.add(movingW.get(mp--));
                 }
                 double result = driver.getMin(fs);
@@ -75,6 +158,52 @@ public class OMQBinaryEpsilon extends BinaryEpsilon {
 
             driver.clear();
         }
+    }
+
+    @Override
+    protected double computeBinaryEpsilonImpl(double[][] movingSet0, double[][] fixedSet0) {
+        return compute(movingSet0, fixedSet0, null);
+    }
+
+    @Override
+    public FixedSetEpsilon prepare(double[][] fixedSet) {
+        return new FixedSetEpsilon(fixedSet) {
+            private final PreparedFixedSet prepared = fixedSet.length == 0 ? null : new PreparedFixedSet(fixedSet);
+
+            @Override
+            protected double computeBinaryEpsilonImpl(double[][] movingSet) {
+                return compute(movingSet, null, prepared);
+            }
+
+            @Override
+            public String getName() {
+                return OMQBinaryEpsilon.this.getName();
+            }
+        };
+    }
+
+    private double compute(double[][] movingSet0, double[][] fixedSet0, PreparedFixedSet prepared) {
+        int d = movingSet0[0].length;
+        double[] upperBounds;
+
+        if (pool == null) {
+            upperBounds = new Sweep(movingSet0, fixedSet0, prepared).run(0, 1);
+        } else {
+            // Every task has its own copies of the encoded sets, so there are no more tasks than threads
+            int taskCount = Math.min(d, pool.getParallelism());
+            List<ForkJoinTask<double[]>> tasks = new ArrayList<>(taskCount);
+            for (int t = 0; t < taskCount; ++t) {
+                int first = t;
+                tasks.add(pool.submit(() -> new Sweep(movingSet0, fixedSet0, prepared).run(first, taskCount)));
+            }
+            upperBounds = tasks.get(0).join();
+            for (int t = 1; t < taskCount; ++t) {
+                double[] taskBounds = tasks.get(t).join();
+                for (int i = 0; i < upperBounds.length; ++i) {
+                    upperBounds[i] = Math.min(upperBounds[i], taskBounds[i]);
+                }
+            }
+        }
 
         double rv = upperBounds[0];
         for (int i = 1; i < upperBounds.length; ++i) {
@@ -83,17 +212,8 @@ public class OMQBinaryEpsilon extends BinaryEpsilon {
         return rv;
     }
 
-    private static int lexCompare(double[] lhs, double[] rhs, int limit) {
-        for (int i = 0; i < limit; ++i) {
-            if (lhs[i] != rhs[i]) {
-                return lhs[i] < rhs[i] ? -1 : 1;
-            }
-        }
-        return 0;
-    }
-
     @Override
     public String getName() {
-        return "OMQBinaryEpsilon(" + builder.getName() + ")";
+        return "OMQBinaryEpsilon(" + builder.getName() + (pool == null ? "" : ", " + pool.getParallelism() + " threads") + ")";
     }
 }
@@ -0,0 +1,45 @@
+package ru.ifmo.eps;
+
+import java.util.Objects;
+
+/**
+ * The base class for quality indicators of a set against a reference set given in advance.
+ * The reference set is preprocessed once in the constructor, and then many sets can be evaluated against it.
+ * Implementations do not change after construction, so they can evaluate sets from many threads.
+ */
+public abstract class UnaryIndicator {
+    protected final int dimension;
+
+    protected UnaryIndicator(double[][] referenceSet) {
+        Objects.requireNonNull(referenceSet, "Reference set must not be null");
+        if (referenceSet.length == 0) {
+            throw new IllegalArgumentException("Reference set must not be empty");
+        }
+        for (double[] point : referenceSet) {
+            Objects.requireNonNull(point, "Points in reference set must not be null");
+        }
+        dimension = referenceSet[0].length;
+        BinaryEpsilon.checkNonNullSet(referenceSet, dimension);
+    }
+
+    public final double compute(double[][] set) {
+        Objects.requireNonNull(set, "Set must not be null");
+        if (set.length == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        for (double[] point : set) {
+            Objects.requireNonNull(point, "Points in set must not be null");
+        }
+        BinaryEpsilon.checkNonNullSet(set, dimension);
+        return computeImpl(set);
+    }
+
+    protected abstract double computeImpl(double[][] set);
+
+    // A deep copy, so that the caller cannot change the reference set afterwards
+    protected static double[][] copyOf(double[][] set) {
+        return BinaryEpsilon.copyOf(set);
+    }
+
+    public abstract String getName();
+}
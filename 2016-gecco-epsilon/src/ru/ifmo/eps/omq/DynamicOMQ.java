@@ -0,0 +1,103 @@
+package ru.ifmo.eps.omq;
+
+import java.util.*;
+import ru.ifmo.eps.util.*;
+
+/**
+ * An orthant minimum query data structure which supports insertions of arbitrary points,
+ * unlike {@link OrthantMinimumQuery}, which needs to know all the points in advance.
+ *
+ * This is the logarithmic method of Bentley and Saxe. The points are kept in blocks
+ * of pairwise distinct power-of-two sizes, each of them being a static structure built by the given builder.
+ * An insertion merges the new point and all blocks smaller than the first free size into a block of that size,
+ * so every point is rebuilt O(log n) times, and a query asks O(log n) blocks.
+ */
+public class DynamicOMQ {
+    private final OMQBuilder builder;
+    private final int internalDimension;
+    // The i-th level is either empty or contains exactly 2^i points.
+    private final List<Level> levels = new ArrayList<>();
+    private int size;
+
+    private class Level {
+        final double[][] points;
+        final OrthantMinimumQuery query = builder.build(internalDimension);
+        boolean empty = true;
+
+        Level(int capacity) {
+            points = new double[capacity][];
+        }
+
+        void rebuild() {
+            query.init(new ArrayWrapper(points, 1, internalDimension));
+            for (double[] point : points) {
+                query.add(point);
+            }
+            empty = false;
+        }
+    }
+
+    /**
+     * Creates an instance which works just as the ones built by {@code builder.build(internalDimension)}:
+     * for points of length internalDimension + 2, it considers indices 1 ... internalDimension
+     * and returns the minimum of the last index.
+     */
+    public DynamicOMQ(OMQBuilder builder, int internalDimension) {
+        this.builder = builder;
+        this.internalDimension = internalDimension;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds the point. The point is stored as is, so it must not be changed afterwards.
+     */
+    public void add(double[] point) {
+        int target = 0;
+        while (target < levels.size() && !levels.get(target).empty) {
+            ++target;
+        }
+        if (target == levels.size()) {
+            levels.add(new Level(1 << target));
+        }
+        Level level = levels.get(target);
+        int count = 0;
+        level.points[count++] = point;
+        for (int i = 0; i < target; ++i) {
+            Level smaller = levels.get(i);
+            System.arraycopy(smaller.points, 0, level.points, count, smaller.points.length);
+            count += smaller.points.length;
+            Arrays.fill(smaller.points, null);
+            smaller.query.clear();
+            smaller.empty = true;
+        }
+        level.rebuild();
+        ++size;
+    }
+
+    /**
+     * Same as {@link OrthantMinimumQuery#getMin(double[])}, over all added points.
+     */
+    public double getMin(double[] lowerBound) {
+        double rv = Double.POSITIVE_INFINITY;
+        for (Level level : levels) {
+            if (!level.empty) {
+                rv = Math.min(rv, level.query.getMin(lowerBound));
+            }
+        }
+        return rv;
+    }
+
+    public void clear() {
+        for (Level level : levels) {
+            if (!level.empty) {
+                Arrays.fill(level.points, null);
+                level.query.clear();
+                level.empty = true;
+            }
+        }
+        size = 0;
+    }
+}
@@ -1,8 +1,11 @@
 package ru.ifmo.eps.tests;
 
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.*;
 import ru.ifmo.eps.*;
 
+import static ru.ifmo.eps.tests.TestUtils.*;
+
 public class BinaryEpsilonTests {
     private BinaryEpsilon algorithm;
     public BinaryEpsilonTests(BinaryEpsilon algorithm) {
@@ -13,12 +16,6 @@ public class BinaryEpsilonTests {
         return algorithm.computeBinaryEpsilon(moving, fixed);
     }
 
-    protected void assertEquals(double expected, double found, double tolerance) {
-        if (Math.abs(expected - found) > tolerance) {
-            throw new AssertionError("Expected " + expected + " found " + found + " tolerance " + tolerance);
-        }
-    }
-
     public void singleEqualPoints() {
         System.out.print("        singleEqualPoints()...");
         double[] point = {1, 2, 3, 4, 5};
@@ -186,6 +183,92 @@ public class BinaryEpsilonTests {
         System.out.println(" OK");
     }
 
+    public void preparedFixedSet() {
+        System.out.print("        preparedFixedSet()...");
+        Random random = new Random(2016);
+        for (int d = 2; d <= 4; ++d) {
+            double[][] fixed = randomSet(50, d, () -> random.nextInt(20));
+            FixedSetEpsilon prepared = algorithm.prepare(fixed);
+            double[][][] movings = new double[10][][];
+            double[] expected = new double[movings.length];
+            for (int i = 0; i < movings.length; ++i) {
+                movings[i] = randomSet(1 + random.nextInt(60), d, () -> random.nextInt(20));
+                expected[i] = runEpsilon(movings[i], fixed);
+            }
+            // The prepared set must not see the changes made by the caller
+            for (double[] point : fixed) {
+                Arrays.fill(point, 0);
+            }
+            for (int i = 0; i < movings.length; ++i) {
+                assertEquals(expected[i], prepared.computeBinaryEpsilon(movings[i]), 0);
+            }
+            assertEquals(Double.POSITIVE_INFINITY, prepared.computeBinaryEpsilon(new double[0][]), 0);
+        }
+        assertEquals(Double.NEGATIVE_INFINITY,
+                     algorithm.prepare(new double[0][]).computeBinaryEpsilon(new double[][] {{1, 2}}), 0);
+        System.out.println(" OK");
+    }
+
+    public void preparedSharedBetweenThreads() {
+        System.out.print("        preparedSharedBetweenThreads()...");
+        Random random = new Random(2017);
+        int d = 3, threads = 4, queries = 40;
+        double[][] fixed = randomSet(200, d, () -> random.nextInt(20));
+        FixedSetEpsilon prepared = algorithm.prepare(fixed);
+        double[][][] movings = new double[queries][][];
+        double[] expected = new double[queries];
+        for (int i = 0; i < queries; ++i) {
+            movings[i] = randomSet(1 + random.nextInt(200), d, () -> random.nextInt(20));
+            expected[i] = runEpsilon(movings[i], fixed);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Double>> results = new ArrayList<>(queries);
+            for (int i = 0; i < queries; ++i) {
+                double[][] moving = movings[i];
+                results.add(executor.submit(() -> prepared.computeBinaryEpsilon(moving)));
+            }
+            for (int i = 0; i < queries; ++i) {
+                assertEquals(expected[i], results.get(i).get(), 0);
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            executor.shutdown();
+        }
+        System.out.println(" OK");
+    }
+
+    private static long usedMemoryAfterGC() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Parallel implementations must not leave anything behind in the threads of their pools
+    public void repeatedCallsKeepNoMemory() {
+        System.out.print("        repeatedCallsKeepNoMemory()...");
+        Random random = new Random(2018);
+        int n = 2000, d = 4, calls = 20;
+        long before = 0;
+        for (int call = 0; call < calls; ++call) {
+            double[][] moving = randomSet(n, d, random::nextDouble);
+            double[][] fixed = randomSet(n, d, random::nextDouble);
+            runEpsilon(moving, fixed);
+            if (call == calls / 4) {
+                before = usedMemoryAfterGC();
+            }
+        }
+        long growth = usedMemoryAfterGC() - before;
+        // A single call which is kept alive holds at least its points, which take 2 * n * d * 8 bytes
+        if (growth > n * d * 8) {
+            throw new AssertionError("Memory grew by " + growth + " bytes over " + (calls - calls / 4 - 1) + " calls");
+        }
+        System.out.println(" OK");
+    }
+
     public void runTests() {
         System.out.println("    Running " + algorithm.getName());
         singleEqualPoints();
@@ -199,5 +282,8 @@ public class BinaryEpsilonTests {
         decompositionBug4Dv1();
         decompositionBug4Dv2();
         runtimeError4Dv1();
+        preparedFixedSet();
+        preparedSharedBetweenThreads();
+        repeatedCallsKeepNoMemory();
     }
 }
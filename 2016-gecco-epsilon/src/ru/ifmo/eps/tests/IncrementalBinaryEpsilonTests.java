@@ -0,0 +1,85 @@
+package ru.ifmo.eps.tests;
+
+import java.util.*;
+import ru.ifmo.eps.*;
+import ru.ifmo.eps.omq.*;
+
+import static ru.ifmo.eps.tests.TestUtils.*;
+
+public class IncrementalBinaryEpsilonTests {
+    public static void simple() {
+        System.out.print("        simple()...");
+        IncrementalBinaryEpsilon eps = new IncrementalBinaryEpsilon(2);
+        assertEquals(Double.NEGATIVE_INFINITY, eps.getEpsilon(), 0);
+        eps.addMovingPoint(new double[] { 2, 0 });
+        assertEquals(Double.NEGATIVE_INFINITY, eps.getEpsilon(), 0);
+        eps.addFixedPoint(new double[] { 3, 1 });
+        assertEquals(-1, eps.getEpsilon(), 1e-9);
+        eps.addFixedPoint(new double[] { 1, 3 });
+        assertEquals(1, eps.getEpsilon(), 1e-9);
+        eps.addMovingPoint(new double[] { 0, 2 });
+        assertEquals(-1, eps.getEpsilon(), 1e-9);
+        eps.clear();
+        eps.addFixedPoint(new double[] { 1, 1 });
+        assertEquals(Double.POSITIVE_INFINITY, eps.getEpsilon(), 0);
+        System.out.println(" OK");
+    }
+
+    public static void invalidInputs() {
+        System.out.print("        invalidInputs()...");
+        IncrementalBinaryEpsilon eps = new IncrementalBinaryEpsilon(2);
+        expectIllegalArgument(() -> new IncrementalBinaryEpsilon(0));
+        expectIllegalArgument(() -> eps.addMovingPoint(new double[] { 1, 2, 3 }));
+        expectIllegalArgument(() -> eps.addFixedPoint(new double[] { 1 }));
+        expectIllegalArgument(() -> eps.addFixedPoint(new double[] { 1, Double.NaN }));
+        try {
+            eps.addMovingPoint(null);
+            throw new AssertionError("Expected NullPointerException");
+        } catch (NullPointerException ex) {
+            // expected
+        }
+        assertEquals(0, eps.getMovingSetSize() + eps.getFixedSetSize(), 0);
+        System.out.println(" OK");
+    }
+
+    // Adds points to both sets in a random order and compares the result with the batch one after every addition
+    public static void randomInsertions(OMQBuilder builder) {
+        System.out.print("        randomInsertions(" + builder.getName() + ")...");
+        Random random = new Random(2016);
+        for (int d = 1; d <= 4; ++d) {
+            // OMQBinaryEpsilon needs at least two dimensions, and the coordinates are integers, so the naive one is exact
+            BinaryEpsilon batch = d == 1 ? new NaiveBinaryEpsilon() : new OMQBinaryEpsilon(builder);
+            for (int run = 0; run < 10; ++run) {
+                IncrementalBinaryEpsilon eps = new IncrementalBinaryEpsilon(d, builder);
+                List<double[]> moving = new ArrayList<>();
+                List<double[]> fixed = new ArrayList<>();
+                int range = random.nextBoolean() ? 10 : 1000;
+                for (int step = 0; step < 100; ++step) {
+                    double[] point = new double[d];
+                    for (int i = 0; i < d; ++i) {
+                        point[i] = random.nextInt(range);
+                    }
+                    if (random.nextBoolean()) {
+                        moving.add(point);
+                        eps.addMovingPoint(point);
+                    } else {
+                        fixed.add(point);
+                        eps.addFixedPoint(point);
+                    }
+                    double expected = batch.computeBinaryEpsilon(moving.toArray(new double[0][]),
+                                                                 fixed.toArray(new double[0][]));
+                    assertEquals(expected, eps.getEpsilon(), 0);
+                }
+            }
+        }
+        System.out.println(" OK");
+    }
+
+    public static void runTests() {
+        System.out.println("    Running incremental binary epsilon");
+        simple();
+        invalidInputs();
+        randomInsertions(TreeOMQ.INSTANCE);
+        randomInsertions(NaiveOMQ.INSTANCE);
+    }
+}
@@ -0,0 +1,38 @@
+package ru.ifmo.eps.tests;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Assertions and generators shared by the tests.
+ */
+public final class TestUtils {
+    private TestUtils() {}
+
+    public static void assertEquals(double expected, double found, double tolerance) {
+        if (Math.abs(expected - found) > tolerance) {
+            throw new AssertionError("Expected " + expected + " found " + found + " tolerance " + tolerance);
+        }
+    }
+
+    public static void expectIllegalArgument(Runnable action) {
+        try {
+            action.run();
+        } catch (IllegalArgumentException ex) {
+            return;
+        }
+        throw new AssertionError("Expected IllegalArgumentException");
+    }
+
+    /**
+     * Returns n points of dimension d, whose coordinates are drawn from the given source one by one.
+     */
+    public static double[][] randomSet(int n, int d, DoubleSupplier coordinate) {
+        double[][] rv = new double[n][d];
+        for (double[] point : rv) {
+            for (int i = 0; i < d; ++i) {
+                point[i] = coordinate.getAsDouble();
+            }
+        }
+        return rv;
+    }
+}
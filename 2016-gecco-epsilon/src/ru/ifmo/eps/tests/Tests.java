@@ -1,5 +1,7 @@
 package ru.ifmo.eps.tests;
 
+import java.util.concurrent.ForkJoinPool;
+
 import ru.ifmo.eps.*;
 import ru.ifmo.eps.omq.*;
 
@@ -8,6 +10,10 @@ public class Tests {
         new BinaryEpsilonTests(new NaiveBinaryEpsilon()).runTests();
         new BinaryEpsilonTests(new OMQBinaryEpsilon(NaiveOMQ.INSTANCE)).runTests();
         new BinaryEpsilonTests(new OMQBinaryEpsilon(TreeOMQ.INSTANCE)).runTests();
+        new BinaryEpsilonTests(new OMQBinaryEpsilon(TreeOMQ.INSTANCE, new ForkJoinPool(4))).runTests();
         new BinaryEpsilonTests(new OMQ2BinaryEpsilon()).runTests();
+        new BinaryEpsilonTests(new OMQ2BinaryEpsilon(new ForkJoinPool(4), 4)).runTests();
+        UnaryIndicatorTests.runTests();
+        IncrementalBinaryEpsilonTests.runTests();
     }
 }
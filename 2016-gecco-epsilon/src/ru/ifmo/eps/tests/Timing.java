@@ -1,6 +1,8 @@
 package ru.ifmo.eps.tests;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 import java.lang.management.*;
 
 import ru.ifmo.eps.*;
@@ -12,6 +14,12 @@ public class Timing {
                                                 new OMQBinaryEpsilon(TreeOMQ.INSTANCE),
                                                 new OMQ2BinaryEpsilon() };
 
+    // Algorithms which can run in a pool, sequential when given null
+    static final List<Function<ForkJoinPool, BinaryEpsilon>> parallelAlgorithms = Arrays.asList(
+        pool -> new OMQBinaryEpsilon(TreeOMQ.INSTANCE, pool),
+        pool -> pool == null ? new OMQ2BinaryEpsilon() : new OMQ2BinaryEpsilon(pool)
+    );
+
     static final ThreadMXBean timer = ManagementFactory.getThreadMXBean();
 
     static abstract class Generator {
@@ -79,7 +87,86 @@ public class Timing {
         }
     }
 
+    // Wall-clock time, as the parallel algorithm runs in threads other than the current one
+    static double wallClockTime(BinaryEpsilon algorithm, double[][] moving, double[][] fixed) {
+        long time = 0;
+        int multiple = 1;
+        do {
+            long t0 = System.nanoTime();
+            for (int t = 0; t < multiple; ++t) {
+                algorithm.computeBinaryEpsilon(moving, fixed);
+            }
+            time = System.nanoTime() - t0;
+            multiple *= 2;
+        } while (time < 100000000);
+        return (double) (time) / (multiple / 2) / 1e9;
+    }
+
+    static void checkSpeedup(int n, int d, int runs, Generator generator, int[] threadCounts) {
+        System.out.println("    [" + generator.getName() + "] n = " + n + " d = " + d + " runs = " + runs);
+        double[][][] moving = new double[runs][][];
+        double[][][] fixed = new double[runs][][];
+        for (int run = 0; run < runs; ++run) {
+            moving[run] = generator.generate(n, d);
+            fixed[run] = generator.generate(n, d);
+        }
+        for (int a = 0; a < parallelAlgorithms.size(); ++a) {
+            BinaryEpsilon sequential = parallelAlgorithms.get(a).apply(null);
+            double sequentialTime = 0;
+            for (int run = 0; run < runs; ++run) {
+                sequentialTime += wallClockTime(sequential, moving[run], fixed[run]);
+            }
+            sequentialTime /= runs;
+            System.out.printf(Locale.US, "        %40s: %10.6f sec%n", sequential.getName(), sequentialTime);
+            for (int threads : threadCounts) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                BinaryEpsilon parallel = parallelAlgorithms.get(a).apply(pool);
+                double parallelTime = 0;
+                for (int run = 0; run < runs; ++run) {
+                    parallelTime += wallClockTime(parallel, moving[run], fixed[run]);
+                }
+                parallelTime /= runs;
+                pool.shutdown();
+                System.out.printf(Locale.US, "        %40s: %10.6f sec, speedup %.2f%n",
+                                  parallel.getName(), parallelTime, sequentialTime / parallelTime);
+            }
+        }
+    }
+
+    // Speedup curves of the parallel algorithms over the sequential ones, for sizes up to maxSize
+    static void speedup(int maxSize) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        List<Integer> threads = new ArrayList<>();
+        for (int t = 1; t < processors; t *= 2) {
+            threads.add(t);
+        }
+        threads.add(processors);
+        int[] threadCounts = new int[threads.size()];
+        for (int i = 0; i < threadCounts.length; ++i) {
+            threadCounts[i] = threads.get(i);
+        }
+
+        System.out.print("    Warming up... ");
+        for (int dim = 4; dim <= 6; ++dim) {
+            checkPoints(10000, dim, 3, true, randomPoints);
+        }
+        System.out.println();
+        for (Generator g : new Generator[] { randomPoints, flatPoints }) {
+            for (int dim : new int[] { 6, 8, 10 }) {
+                for (int size : new int[] { 100000, 310000, 1000000 }) {
+                    if (size <= maxSize) {
+                        checkSpeedup(size, dim, 3, g, threadCounts);
+                    }
+                }
+            }
+        }
+    }
+
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("speedup")) {
+            speedup(args.length > 1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE);
+            return;
+        }
         System.out.print("    Warming up... ");
         for (int dim = 2; dim <= 4; ++dim) {
             for (int size : new int[] { 100, 310, 1000, 3100 }) {
@@ -1,14 +1,22 @@
 package ru.ifmo.eps.tests;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import ru.ifmo.eps.*;
 import ru.ifmo.eps.omq.*;
 
 public class Torture {
     static final Random random = new Random();
+    static final ForkJoinPool pool = new ForkJoinPool(4);
     static final BinaryEpsilon[] algorithms = { new NaiveBinaryEpsilon(),
                                                 new OMQBinaryEpsilon(TreeOMQ.INSTANCE),
-                                                new OMQ2BinaryEpsilon() };
+                                                new OMQ2BinaryEpsilon(),
+                                                new OMQBinaryEpsilon(TreeOMQ.INSTANCE, pool),
+                                                // A tiny cutoff, so that even small inputs are split between threads
+                                                new OMQ2BinaryEpsilon(pool, 4) };
+    // Pairs of indices of sequential and parallel algorithms, which must give exactly the same results.
+    // The same holds for every algorithm with the fixed set prepared in advance.
+    static final int[][] parallelPairs = { { 1, 3 }, { 2, 4 } };
 
     static void randomPoints(int n, int d, int runs) {
         System.out.print("    Running torture test with random points for n = " + n + ", d = " + d + " for " + runs + " runs... ");
@@ -40,15 +48,28 @@ public class Torture {
                 }
             }
             double[] algoResults = new double[algorithms.length];
+            double[] preparedResults = new double[algorithms.length];
             Arrays.fill(algoResults, Double.NaN);
+            Arrays.fill(preparedResults, Double.NaN);
             boolean failed = false;
             try {
                 for (int i = 0; i < algorithms.length; ++i) {
                     algoResults[i] = algorithms[i].computeBinaryEpsilon(moving, fixed);
+                    preparedResults[i] = algorithms[i].prepare(fixed).computeBinaryEpsilon(moving);
                 }
             } catch (Throwable th) {
                 failed = true;
             }
+            for (int i = 0; i < algorithms.length; ++i) {
+                if (Double.compare(algoResults[i], preparedResults[i]) != 0) {
+                    failed = true;
+                }
+            }
+            for (int[] pair : parallelPairs) {
+                if (Double.compare(algoResults[pair[0]], algoResults[pair[1]]) != 0) {
+                    failed = true;
+                }
+            }
             double first = algoResults[0];
             for (int i = 1; i < algorithms.length; ++i) {
                 if (failed || Math.abs(algoResults[i] - first) > 1e-9) {
@@ -74,7 +95,8 @@ public class Torture {
                     System.out.println("        assertEquals(" + first + ", runEpsilon(moving, fixed), 1e-9);");
                     System.out.println("Algorithm results:");
                     for (int j = 0; j < algorithms.length; ++j) {
-                        System.out.println("    " + algorithms[j].getName() + " => " + algoResults[j]);
+                        System.out.println("    " + algorithms[j].getName() + " => " + algoResults[j]
+                                           + ", prepared => " + preparedResults[j]);
                     }
                     System.exit(1);
                 }
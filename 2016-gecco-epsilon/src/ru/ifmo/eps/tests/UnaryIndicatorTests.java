@@ -0,0 +1,94 @@
+package ru.ifmo.eps.tests;
+
+import java.util.*;
+import java.util.function.DoubleSupplier;
+import ru.ifmo.eps.*;
+
+import static ru.ifmo.eps.tests.TestUtils.*;
+
+public class UnaryIndicatorTests {
+    private static final double[][] reference = { { 1, 2 }, { 2, 1 } };
+    private static final double[][] single = { { 2, 3 } };
+
+    private static double naiveMultiplicative(double[][] set, double[][] reference) {
+        double rv = Double.NEGATIVE_INFINITY;
+        for (double[] r : reference) {
+            double min = Double.POSITIVE_INFINITY;
+            for (double[] a : set) {
+                double max = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < r.length; ++i) {
+                    max = Math.max(max, a[i] / r[i]);
+                }
+                min = Math.min(min, max);
+            }
+            rv = Math.max(rv, min);
+        }
+        return rv;
+    }
+
+    private static double naiveMeanDistance(double[][] from, double[][] to) {
+        double sum = 0;
+        for (double[] f : from) {
+            double min = Double.POSITIVE_INFINITY;
+            for (double[] t : to) {
+                double d = 0;
+                for (int i = 0; i < f.length; ++i) {
+                    d += (f[i] - t[i]) * (f[i] - t[i]);
+                }
+                min = Math.min(min, Math.sqrt(d));
+            }
+            sum += min;
+        }
+        return sum / from.length;
+    }
+
+    public static void simple() {
+        System.out.print("        simple()...");
+        assertEquals(2, new AdditiveEpsilon(reference).compute(single), 1e-9);
+        assertEquals(3, new MultiplicativeEpsilon(reference).compute(single), 1e-9);
+        assertEquals(Math.sqrt(2), new GenerationalDistance(reference).compute(single), 1e-9);
+        assertEquals((Math.sqrt(2) + 2) / 2, new InvertedGenerationalDistance(reference).compute(single), 1e-9);
+        assertEquals(0, new AdditiveEpsilon(reference).compute(reference), 1e-9);
+        assertEquals(1, new MultiplicativeEpsilon(reference).compute(reference), 1e-9);
+        System.out.println(" OK");
+    }
+
+    public static void invalidInputs() {
+        System.out.print("        invalidInputs()...");
+        expectIllegalArgument(() -> new AdditiveEpsilon(new double[0][]));
+        expectIllegalArgument(() -> new MultiplicativeEpsilon(new double[][] { { 1, 0 } }));
+        expectIllegalArgument(() -> new MultiplicativeEpsilon(reference).compute(new double[][] { { -1, 1 } }));
+        expectIllegalArgument(() -> new GenerationalDistance(reference).compute(new double[][] { { 1, 2, 3 } }));
+        System.out.println(" OK");
+    }
+
+    // Many sets against the same indicator instances, compared to the naive definitions
+    public static void randomSetsAgainstOneReference() {
+        System.out.print("        randomSetsAgainstOneReference()...");
+        Random random = new Random(8836621);
+        // Positive coordinates, as the multiplicative epsilon needs them, with both ties and non-integers
+        DoubleSupplier coordinate = () -> random.nextBoolean() ? 1 + random.nextInt(10) : 0.5 + random.nextDouble();
+        for (int d = 2; d <= 5; ++d) {
+            double[][] reference = randomSet(1 + random.nextInt(100), d, coordinate);
+            UnaryIndicator[] indicators = { new AdditiveEpsilon(reference),
+                                            new MultiplicativeEpsilon(reference),
+                                            new GenerationalDistance(reference),
+                                            new InvertedGenerationalDistance(reference) };
+            for (int test = 0; test < 50; ++test) {
+                double[][] set = randomSet(1 + random.nextInt(100), d, coordinate);
+                assertEquals(new NaiveBinaryEpsilon().computeBinaryEpsilon(set, reference), indicators[0].compute(set), 1e-9);
+                assertEquals(naiveMultiplicative(set, reference), indicators[1].compute(set), 1e-9);
+                assertEquals(naiveMeanDistance(set, reference), indicators[2].compute(set), 1e-9);
+                assertEquals(naiveMeanDistance(reference, set), indicators[3].compute(set), 1e-9);
+            }
+        }
+        System.out.println(" OK");
+    }
+
+    public static void runTests() {
+        System.out.println("    Running unary indicators");
+        simple();
+        invalidInputs();
+        randomSetsAgainstOneReference();
+    }
+}
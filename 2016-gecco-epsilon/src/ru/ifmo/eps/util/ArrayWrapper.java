@@ -12,8 +12,30 @@ public class ArrayWrapper {
     protected int smallestMeaningfulCoordinate;
     protected int largestMeaningfulCoordinate;
 
+    private final Buffers buffers;
+
     public int splitL, splitR;
 
+    /**
+     * The buffers used by splitting and merging, along with the results of the last split.
+     * Disjoint ranges may be split and merged in parallel, as long as every thread uses its own buffers.
+     */
+    public static class Buffers {
+        private final int[] swp;
+        private final int[] swp2;
+
+        public int splitL, splitR;
+
+        public Buffers(int size) {
+            this(new int[size], new int[size]);
+        }
+
+        private Buffers(int[] swp, int[] swp2) {
+            this.swp = swp;
+            this.swp2 = swp2;
+        }
+    }
+
     public ArrayWrapper(double[][] contents) {
         this(contents, 0, contents[0].length - 1);
     }
@@ -25,6 +47,7 @@ public class ArrayWrapper {
         this.idx = new int[contents.length];
         this.swp = new int[contents.length];
         this.swp2 = new int[contents.length];
+        this.buffers = new Buffers(swp, swp2);
         this.smallestMeaningfulCoordinate = smallestMeaningfulCoordinate;
         this.largestMeaningfulCoordinate = largestMeaningfulCoordinate;
         for (int i = 0; i < contents.length; ++i) {
@@ -37,6 +60,24 @@ public class ArrayWrapper {
         }
     }
 
+    /**
+     * Wraps the contents which are known to be in the given order, which must be the same
+     * as the one the sorting would produce: lexicographic, with equal points ordered by index.
+     */
+    public ArrayWrapper(double[][] contents, int smallestMeaningfulCoordinate,
+                                             int largestMeaningfulCoordinate, int[] sortedIndices) {
+        this.contents = contents;
+        this.dimension = contents[0].length;
+        this.idx = new int[contents.length];
+        this.swp = new int[contents.length];
+        this.swp2 = new int[contents.length];
+        this.buffers = new Buffers(swp, swp2);
+        this.ord = new int[contents.length];
+        this.smallestMeaningfulCoordinate = smallestMeaningfulCoordinate;
+        this.largestMeaningfulCoordinate = largestMeaningfulCoordinate;
+        setOrder(sortedIndices);
+    }
+
     public int smallestMeaningfulCoordinate() {
         return smallestMeaningfulCoordinate;
     }
@@ -55,6 +96,17 @@ public class ArrayWrapper {
         }
     }
 
+    public void reloadContents(int[] sortedIndices) {
+        setOrder(sortedIndices);
+    }
+
+    private void setOrder(int[] sortedIndices) {
+        System.arraycopy(sortedIndices, 0, idx, 0, contents.length);
+        for (int i = 0; i < contents.length; ++i) {
+            ord[idx[i]] = i;
+        }
+    }
+
     public int size() {
         return contents.length;
     }
@@ -76,6 +128,13 @@ public class ArrayWrapper {
     }
 
     public void split(int left, int right, double median, int k) {
+        split(left, right, median, k, buffers);
+        splitL = buffers.splitL;
+        splitR = buffers.splitR;
+    }
+
+    public void split(int left, int right, double median, int k, Buffers buffers) {
+        int[] swp = buffers.swp, swp2 = buffers.swp2;
         int lp = left, rp = right, mp = 0;
         for (int i = left; i < right; ++i) {
             double cc = contents[idx[i]][k];
@@ -94,14 +153,19 @@ public class ArrayWrapper {
             idx[r] = tmp;
         }
         System.arraycopy(swp2, 0, idx, lp, mp);
-        splitL = lp;
-        splitR = rp;
+        buffers.splitL = lp;
+        buffers.splitR = rp;
     }
 
     public void merge(int left, int mid, int right) {
+        merge(left, mid, right, buffers);
+    }
+
+    public void merge(int left, int mid, int right, Buffers buffers) {
         if (left == mid || mid == right) {
             return;
         }
+        int[] swp = buffers.swp;
         for (int l = left, m = mid, t = left; t < right; ++t) {
             if (m == right || l < mid && ord[idx[l]] < ord[idx[m]]) {
                 swp[t] = idx[l++];
@@ -29,4 +29,13 @@ public class Miscellaneous {
     public static double destructiveMedian(double[] array, int left, int right) {
         return destructiveKth(array, left, right - 1, (left + right) >>> 1);
     }
+
+    public static int lexCompare(double[] lhs, double[] rhs, int limit) {
+        for (int i = 0; i < limit; ++i) {
+            if (lhs[i] != rhs[i]) {
+                return lhs[i] < rhs[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
 }
@@ -0,0 +1,124 @@
+package ru.ifmo.eps.util;
+
+/**
+ * Finds the Euclidean distance from a point to the nearest point of a fixed set.
+ *
+ * This is a k-d tree stored implicitly in an array: the middle point of every range
+ * is the median of the range in the coordinate of the largest spread, the smaller points
+ * are to the left of it and the larger ones are to the right. A query descends to the side of the point first
+ * and visits the other side only if the splitting plane is closer than the best distance found so far.
+ * For a fixed number of objectives this takes logarithmic time on typical sets, but the pruning weakens
+ * as the number of objectives grows, and when it is comparable to the logarithm of the set size,
+ * a query may visit a large part of the set.
+ */
+public final class NearestNeighbourIndex {
+    // Ranges of at most this size are not split and are scanned point by point
+    private static final int LEAF_SIZE = 8;
+
+    private final double[][] points;
+    // For the middle of every split range, the coordinate it is split by
+    private final int[] axes;
+
+    public NearestNeighbourIndex(double[][] points) {
+        this.points = points.clone();
+        this.axes = new int[points.length];
+        build(0, points.length);
+    }
+
+    private void build(int left, int right) {
+        if (right - left <= LEAF_SIZE) {
+            return;
+        }
+        int d = points[left].length;
+        int axis = 0;
+        double maxSpread = -1;
+        for (int k = 0; k < d; ++k) {
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (int i = left; i < right; ++i) {
+                double v = points[i][k];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            if (max - min > maxSpread) {
+                maxSpread = max - min;
+                axis = k;
+            }
+        }
+        int mid = (left + right) >>> 1;
+        select(left, right, mid, axis);
+        axes[mid] = axis;
+        build(left, mid);
+        build(mid + 1, right);
+    }
+
+    // Reorders the range so that the kth point is in its place when sorted by the given coordinate
+    private void select(int left, int right, int kth, int axis) {
+        while (right - left > 1) {
+            double pivot = points[(left + right) >>> 1][axis];
+            int lt = left, i = left, gt = right;
+            while (i < gt) {
+                double v = points[i][axis];
+                if (v < pivot) {
+                    swap(lt++, i++);
+                } else if (v > pivot) {
+                    swap(i, --gt);
+                } else {
+                    ++i;
+                }
+            }
+            if (kth < lt) {
+                right = lt;
+            } else if (kth >= gt) {
+                left = gt;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int a, int b) {
+        double[] tmp = points[a];
+        points[a] = points[b];
+        points[b] = tmp;
+    }
+
+    public double distance(double[] point) {
+        return Math.sqrt(nearest(0, points.length, point, Double.POSITIVE_INFINITY));
+    }
+
+    // Returns the smaller of best and the squared distance to the nearest point in the range
+    private double nearest(int left, int right, double[] point, double best) {
+        if (right - left <= LEAF_SIZE) {
+            for (int i = left; i < right; ++i) {
+                best = Math.min(best, squaredDistance(points[i], point, best));
+            }
+            return best;
+        }
+        int mid = (left + right) >>> 1;
+        double[] median = points[mid];
+        best = Math.min(best, squaredDistance(median, point, best));
+        double diff = point[axes[mid]] - median[axes[mid]];
+        if (diff < 0) {
+            best = nearest(left, mid, point, best);
+            if (diff * diff < best) {
+                best = nearest(mid + 1, right, point, best);
+            }
+        } else {
+            best = nearest(mid + 1, right, point, best);
+            if (diff * diff < best) {
+                best = nearest(left, mid, point, best);
+            }
+        }
+        return best;
+    }
+
+    // Returns the squared distance, or something not smaller than limit if it is not smaller than limit
+    private static double squaredDistance(double[] a, double[] b, double limit) {
+        double rv = 0;
+        for (int i = 0; i < a.length && rv < limit; ++i) {
+            double d = a[i] - b[i];
+            rv += d * d;
+        }
+        return rv;
+    }
+}